@@ -1,14 +1,24 @@
 package io.github.isagroup;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import org.springframework.stereotype.Component;
 import org.yaml.snakeyaml.error.YAMLException;
 
 import io.github.isagroup.exceptions.PricingPlanEvaluationException;
 import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.EffectiveConfigurationCache;
+import io.github.isagroup.services.evaluation.EvaluationExecutors;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import io.github.isagroup.services.snapshot.PricingSnapshotRegistry;
 import io.github.isagroup.services.yaml.YamlUtils;
+import io.github.isagroup.models.AddOn;
 import io.github.isagroup.models.Plan;
 
 /**
@@ -41,6 +51,28 @@ public abstract class PricingContext {
         return this.getJwtSecret();
     }
 
+    /**
+     * Returns the id of {@link #getJwtSecret()}, which is written in the
+     * {@code kid} header of the pricing JWTs so the secret can be rotated.
+     * 
+     * @return the key id, or null to sign tokens without key id
+     */
+    public String getJwtKeyId() {
+        return null;
+    }
+
+    /**
+     * Returns the secrets that were used to sign pricing JWTs before
+     * {@link #getJwtSecret()}, by key id. Tokens signed with them are still
+     * accepted, so secrets can be rotated without invalidating issued tokens.
+     * 
+     * @return previous JWT secrets by key id, a null id standing for the tokens
+     *         without key id
+     */
+    public Map<String, String> getPreviousJwtSecrets() {
+        return Collections.emptyMap();
+    }
+
     /**
      * Returns the expiration time of the JWT in milliseconds
      * 
@@ -50,6 +82,18 @@ public abstract class PricingContext {
         return 86400000;
     }
 
+    /**
+     * Returns whether the feature statuses of compact pricing tokens are
+     * compressed with DEFLATE. It pays off for pricings with many features.
+     * 
+     * @return true to compress compact pricing tokens
+     * 
+     * @see PricingEvaluatorUtil#generateCompactUserToken
+     */
+    public boolean isCompactTokenCompressed() {
+        return false;
+    }
+
     /**
      * This method can be used to determine which users are affected
      * by the pricing, so a pricing-driven JWT will be only generated
@@ -84,6 +128,69 @@ public abstract class PricingContext {
      */
     public abstract String getUserPlan();
 
+    /**
+     * This method should return the names of the {@link AddOn}s the current user
+     * has contracted on top of the plan. Their features and usage limits are
+     * merged into the plan context.
+     * 
+     * @return List with the current user's add-on names
+     */
+    public List<String> getUserAddOns() {
+        return List.of();
+    }
+
+    /**
+     * Returns the executor the default asynchronous retrieval methods run on.
+     * 
+     * @return executor of {@link #getUserContextAsync()},
+     *         {@link #getUserPlanAsync()} and {@link #getUserAddOnsAsync()}
+     * 
+     * @see EvaluationExecutors#defaultExecutor()
+     */
+    public Executor getAsyncExecutor() {
+        return EvaluationExecutors.defaultExecutor();
+    }
+
+    /**
+     * Asynchronous variant of {@link #getUserContext()}. The user context, plan
+     * and add-ons are retrieved in parallel when a whole evaluation is prepared,
+     * so it can be overridden with a non-blocking implementation. By default it
+     * calls {@link #getUserContext()} on {@link #getAsyncExecutor()}, with the
+     * request attributes and the security context of the calling thread (see
+     * {@link EvaluationExecutors#withCallerContext(Executor)}). Other state
+     * bound to the calling thread is not available to it.
+     * 
+     * @return stage completed with the user context
+     */
+    public CompletionStage<Map<String, Object>> getUserContextAsync() {
+        return CompletableFuture.supplyAsync(this::getUserContext,
+                EvaluationExecutors.withCallerContext(getAsyncExecutor()));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getUserPlan()}. By default it calls
+     * {@link #getUserPlan()} on {@link #getAsyncExecutor()}, with the request
+     * attributes and the security context of the calling thread.
+     * 
+     * @return stage completed with the current user's plan name
+     */
+    public CompletionStage<String> getUserPlanAsync() {
+        return CompletableFuture.supplyAsync(this::getUserPlan,
+                EvaluationExecutors.withCallerContext(getAsyncExecutor()));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getUserAddOns()}. By default it calls
+     * {@link #getUserAddOns()} on {@link #getAsyncExecutor()}, with the request
+     * attributes and the security context of the calling thread.
+     * 
+     * @return stage completed with the current user's add-on names
+     */
+    public CompletionStage<List<String>> getUserAddOnsAsync() {
+        return CompletableFuture.supplyAsync(this::getUserAddOns,
+                EvaluationExecutors.withCallerContext(getAsyncExecutor()));
+    }
+
     /**
      * This method returns the plan context of the current user, represented by a
      * {@link Map}. It's used to evaluate the pricing plan.
@@ -91,23 +198,21 @@ public abstract class PricingContext {
      * @return current user's plan context
      */
     public final Map<String, Object> getPlanContext() {
+        return EffectiveConfigurationCache.of(this.getPricingSnapshot())
+                .get(this.getUserPlan(), this.getUserAddOns())
+                .toPlanContext();
+    }
 
-        Plan plan = this.getPricingManager().getPlans().get(this.getUserPlan());
-        Map<String, Object> planContext = plan.parseToMap();
-
-        Map<String, Object> planFeaturesContext = plan.getFeatures().entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey,
-                        e -> e.getValue().getValue() != null ? e.getValue().getValue()
-                                : e.getValue().getDefaultValue()));
-        planContext.put("features", planFeaturesContext);
-
-        Map<String, Object> planUsageLimitMap = plan.getUsageLimits().entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey,
-                        e -> e.getValue().getValue() != null ? e.getValue().getValue()
-                                : e.getValue().getDefaultValue()));
-        planContext.put("usageLimits", planUsageLimitMap);
-
-        return planContext;
+    /**
+     * This method returns the plan context of the current user built from an
+     * already loaded {@link PricingManager}, so the configuration file is not
+     * read again.
+     * 
+     * @param pricingManager the pricing configuration that contains the user plan
+     * @return current user's plan context
+     */
+    public final Map<String, Object> getPlanContext(PricingManager pricingManager) {
+        return EffectiveConfiguration.of(pricingManager, this.getUserPlan(), this.getUserAddOns()).toPlanContext();
     }
 
     /**
@@ -123,4 +228,21 @@ public abstract class PricingContext {
             throw new PricingPlanEvaluationException("Error while parsing YAML file");
         }
     }
+
+    /**
+     * This method returns the {@link PricingSnapshot} of the current content of
+     * the configuration file. Unlike {@link #getPricingManager()}, the file is
+     * only parsed again when it changes, and the returned configuration is
+     * shared, so it must not be modified other than through
+     * {@link PricingService#updateVariableFromConfiguration(String, Object)}.
+     * 
+     * @return the current pricing snapshot
+     */
+    public final PricingSnapshot getPricingSnapshot() {
+        try {
+            return PricingSnapshotRegistry.getInstance().getSnapshot(this.getConfigFilePath());
+        } catch (YAMLException e) {
+            throw new PricingPlanEvaluationException("Error while parsing YAML file");
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package io.github.isagroup;
 
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import io.github.isagroup.models.*;
@@ -9,9 +12,18 @@ import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.stereotype.Component;
 
 import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.FeatureExpression;
+import io.github.isagroup.services.configuration.FeatureStatuses;
+import io.github.isagroup.services.configuration.FeatureStatusesCache;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.evaluation.EvaluationExecutors;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import io.github.isagroup.services.jwt.CompactTokenCodec;
+import io.github.isagroup.services.jwt.JwtSigner;
 import io.github.isagroup.services.jwt.PricingJwtUtils;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.Claims;
 
 /**
  * Utility class that provides methods to generate and manage JWT that contains
@@ -45,93 +57,162 @@ public class PricingEvaluatorUtil {
 
         Map<String, Object> claims = new HashMap<>();
 
-        String subject = "Default";
+        PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+        Map<String, Object> userContext = evaluationContext.getUserContext();
 
-        if (pricingContext.getUserContext().containsKey("username")) {
-            subject = (String) pricingContext.getUserContext().get("username");
-        } else if (pricingContext.getUserContext().containsKey("user")) {
-            subject = (String) pricingContext.getUserContext().get("user");
-        }
+        String subject = evaluationContext.getSubject();
 
         PlanContextManager planContextManager = new PlanContextManager();
         try {
-            planContextManager.setUserContext(pricingContext.getUserContext());
+            planContextManager.setUserContext(userContext);
             claims.put("userContext", planContextManager.getUserContext());
         } catch (Exception e) {
             throw new PricingPlanEvaluationException("Error while retrieving user context! Please check your PricingContext.getUserContext() method");
         }
 
         if (!pricingContext.userAffectedByPricing()) {
-            return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + pricingContext.getJwtExpiration()))
-                .signWith(SignatureAlgorithm.HS512, pricingContext.getJwtSecret())
-                .compact();
+            return signToken(claims, subject);
         }
 
         try {
-            planContextManager.setPlanContext(pricingContext.getPlanContext());
+            planContextManager.setPlanContext(evaluationContext.getPlanContext());
         } catch (NullPointerException e) {
             throw new PricingPlanEvaluationException("Error while retrieving plan context! Please check your configuration file or add a plan with the given name");
         }
 
-        PricingManager pricingManager = pricingContext.getPricingManager();
-
-        Map<String, Feature> features = pricingManager.getFeatures();
+        FeatureStatuses featureStatuses = evaluateFeatureStatuses(evaluationContext, planContextManager,
+                evaluationContext.getEffectiveConfiguration());
 
-        Map<String, FeatureStatus> featureStatuses = computeFeatureStatuses(planContextManager, features);
-
-        claims.put("features", featureStatuses);
+        // The claims outlive the evaluation, so they must not hold the buffer of
+        // the thread
+        claims.put("features", featureStatuses.retain());
         claims.put("planContext", planContextManager.getPlanContext());
+        putVersionClaims(claims, evaluationContext);
 
-        return Jwts.builder()
-            .setClaims(claims)
-            .setSubject(subject)
-            .setIssuedAt(new Date(System.currentTimeMillis()))
-            .setExpiration(new Date(System.currentTimeMillis() + pricingContext.getJwtExpiration()))
-            .signWith(SignatureAlgorithm.HS512, pricingContext.getJwtSecret())
-            .compact();
+        return signToken(claims, subject);
     }
 
+    /**
+     * Asynchronous variant of {@link #generateUserToken()}. The user context,
+     * plan and add-ons are retrieved in parallel through the asynchronous
+     * methods of the {@link PricingContext}, and the token is then built on
+     * {@link PricingContext#getAsyncExecutor()} from the memoised inputs, with
+     * the request attributes and the security context of the calling thread.
+     *
+     * @return stage completed with the JWT that contains all the information
+     */
+    public CompletionStage<String> generateUserTokenAsync() {
+
+        PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+
+        // Captured now, as the token is built on the thread that completes the
+        // inputs
+        Executor executor = EvaluationExecutors.withCallerContext(pricingContext.getAsyncExecutor());
+
+        CompletionStage<?> inputs = pricingContext.userAffectedByPricing() ? evaluationContext.loadAsync()
+                : evaluationContext.getUserContextAsync();
+
+        return inputs.thenApplyAsync(loaded -> {
+            try {
+                return PricingEvaluationContextHolder.callWithContext(evaluationContext, this::generateUserToken);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
 
-    private Map<String, FeatureStatus> computeFeatureStatuses(PlanContextManager planContextManager,
-                                                              Map<String, Feature> features) {
+    /**
+     * Generate a compact user authentication JWT. Instead of the user and plan
+     * contexts, it references the pricing with its content hash and contains
+     * the plan and add-ons of the user. The feature statuses are encoded with
+     * {@link CompactTokenCodec}, using the declaration order of the features as
+     * dictionary.
+     *
+     * @return JWT that contains the compact evaluation of the features
+     * @see PricingJwtUtils#getFeaturesFromCompactToken(String)
+     */
+    public String generateCompactUserToken() {
 
-        Map<String, FeatureStatus> featureStatuses = new HashMap<>();
+        Map<String, Object> claims = new HashMap<>();
 
-        for (String featureName : features.keySet()) {
+        PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+        String subject = evaluationContext.getSubject();
 
-            FeatureStatus featureStatus = new FeatureStatus();
-            Feature feature = features.get(featureName);
+        if (pricingContext.userAffectedByPricing()) {
 
-            String expression = features.get(featureName).getExpression();
+            PlanContextManager planContextManager;
             try {
-                Boolean eval = FeatureStatus.computeFeatureEvaluation(expression, planContextManager)
-                    .orElseThrow(() -> new PricingPlanEvaluationException("Evaluation was null"));
-                featureStatus.setEval(eval);
-            } catch (SpelEvaluationException e) {
-                throw new PricingPlanEvaluationException("Error while evaluating the expression of the feature " + featureName + "! Please check the expression");
+                planContextManager = evaluationContext.getPlanContextManager();
+            } catch (NullPointerException e) {
+                throw new PricingPlanEvaluationException("Error while retrieving plan context! Please check your configuration file or add a plan with the given name");
             }
 
-            Optional<String> userContextKey = FeatureStatus.computeUserContextVariable(expression);
+            EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+            FeatureStatuses featureStatuses = evaluateFeatureStatuses(evaluationContext, planContextManager,
+                configuration);
 
-            if (!userContextKey.isPresent()) {
-                featureStatus.setUsed(null);
-                featureStatus.setLimit(null);
-            } else {
-                featureStatus.setUsed(planContextManager.getUserContext().get(userContextKey.get()));
-                if (feature.getExpression().contains("usageLimits")) {
-                    String usageLimitName = feature.getExpression().split("usageLimits")[1].split("[',\"]")[2];
-                    featureStatus.setLimit(((Map<String, Object>) planContextManager.getPlanContext().get("usageLimits")).get(usageLimitName));
-                } else {
-                    featureStatus.setLimit(((Map<String, Object>) planContextManager.getPlanContext().get("features")).get(featureName));
-                }
+            putVersionClaims(claims, evaluationContext);
+            claims.put(CompactTokenCodec.PLAN_CLAIM, configuration.getPlan().getName());
+            if (!configuration.getAddOns().isEmpty()) {
+                claims.put(CompactTokenCodec.ADD_ONS_CLAIM, configuration.getAddOns());
+            }
+            claims.put(CompactTokenCodec.FEATURES_CLAIM,
+                    CompactTokenCodec.encode(featureStatuses, pricingContext.isCompactTokenCompressed()));
+        }
+
+        return signToken(claims, subject);
+    }
+
+    /**
+     * Returns the statuses of the user from the cache of the snapshot, which
+     * are shared with the users with the same subscription and evaluated usage,
+     * evaluating them on a miss.
+     */
+    private FeatureStatuses evaluateFeatureStatuses(PricingEvaluationContext evaluationContext,
+                                                    PlanContextManager planContextManager,
+                                                    EffectiveConfiguration configuration) {
+        return FeatureStatusesCache.of(evaluationContext.getSnapshot()).get(configuration,
+            planContextManager.getUserContext(), () -> computeFeatureStatuses(planContextManager, configuration));
+    }
+
+    /**
+     * Evaluates every feature into the buffer of the current thread, which is
+     * only valid until the token has been built.
+     */
+    private FeatureStatuses computeFeatureStatuses(PlanContextManager planContextManager,
+                                                   EffectiveConfiguration configuration) {
+
+        PricingIndex index = configuration.getIndex();
+        FeatureStatuses featureStatuses = FeatureStatuses.forCurrentThread(index);
+
+        for (int feature = 0; feature < index.featureCount(); feature++) {
+
+            FeatureExpression compiled = index.getExpression(feature);
+            Boolean eval = compiled != null ? compiled.evaluate(configuration, planContextManager.getUserContext()) : null;
 
+            if (eval == null) {
+                String expression = index.getFeature(feature).getExpression();
+                try {
+                    eval = FeatureStatus.computeFeatureEvaluation(expression, planContextManager)
+                        .orElseThrow(() -> new PricingPlanEvaluationException("Evaluation was null"));
+                } catch (SpelEvaluationException e) {
+                    throw new PricingPlanEvaluationException("Error while evaluating the expression of the feature " + index.featureName(feature) + "! Please check the expression");
+                }
             }
+            featureStatuses.setEval(feature, eval);
+
+            String userContextKey = index.featureUserContextKey(feature);
 
-            featureStatuses.put(featureName, featureStatus);
+            if (userContextKey != null) {
+                featureStatuses.setUsed(feature, planContextManager.getUserContext().get(userContextKey));
+                if (index.featureUsesUsageLimit(feature)) {
+                    featureStatuses.setUsageLimit(feature, configuration, index.featureUsageLimit(feature));
+                } else {
+                    featureStatuses.setFeatureLimit(feature, configuration);
+                }
+            }
         }
         return featureStatuses;
 
@@ -149,37 +230,66 @@ public class PricingEvaluatorUtil {
      *                   evaluation
      * @return Modified version of the provided JWT that contains the new expression
      * in the "eval" attribute of the feature.
+     * @throws IllegalArgumentException if the token was generated by
+     *                                  {@link #generateCompactUserToken()}
      */
     public String addExpressionToToken(String token, String featureId, String expression) {
+        return addExpressionsToToken(token, Collections.singletonMap(featureId, expression));
+    }
 
-        Map<String, Map<String, Object>> features = jwtUtils.getFeaturesFromJwtToken(token);
-        String subject = jwtUtils.getSubjectFromJwtToken(token);
+    /**
+     * Modifies the given JWT by changing the evaluation of several features by
+     * {@link String} expressions that will be evaluated on the client side of the
+     * application. The token is verified and signed once, and the rest of its
+     * claims are kept as they are.
+     *
+     * @param token       generated JWT returned by
+     *                    {@link PricingEvaluatorUtil#generateUserToken()} method
+     * @param expressions the expressions that will replace the evaluation of the
+     *                    features, by feature id
+     * @return Modified version of the provided JWT that contains the new
+     * expressions in the "eval" attribute of the features.
+     * @throws IllegalArgumentException if the token was generated by
+     *                                  {@link #generateCompactUserToken()}, whose
+     *                                  features are encoded
+     */
+    public String addExpressionsToToken(String token, Map<String, String> expressions) {
 
-        try {
-            Map<String, Object> feature = (Map<String, Object>) features.get(featureId);
-            feature.put("eval", expression);
-        } catch (Exception e) {
-            logger.warning("Feature not found");
+        Claims tokenClaims = jwtUtils.getClaimsFromJwtToken(token);
+
+        if (tokenClaims.containsKey(CompactTokenCodec.FEATURES_CLAIM)) {
+            throw new IllegalArgumentException(
+                    "Expressions cannot be added to a compact token, as its features are encoded");
         }
+        Map<String, Map<String, Object>> features = (Map<String, Map<String, Object>>) tokenClaims.get("features");
 
-        return buildJwtToken(features, subject);
-    }
+        for (Map.Entry<String, String> expression : expressions.entrySet()) {
+            Map<String, Object> feature = features != null ? features.get(expression.getKey()) : null;
+            if (feature == null) {
+                logger.warning("Feature not found");
+                continue;
+            }
+            feature.put("eval", expression.getValue());
+        }
 
-    private String buildJwtToken(Map<String, Map<String, Object>> features, String subject) {
+        // Issue and expiration dates are set again when signing
+        Map<String, Object> claims = new HashMap<>(tokenClaims);
+        claims.remove(Claims.SUBJECT);
+        claims.remove(Claims.ISSUED_AT);
+        claims.remove(Claims.EXPIRATION);
 
-        Map<String, Object> claims = new HashMap<>();
+        return signToken(claims, tokenClaims.getSubject());
+    }
+
+    private void putVersionClaims(Map<String, Object> claims, PricingEvaluationContext evaluationContext) {
+        claims.put(PricingJwtUtils.PRICING_VERSION_CLAIM, evaluationContext.getPricingVersion());
+        claims.put(PricingJwtUtils.SUBSCRIPTION_FINGERPRINT_CLAIM, evaluationContext.getSubscriptionFingerprint());
+    }
 
-        claims.put("features", features);
-        claims.put("userContext", pricingContext.getUserContext());
-        claims.put("planContext", pricingContext.getPlanContext());
-
-        return Jwts.builder()
-            .setClaims(claims)
-            .setSubject(subject)
-            .setIssuedAt(new Date(System.currentTimeMillis()))
-            .setExpiration(new Date(System.currentTimeMillis() + pricingContext.getJwtExpiration()))
-            .signWith(SignatureAlgorithm.HS512, pricingContext.getJwtSecret())
-            .compact();
+    private String signToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
+        return JwtSigner.of(pricingContext).sign(claims, subject, new Date(now),
+            new Date(now + pricingContext.getJwtExpiration()));
     }
 
 }
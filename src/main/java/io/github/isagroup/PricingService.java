@@ -22,6 +22,8 @@ import io.github.isagroup.models.usagelimittypes.NonRenewable;
 import io.github.isagroup.models.usagelimittypes.Renewable;
 import io.github.isagroup.models.usagelimittypes.ResponseDriven;
 import io.github.isagroup.models.usagelimittypes.TimeDriven;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import io.github.isagroup.services.snapshot.PricingSnapshotRegistry;
 import io.github.isagroup.services.yaml.YamlUtils;
 import io.github.isagroup.utils.PricingValidators;
 
@@ -535,6 +537,37 @@ public class PricingService {
         YamlUtils.writeYaml(pricingManager, pricingContext.getConfigFilePath());
     }
 
+    // ------------------------- VARIABLES MANAGEMENT ------------------------- //
+
+    /**
+     * Updates the value of a variable of the pricing configuration. The variable
+     * is updated in the pricing currently in use, so only the prices defined by
+     * formulas that reference it are evaluated again, and the configuration
+     * file is then rewritten with the new value.
+     * 
+     * @param name  the name of the variable
+     * @param value the new value of the variable
+     * @throws IllegalArgumentException if the variable does not exist in the
+     *                                  current pricing configuration
+     */
+    @Transactional
+    public void updateVariableFromConfiguration(String name, Object value) {
+        PricingSnapshot snapshot = pricingContext.getPricingSnapshot();
+        PricingManager pricingManager = snapshot.getPricingManager();
+
+        if (pricingManager.getVariables() == null || !pricingManager.getVariables().containsKey(name)) {
+            throw new IllegalArgumentException(
+                    "There is no variable with the name " + name + " in the current pricing configuration");
+        }
+
+        pricingManager.updateVariable(name, value);
+
+        YamlUtils.writeYaml(pricingManager, pricingContext.getConfigFilePath());
+
+        PricingSnapshotRegistry.getInstance().rewritten(pricingContext.getConfigFilePath(), snapshot,
+                YamlUtils.readYamlContent(pricingContext.getConfigFilePath()));
+    }
+
     // ------------------------- PRIVATE FUNCTIONS ------------------------- //
 
     private Map<String, UsageLimit> updateUsageLimitsWithUpdatedFeature(String previousName, Feature feature, Map<String, UsageLimit> usageLimits){
@@ -6,10 +6,39 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Annotation automates the feature validation on the server side
+ * Annotation automates the feature validation on the server side.
+ * 
+ * It can be placed on a method or on a type. When placed on a type, every
+ * public method of the type is validated; if a method is annotated too, both
+ * annotations must be satisfied.
  */
-@Target(ElementType.METHOD)
+@Target({ ElementType.METHOD, ElementType.TYPE })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface PricingPlanAware {
     public String featureName() default "";
-}
\ No newline at end of file
+
+    /**
+     * Additional features that are evaluated together with
+     * {@link #featureName()}.
+     */
+    public String[] featureNames() default {};
+
+    /**
+     * Whether all the features must be evaluated as true, or only one of them.
+     */
+    public Match match() default Match.ALL;
+
+    /**
+     * Whether the annotated method changes the usage of the user. When true,
+     * the user context memoised for the current request is discarded after the
+     * method is executed, so the evaluation reads the updated usage, and the
+     * usage of the features is reserved beforehand if a usage counter store is
+     * configured. Set it to false on methods that only read, so the memoised
+     * user context is reused.
+     */
+    public boolean changesUsage() default true;
+
+    public enum Match {
+        ALL, ANY
+    }
+}
@@ -1,20 +1,42 @@
 package io.github.isagroup.annotations;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.*;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.ReactiveAdapter;
+import org.springframework.core.ReactiveAdapterRegistry;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.ClassUtils;
 
 import io.github.isagroup.PricingContext;
+import io.github.isagroup.annotations.PricingPlanAware.Match;
 import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.exceptions.RateLimitExceededException;
 import io.github.isagroup.models.Feature;
 import io.github.isagroup.models.FeatureStatus;
 import io.github.isagroup.models.PlanContextManager;
-import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.FeatureExpression;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import io.github.isagroup.services.ratelimit.RateLimitResult;
+import io.github.isagroup.services.ratelimit.UsageLimitRateLimiter;
+import io.github.isagroup.services.usage.UsageCounterStore;
+import io.github.isagroup.services.usage.UsageLimitEnforcer;
+import io.github.isagroup.services.usage.UsageReservation;
 
 @Aspect
 @Component
@@ -23,104 +45,349 @@ public class PricingPlanAwareAspect {
     @Autowired
     private PricingContext pricingContext;
 
+    private UsageLimitEnforcer usageLimitEnforcer;
+
+    private UsageLimitRateLimiter usageLimitRateLimiter;
+
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            PricingPlanAwareAspect.class.getClassLoader());
+
+    private final Map<MethodClassKey, PricingPlanAwareMetadata> metadataCache = new ConcurrentHashMap<>();
+
+    /**
+     * Enables the enforcement of usage limits through the given store. When no
+     * store is configured, usage limits are only checked against the user
+     * context memoised for the current request after the method is executed.
+     * 
+     * @param usageCounterStore store that keeps the usage counters
+     */
+    @Autowired(required = false)
+    public void setUsageCounterStore(UsageCounterStore usageCounterStore) {
+        this.usageLimitEnforcer = new UsageLimitEnforcer(usageCounterStore);
+        excludeRateLimitedUsageLimits();
+    }
+
+    /**
+     * Enables the enforcement of throughput usage limits through the given rate
+     * limiter. Those limits are then no longer reserved in the usage counters.
+     * 
+     * @param usageLimitRateLimiter rate limiter of the usage limits
+     */
+    @Autowired(required = false)
+    public void setUsageLimitRateLimiter(UsageLimitRateLimiter usageLimitRateLimiter) {
+        this.usageLimitRateLimiter = usageLimitRateLimiter;
+        excludeRateLimitedUsageLimits();
+    }
+
+    private void excludeRateLimitedUsageLimits() {
+        if (usageLimitEnforcer != null && usageLimitRateLimiter != null) {
+            usageLimitEnforcer.setExcludedUsageLimits(UsageLimitRateLimiter::isRateLimited);
+        }
+    }
+
     @Around("@annotation(pricingPlanAware)")
     @Transactional(rollbackFor = PricingPlanEvaluationException.class)
     public Object validatePricingPlan(ProceedingJoinPoint joinPoint, PricingPlanAware pricingPlanAware)
             throws Throwable, PricingPlanEvaluationException {
+        return validate(joinPoint, resolveMetadata(joinPoint, pricingPlanAware, null));
+    }
 
-        Object proceed = joinPoint.proceed();
+    @Around("@within(pricingPlanAware) && !@annotation(io.github.isagroup.annotations.PricingPlanAware)")
+    @Transactional(rollbackFor = PricingPlanEvaluationException.class)
+    public Object validateTypePricingPlan(ProceedingJoinPoint joinPoint, PricingPlanAware pricingPlanAware)
+            throws Throwable, PricingPlanEvaluationException {
+        return validate(joinPoint, resolveMetadata(joinPoint, null, pricingPlanAware));
+    }
+
+    private Object validate(ProceedingJoinPoint joinPoint, PricingPlanAwareMetadata metadata) throws Throwable {
+
+        PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+
+        ReactiveAdapter adapter = reactiveAdapter(joinPoint);
+
+        if (adapter != null) {
+            return ReactivePricingPlanAwareValidation.validate(this, joinPoint, metadata, evaluationContext, adapter);
+        }
+
+        Admission admission = beforeProceed(metadata, evaluationContext);
 
-        String featureId = pricingPlanAware.featureName();
+        try {
+            Object proceed = joinPoint.proceed();
 
-        // Realizar la evaluación del contexto utilizando el valor de "featureId"
-        Boolean contextEvaluation = evaluateContext(featureId);
+            afterProceed(metadata, evaluationContext, admission);
 
-        if (contextEvaluation == null) {
-            contextEvaluation = false;
+            return proceed;
+        } catch (Throwable e) {
+            release(admission, evaluationContext);
+            throw e;
         }
+    }
 
-        if (!contextEvaluation) {
-            throw new PricingPlanEvaluationException("You have reached the limit of the feature: " + featureId);
+    /**
+     * Returns the adapter of the reactive type returned by the intercepted
+     * method, such as {@code Mono}, {@code Flux} or {@code CompletableFuture},
+     * or null if the method is synchronous or Reactor is not available.
+     */
+    private ReactiveAdapter reactiveAdapter(ProceedingJoinPoint joinPoint) {
+
+        if (!REACTOR_PRESENT || !(joinPoint.getSignature() instanceof MethodSignature signature)
+                || signature.getReturnType() == null) {
+            return null;
         }
 
-        return proceed;
+        return ReactiveAdapterRegistry.getSharedInstance().getAdapter(signature.getReturnType());
     }
 
-    private Boolean evaluateContext(String featureName) {
+    /**
+     * Consumes the rate limits and reserves the usage of the features before the
+     * method is executed. Nothing remains consumed if the invocation is
+     * rejected.
+     */
+    Admission beforeProceed(PricingPlanAwareMetadata metadata, PricingEvaluationContext evaluationContext) {
 
-        PlanContextManager planContextManager = new PlanContextManager();
-        
-        try{
-            planContextManager.setUserContext(pricingContext.getUserContext());
-            planContextManager.setPlanContext(pricingContext.getPlanContext());
-        }catch(NullPointerException e){
-            throw new PricingPlanEvaluationException("The pricing context is null. Please, chech the path to the configuration file.");
+        List<String> rateLimitedFeatures = acquireRateLimits(metadata, evaluationContext);
+
+        try {
+            return new Admission(rateLimitedFeatures, reserveUsage(metadata, evaluationContext));
+        } catch (RuntimeException | Error e) {
+            releaseRateLimits(rateLimitedFeatures, evaluationContext);
+            throw e;
         }
+    }
 
-        PricingManager pricingManager = pricingContext.getPricingManager();
+    /**
+     * Evaluates the features once the method has been executed and commits the
+     * reserved usage if every requirement is satisfied.
+     */
+    void afterProceed(PricingPlanAwareMetadata metadata, PricingEvaluationContext evaluationContext,
+            Admission admission) {
+
+        // The method may have changed the usage, so the memoised user context
+        // cannot be trusted anymore
+        if (metadata.changesUsage()) {
+            evaluationContext.invalidateUserContext();
+        }
 
-        Map<String, Feature> features = pricingManager.getFeatures();
-        Feature feature = features.get(featureName);
+        // Every feature is evaluated once over the same context, then each
+        // requirement is checked against the results
+        Map<String, Boolean> evaluations = evaluateContext(metadata.getFeatureNames(), evaluationContext);
 
-        if (feature == null) {
-            throw new PricingPlanEvaluationException("The feature " + featureName + " does not exist in the current pricing configuration");
+        for (PricingPlanAwareMetadata.Requirement requirement : metadata.getRequirements()) {
+            checkRequirement(requirement, evaluations);
         }
 
-        FeatureStatus featureStatus = new FeatureStatus();
+        if (usageLimitEnforcer != null) {
+            usageLimitEnforcer.commit(admission.reservations);
+        }
+    }
 
-        String expression;
+    /**
+     * Gives back the rate limits and the usage consumed by an invocation that
+     * failed or was rejected after it was admitted.
+     */
+    void release(Admission admission, PricingEvaluationContext evaluationContext) {
+        try {
+            releaseRateLimits(admission.rateLimitedFeatures, evaluationContext);
+        } finally {
+            if (usageLimitEnforcer != null) {
+                usageLimitEnforcer.release(admission.reservations);
+            }
+        }
+    }
 
-        if (feature.getServerExpression() != null) {
-            expression = feature.getServerExpression();
-        } else {
-            expression = feature.getExpression();
+    /**
+     * Consumes a request of the rate limited usage limits of the features. Every
+     * admitted invocation counts, whether or not it changes the usage.
+     *
+     * @return the features whose requests were consumed
+     */
+    private List<String> acquireRateLimits(PricingPlanAwareMetadata metadata,
+            PricingEvaluationContext evaluationContext) {
+
+        List<String> acquired = new ArrayList<>();
+
+        if (usageLimitRateLimiter == null) {
+            return acquired;
         }
 
-        Boolean eval = FeatureStatus.computeFeatureEvaluation(expression, planContextManager)
-                .orElseThrow(() -> new PricingPlanEvaluationException("Evaluation was null"));
-        featureStatus.setEval(eval);
+        try {
+            for (String featureName : metadata.getFeatureNames()) {
+                RateLimitResult result = usageLimitRateLimiter.acquireForFeature(featureName, evaluationContext);
 
-        Optional<String> userContextKey = FeatureStatus.computeUserContextVariable(expression);
+                if (!result.isAllowed()) {
+                    throw new RateLimitExceededException(
+                            "You have exceeded the rate limit of the feature: " + featureName, result.getRetryAfter());
+                }
 
-        if (!userContextKey.isPresent()) {
-            featureStatus.setUsed(null);
-            featureStatus.setLimit(null);
-        } else {
-            featureStatus.setUsed(planContextManager.getUserContext().get(userContextKey.get()));
-            featureStatus.setLimit(planContextManager.getPlanContext().get(featureName));
+                acquired.add(featureName);
+            }
+        } catch (RuntimeException | Error e) {
+            releaseRateLimits(acquired, evaluationContext);
+            throw e;
         }
 
-        return featureStatus.getEval();
+        return acquired;
+    }
 
-        // Map<String, Object> userContext = pricingContext.getUserContext();
-        // Map<String, Object> planContext = pricingContext.getPlanContext();
-        // Map<String, Feature> evaluationContext = pricingContext.getFeatures();
+    private void releaseRateLimits(List<String> featureNames, PricingEvaluationContext evaluationContext) {
+        if (usageLimitRateLimiter != null) {
+            for (String featureName : featureNames) {
+                usageLimitRateLimiter.releaseForFeature(featureName, evaluationContext);
+            }
+        }
+    }
 
-        // PlanContextManager planContextManager = new PlanContextManager();
+    /**
+     * Reserves the usage of the features before the method is executed, so
+     * concurrent invocations cannot exceed the limits of the user's plan.
+     */
+    private List<UsageReservation> reserveUsage(PricingPlanAwareMetadata metadata,
+            PricingEvaluationContext evaluationContext) {
 
-        // planContextManager.setUserContext(userContext);
-        // planContextManager.setPlanContext(planContext);
+        List<UsageReservation> reservations = new ArrayList<>();
 
-        // try {
-        //     String expression = evaluationContext.get(featureId).getServerExpression();
+        if (usageLimitEnforcer == null || !metadata.changesUsage()) {
+            return reservations;
+        }
 
-        //     if (expression == null) {
-        //         expression = evaluationContext.get(featureId).getExpression();
-        //     }
+        Map<String, Boolean> reserved = new HashMap<>();
 
-        //     if (!expression.trim().equals("")) {
+        for (String featureName : metadata.getFeatureNames()) {
+            Optional<List<UsageReservation>> featureReservations = usageLimitEnforcer.reserve(featureName,
+                    evaluationContext);
+            featureReservations.ifPresent(reservations::addAll);
+            reserved.put(featureName, featureReservations.isPresent());
+        }
 
-        //         ExpressionParser parser = new SpelExpressionParser();
-        //         EvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding().build();
+        try {
+            for (PricingPlanAwareMetadata.Requirement requirement : metadata.getRequirements()) {
+                checkRequirement(requirement, reserved);
+            }
+        } catch (PricingPlanEvaluationException e) {
+            usageLimitEnforcer.release(reservations);
+            throw e;
+        }
 
-        //         return parser.parseExpression(expression).getValue(context, planContextManager, Boolean.class);
-        //     } else {
-        //         return false;
-        //     }
-        // } catch (NullPointerException e) {
-        //     throw new PricingPlanEvaluationException(
-        //             "The feature " + featureId + " does not exist in the current pricing configuration");
-        // }
+        return reservations;
+    }
 
+    private void checkRequirement(PricingPlanAwareMetadata.Requirement requirement, Map<String, Boolean> evaluations) {
+
+        List<String> failedFeatures = new ArrayList<>();
+
+        for (String featureId : requirement.getFeatureNames()) {
+            if (Boolean.TRUE.equals(evaluations.get(featureId))) {
+                if (requirement.getMatch() == Match.ANY) {
+                    return;
+                }
+            } else {
+                failedFeatures.add(featureId);
+            }
+        }
+
+        if (failedFeatures.isEmpty()) {
+            return;
+        }
+
+        if (requirement.getMatch() == Match.ALL || failedFeatures.size() == 1) {
+            throw new PricingPlanEvaluationException("You have reached the limit of the feature: " + failedFeatures.get(0));
+        }
+
+        throw new PricingPlanEvaluationException(
+                "You have reached the limit of the features: " + String.join(", ", failedFeatures));
+    }
+
+    /**
+     * Resolves the annotations that apply to the intercepted method. The result
+     * is cached per method and target class, so reflection only happens on the
+     * first invocation.
+     */
+    private PricingPlanAwareMetadata resolveMetadata(ProceedingJoinPoint joinPoint, PricingPlanAware methodAnnotation,
+            PricingPlanAware typeAnnotation) {
+
+        if (!(joinPoint.getSignature() instanceof MethodSignature signature)) {
+            return PricingPlanAwareMetadata.of(methodAnnotation, typeAnnotation);
+        }
+
+        Method method = signature.getMethod();
+        Class<?> targetClass = joinPoint.getTarget() != null ? ClassUtils.getUserClass(joinPoint.getTarget())
+                : method.getDeclaringClass();
+
+        return metadataCache.computeIfAbsent(new MethodClassKey(method, targetClass), key -> {
+            PricingPlanAware methodLevel = methodAnnotation != null ? methodAnnotation
+                    : AnnotationUtils.findAnnotation(method, PricingPlanAware.class);
+            PricingPlanAware typeLevel = typeAnnotation != null ? typeAnnotation
+                    : AnnotationUtils.findAnnotation(targetClass, PricingPlanAware.class);
+            return PricingPlanAwareMetadata.of(methodLevel, typeLevel);
+        });
+    }
+
+    private Map<String, Boolean> evaluateContext(List<String> featureNames, PricingEvaluationContext evaluationContext) {
+
+        PlanContextManager planContextManager = new PlanContextManager();
+        
+        try{
+            planContextManager.setUserContext(evaluationContext.getUserContext());
+            planContextManager.setPlanContext(evaluationContext.getPlanContext());
+        }catch(NullPointerException e){
+            throw new PricingPlanEvaluationException("The pricing context is null. Please, chech the path to the configuration file.");
+        }
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+        Map<String, Boolean> evaluations = new HashMap<>();
+
+        for (String featureName : featureNames) {
+            evaluations.put(featureName, evaluateFeature(featureName, configuration, planContextManager));
+        }
+
+        return evaluations;
+    }
+
+    private Boolean evaluateFeature(String featureName, EffectiveConfiguration configuration,
+            PlanContextManager planContextManager) {
+
+        PricingIndex index = configuration.getIndex();
+        int feature = index.featureOrdinal(featureName);
+
+        if (feature < 0) {
+            throw new PricingPlanEvaluationException("The feature " + featureName + " does not exist in the current pricing configuration");
+        }
+
+        FeatureExpression compiled = index.getServerExpression(feature);
+        Boolean eval = compiled != null ? compiled.evaluate(configuration, planContextManager.getUserContext()) : null;
+
+        if (eval != null) {
+            return eval;
+        }
+
+        Feature definition = index.getFeature(feature);
+        String expression;
+
+        if (definition.getServerExpression() != null) {
+            expression = definition.getServerExpression();
+        } else {
+            expression = definition.getExpression();
+        }
+
+        return FeatureStatus.computeFeatureEvaluation(expression, planContextManager)
+                .orElseThrow(() -> new PricingPlanEvaluationException("Evaluation was null"));
+    }
+
+    /**
+     * What an invocation consumed before the method is executed. The rate
+     * limits remain consumed once the invocation succeeds, while the usage
+     * reservations are committed.
+     */
+    static final class Admission {
+
+        static final Admission NONE = new Admission(List.of(), List.of());
+
+        private final List<String> rateLimitedFeatures;
+        private final List<UsageReservation> reservations;
+
+        private Admission(List<String> rateLimitedFeatures, List<UsageReservation> reservations) {
+            this.rateLimitedFeatures = rateLimitedFeatures;
+            this.reservations = reservations;
+        }
     }
-}
\ No newline at end of file
+}
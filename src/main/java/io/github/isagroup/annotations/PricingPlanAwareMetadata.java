@@ -0,0 +1,112 @@
+package io.github.isagroup.annotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.github.isagroup.annotations.PricingPlanAware.Match;
+
+/**
+ * Resolved form of the {@link PricingPlanAware} annotations that apply to a
+ * method: the annotation of the method itself and the one of its type.
+ */
+public class PricingPlanAwareMetadata {
+
+    private final List<Requirement> requirements;
+    private final List<String> featureNames;
+    private final boolean changesUsage;
+
+    private PricingPlanAwareMetadata(List<Requirement> requirements) {
+        this.requirements = Collections.unmodifiableList(requirements);
+
+        Set<String> names = new LinkedHashSet<>();
+        boolean usage = false;
+
+        for (Requirement requirement : requirements) {
+            names.addAll(requirement.getFeatureNames());
+            usage |= requirement.changesUsage;
+        }
+
+        this.featureNames = List.copyOf(names);
+        this.changesUsage = usage;
+    }
+
+    /**
+     * Resolves the metadata of a method.
+     * 
+     * @param methodAnnotation annotation of the method, may be null
+     * @param typeAnnotation   annotation of the type that declares the method, may
+     *                         be null
+     * @return the resolved metadata
+     */
+    public static PricingPlanAwareMetadata of(PricingPlanAware methodAnnotation, PricingPlanAware typeAnnotation) {
+        List<Requirement> requirements = new ArrayList<>();
+
+        if (typeAnnotation != null) {
+            requirements.add(Requirement.of(typeAnnotation));
+        }
+
+        if (methodAnnotation != null) {
+            requirements.add(Requirement.of(methodAnnotation));
+        }
+
+        return new PricingPlanAwareMetadata(requirements);
+    }
+
+    public List<Requirement> getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * Returns every feature referenced by the requirements, without duplicates
+     * and in declaration order.
+     * 
+     * @return names of the features to evaluate
+     */
+    public List<String> getFeatureNames() {
+        return featureNames;
+    }
+
+    public boolean changesUsage() {
+        return changesUsage;
+    }
+
+    /**
+     * Group of features that must be evaluated as true following a
+     * {@link Match} policy.
+     */
+    public static class Requirement {
+
+        private final List<String> featureNames;
+        private final Match match;
+        private final boolean changesUsage;
+
+        private Requirement(List<String> featureNames, Match match, boolean changesUsage) {
+            this.featureNames = featureNames;
+            this.match = match;
+            this.changesUsage = changesUsage;
+        }
+
+        private static Requirement of(PricingPlanAware annotation) {
+            Set<String> names = new LinkedHashSet<>();
+
+            if (!annotation.featureName().isEmpty() || annotation.featureNames().length == 0) {
+                names.add(annotation.featureName());
+            }
+
+            Collections.addAll(names, annotation.featureNames());
+
+            return new Requirement(List.copyOf(names), annotation.match(), annotation.changesUsage());
+        }
+
+        public List<String> getFeatureNames() {
+            return featureNames;
+        }
+
+        public Match getMatch() {
+            return match;
+        }
+    }
+}
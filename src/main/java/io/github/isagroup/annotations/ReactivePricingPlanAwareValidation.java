@@ -0,0 +1,133 @@
+package io.github.isagroup.annotations;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ReactiveAdapter;
+
+import io.github.isagroup.annotations.PricingPlanAwareAspect.Admission;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Validation of {@link PricingPlanAware} methods that return a reactive type.
+ * It is kept apart from {@link PricingPlanAwareAspect} so Reactor is only
+ * loaded when such a method is intercepted.
+ *
+ * The method is invoked once the rate limits and the usage have been
+ * reserved, and the features are evaluated once its result completes. Both
+ * steps retrieve the user context and the pricing through blocking calls, so
+ * they run on a bounded elastic scheduler. Single-value results are only
+ * emitted when the requirements are satisfied. Multi-value results emit their
+ * elements as they are produced and fail on completion instead.
+ */
+final class ReactivePricingPlanAwareValidation {
+
+    private ReactivePricingPlanAwareValidation() {
+    }
+
+    static Object validate(PricingPlanAwareAspect aspect, ProceedingJoinPoint joinPoint,
+            PricingPlanAwareMetadata metadata, PricingEvaluationContext evaluationContext, ReactiveAdapter adapter) {
+
+        Scheduler scheduler = Schedulers.boundedElastic();
+
+        Publisher<Object> validated;
+
+        if (adapter.isMultiValue()) {
+            validated = Flux.defer(() -> {
+                Settlement settlement = new Settlement(aspect, evaluationContext);
+
+                return offload(evaluationContext, () -> aspect.beforeProceed(metadata, evaluationContext), scheduler)
+                        .doOnNext(settlement::admitted)
+                        .flatMapMany(admission -> Flux.from(proceed(joinPoint, adapter))
+                                .concatWith(offload(evaluationContext, () -> {
+                                    aspect.afterProceed(metadata, evaluationContext, admission);
+                                    settlement.settle();
+                                    return Optional.empty();
+                                }, scheduler).then()))
+                        .doOnError(e -> settlement.release())
+                        .doOnCancel(settlement::release);
+            });
+        } else {
+            validated = Mono.defer(() -> {
+                Settlement settlement = new Settlement(aspect, evaluationContext);
+
+                return offload(evaluationContext, () -> aspect.beforeProceed(metadata, evaluationContext), scheduler)
+                        .doOnNext(settlement::admitted)
+                        .flatMap(admission -> Mono.from(proceed(joinPoint, adapter))
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .flatMap(result -> offload(evaluationContext, () -> {
+                                    aspect.afterProceed(metadata, evaluationContext, admission);
+                                    settlement.settle();
+                                    return result;
+                                }, scheduler)))
+                        .flatMap(Mono::justOrEmpty)
+                        .doOnError(e -> settlement.release())
+                        .doOnCancel(settlement::release);
+            });
+        }
+
+        return adapter.fromPublisher(validated);
+    }
+
+    private static <T> Mono<T> offload(PricingEvaluationContext evaluationContext,
+            Callable<T> step, Scheduler scheduler) {
+        return Mono.fromCallable(() -> PricingEvaluationContextHolder.callWithContext(evaluationContext, step))
+                .subscribeOn(scheduler);
+    }
+
+    private static Publisher<Object> proceed(ProceedingJoinPoint joinPoint, ReactiveAdapter adapter) {
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            return Mono.error(e);
+        }
+
+        if (result == null) {
+            return Mono.empty();
+        }
+
+        return adapter.toPublisher(result);
+    }
+
+    /**
+     * Admission of an invocation, released at most once if the invocation
+     * fails or is cancelled before it is committed.
+     */
+    private static final class Settlement {
+
+        private final PricingPlanAwareAspect aspect;
+        private final PricingEvaluationContext evaluationContext;
+        private final AtomicBoolean settled = new AtomicBoolean();
+        private volatile Admission admission = Admission.NONE;
+
+        private Settlement(PricingPlanAwareAspect aspect, PricingEvaluationContext evaluationContext) {
+            this.aspect = aspect;
+            this.evaluationContext = evaluationContext;
+        }
+
+        private void admitted(Admission admission) {
+            this.admission = admission;
+        }
+
+        private void settle() {
+            settled.set(true);
+        }
+
+        private void release() {
+            if (settled.compareAndSet(false, true)) {
+                aspect.release(admission, evaluationContext);
+            }
+        }
+    }
+}
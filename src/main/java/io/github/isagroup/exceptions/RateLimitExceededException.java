@@ -0,0 +1,17 @@
+package io.github.isagroup.exceptions;
+
+import java.time.Duration;
+
+public class RateLimitExceededException extends PricingPlanEvaluationException {
+
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
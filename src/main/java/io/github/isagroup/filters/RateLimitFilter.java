@@ -0,0 +1,88 @@
+package io.github.isagroup.filters;
+
+import java.io.IOException;
+import java.util.List;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.github.isagroup.PricingContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import io.github.isagroup.services.ratelimit.RateLimitResult;
+import io.github.isagroup.services.ratelimit.UsageLimitRateLimiter;
+
+/**
+ * Rejects with 429 (Too Many Requests) the requests of users that exceed the
+ * rate limited usage limits of their plan. The response includes a
+ * {@code Retry-After} header with the seconds to wait.
+ * 
+ * The usage limits it applies must be given explicitly, and should not be
+ * linked to the features of {@code PricingPlanAware} methods when a
+ * {@link UsageLimitRateLimiter} is also registered in the aspect, or those
+ * requests are counted twice. The requests consumed are given back when the
+ * rest of the chain fails with an exception.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+	private final PricingContext pricingContext;
+
+	private final UsageLimitRateLimiter usageLimitRateLimiter;
+
+	private final List<String> usageLimitNames;
+
+	public RateLimitFilter(PricingContext pricingContext, UsageLimitRateLimiter usageLimitRateLimiter,
+			String... usageLimitNames) {
+		if (usageLimitNames.length == 0) {
+			throw new IllegalArgumentException("At least one usage limit must be rate limited by the filter");
+		}
+
+		this.pricingContext = pricingContext;
+		this.usageLimitRateLimiter = usageLimitRateLimiter;
+		this.usageLimitNames = List.of(usageLimitNames);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		boolean bindRequestAttributes = RequestContextHolder.getRequestAttributes() == null;
+		ServletRequestAttributes requestAttributes = null;
+
+		if (bindRequestAttributes) {
+			requestAttributes = new ServletRequestAttributes(request, response);
+			RequestContextHolder.setRequestAttributes(requestAttributes);
+		}
+
+		try {
+			PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+			RateLimitResult result = usageLimitRateLimiter.acquire(usageLimitNames, evaluationContext);
+
+			if (!result.isAllowed()) {
+				long retryAfter = Math.max(1, (long) Math.ceil(result.getRetryAfter().toMillis() / 1000.0));
+				response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+				response.setHeader("Retry-After", String.valueOf(retryAfter));
+				return;
+			}
+
+			try {
+				filterChain.doFilter(request, response);
+			} catch (IOException | ServletException | RuntimeException e) {
+				usageLimitRateLimiter.release(usageLimitNames, evaluationContext);
+				throw e;
+			}
+		} finally {
+			if (bindRequestAttributes) {
+				RequestContextHolder.resetRequestAttributes();
+				requestAttributes.requestCompleted();
+			}
+		}
+	}
+}
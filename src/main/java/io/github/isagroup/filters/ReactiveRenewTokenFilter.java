@@ -0,0 +1,116 @@
+package io.github.isagroup.filters;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.github.isagroup.PricingContext;
+import io.github.isagroup.PricingEvaluatorUtil;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import io.github.isagroup.services.jwt.PricingJwtUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux equivalent of {@link RenewTokenFilter}. The user context, plan and
+ * add-ons are retrieved in parallel through the asynchronous methods of the
+ * {@link PricingContext}, and the token is checked and generated on a bounded
+ * elastic scheduler instead of on the event loop, as the pricing configuration
+ * may still be read from disk. The request continues once the header has been
+ * set.
+ */
+public class ReactiveRenewTokenFilter implements WebFilter {
+
+	@Autowired
+	private PricingJwtUtils jwtUtils;
+
+	@Autowired
+	private PricingEvaluatorUtil pricingEvaluatorUtil;
+
+	@Autowired
+	private PricingContext pricingContext;
+
+	private Scheduler scheduler = Schedulers.boundedElastic();
+
+	/**
+	 * Sets the scheduler the blocking evaluation is offloaded to. Defaults to
+	 * {@link Schedulers#boundedElastic()}.
+	 *
+	 * @param scheduler a scheduler whose threads may block
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+		HttpHeaders headers = exchange.getRequest().getHeaders();
+
+		String pricingJwt = parsePricingJwt(headers);
+		String authJwt = parseAuthJwt(headers);
+
+		if (authJwt == null) {
+			return chain.filter(exchange);
+		}
+
+		PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+
+		// The inputs of the application are retrieved in parallel before the
+		// evaluation, which then reads them from memory
+		return Mono.fromCallable(() -> jwtUtils.validateJwtToken(authJwt) && pricingContext.userAffectedByPricing())
+				.subscribeOn(scheduler)
+				.filter(Boolean::booleanValue)
+				.flatMap(affected -> Mono.fromCompletionStage(evaluationContext.loadAsync()))
+				.publishOn(scheduler)
+				.flatMap(loaded -> Mono.fromCallable(() -> renewToken(evaluationContext, pricingJwt)))
+				.doOnNext(token -> token.ifPresent(
+						value -> exchange.getResponse().getHeaders().add("Pricing-Token", value)))
+				.then(Mono.defer(() -> chain.filter(exchange)));
+	}
+
+	private Optional<String> renewToken(PricingEvaluationContext evaluationContext, String pricingJwt)
+			throws Exception {
+
+		// There are no request attributes to memoise the evaluation context in, so
+		// it is shared through the thread while the token is checked and generated
+		return PricingEvaluationContextHolder.callWithContext(evaluationContext, () -> {
+
+			// The token is only evaluated again when the pricing, the subscription
+			// or the usage of the user changed since it was issued
+			if (pricingJwt != null && !pricingJwt.equals("null") && jwtUtils.isPricingTokenCurrent(pricingJwt)) {
+				return Optional.empty();
+			}
+
+			return Optional.of(pricingEvaluatorUtil.generateUserToken());
+		});
+	}
+
+	private String parsePricingJwt(HttpHeaders headers) {
+		String headerPricing = headers.getFirst("Pricing-Token");
+
+		if (StringUtils.hasText(headerPricing)) {
+			return headerPricing;
+		}
+
+		return null;
+	}
+
+	private String parseAuthJwt(HttpHeaders headers) {
+		String headerAuth = headers.getFirst("Authorization");
+
+		if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+			return headerAuth.substring(7, headerAuth.length());
+		}
+
+		return null;
+	}
+
+}
@@ -9,6 +9,8 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.beans.factory.annotation.Value;
 
@@ -34,25 +36,42 @@ public class RenewTokenFilter extends OncePerRequestFilter {
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
 			throws ServletException, IOException {
 
+		// The evaluation context is memoised in the request attributes, so they
+		// must be bound before the token is generated
+		boolean bindRequestAttributes = RequestContextHolder.getRequestAttributes() == null;
+		ServletRequestAttributes requestAttributes = null;
+
+		if (bindRequestAttributes) {
+			requestAttributes = new ServletRequestAttributes(request, response);
+			RequestContextHolder.setRequestAttributes(requestAttributes);
+		}
+
+		try {
+			renewToken(request, response);
+			filterChain.doFilter(request, response);
+		} finally {
+			if (bindRequestAttributes) {
+				RequestContextHolder.resetRequestAttributes();
+				requestAttributes.requestCompleted();
+			}
+		}
+	}
+
+	private void renewToken(HttpServletRequest request, HttpServletResponse response) {
+
 		String pricingJwt = parsePricingJwt(request);
 		String authJwt = parseAuthJwt(request);
 
 		if (authJwt != null && jwtUtils.validateJwtToken(authJwt) && pricingContext.userAffectedByPricing()) {
-			
-			String newToken = pricingEvaluatorUtil.generateUserToken();
-
-			String newTokenFeatures = jwtUtils.getFeaturesFromJwtToken(newToken).toString();
-			String jwtFeatures = "";
-			
-			if (pricingJwt != null && !pricingJwt.equals("null")) jwtFeatures = jwtUtils.getFeaturesFromJwtToken(pricingJwt).toString();
-			
-			if (!newTokenFeatures.equals(jwtFeatures)) {
-				response.addHeader("Pricing-Token", newToken);
+
+			// The token is only evaluated again when the pricing, the subscription
+			// or the usage of the user changed since it was issued
+			if (pricingJwt != null && !pricingJwt.equals("null") && jwtUtils.isPricingTokenCurrent(pricingJwt)) {
+				return;
 			}
-			
-		}
 
-		filterChain.doFilter(request, response);
+			response.addHeader("Pricing-Token", pricingEvaluatorUtil.generateUserToken());
+		}
 	}
 
 	private String parsePricingJwt(HttpServletRequest request) {
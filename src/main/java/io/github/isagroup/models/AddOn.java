@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import io.github.isagroup.services.formula.PriceFormula;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -20,12 +21,33 @@ public class AddOn {
     private List<String> dependsOn;
     private List<String> excludes;
     private Object price;
+    private PriceFormula priceFormula;
     private String unit;
     private Boolean isPrivate;
     private Map<String, Feature> features;
     private Map<String, UsageLimit> usageLimits;
     private Map<String, UsageLimit> usageLimitsExtensions;
 
+    /**
+     * Returns the price, evaluating the price formula if the price is defined by
+     * one.
+     *
+     * @return the price
+     */
+    public Object getPrice() {
+        return priceFormula != null ? priceFormula.getValue() : price;
+    }
+
+    public void setPrice(Object price) {
+        this.price = price;
+        this.priceFormula = null;
+    }
+
+    public void setPriceFormula(PriceFormula priceFormula) {
+        this.priceFormula = priceFormula;
+        this.price = null;
+    }
+
     public Map<String, Object> serializeAddOn() {
         Map<String, Object> serializedAddOn = new LinkedHashMap<>();
 
@@ -35,16 +57,18 @@ public class AddOn {
             serializedAddOn.put("availableFor", availableFor);
         }
 
-        if (dependsOn != null && !availableFor.isEmpty()) {
-            serializedAddOn.put("dependsOn", availableFor);
+        if (dependsOn != null && !dependsOn.isEmpty()) {
+            serializedAddOn.put("dependsOn", dependsOn);
         }
-        if (excludes != null && !availableFor.isEmpty()) {
-            serializedAddOn.put("excludes", availableFor);
+        if (excludes != null && !excludes.isEmpty()) {
+            serializedAddOn.put("excludes", excludes);
         }
 
         serializedAddOn.put("private", isPrivate);
 
-        if (price != null) {
+        if (priceFormula != null) {
+            serializedAddOn.put("price", priceFormula.getSource());
+        } else if (price != null) {
             serializedAddOn.put("price", price);
         }
 
@@ -58,7 +82,7 @@ public class AddOn {
 
         serializedAddOn.put("features", features);
         serializedAddOn.put("usageLimits", usageLimits);
-        serializedAddOn.put("usageLimitExtensions", usageLimitExtensions);
+        serializedAddOn.put("usageLimitsExtensions", usageLimitExtensions);
 
         return serializedAddOn;
     }
@@ -123,13 +147,13 @@ public class AddOn {
 
     private Optional<Map<String, Object>> serializeUsageLimitExtensions() {
 
-        if (usageLimits == null) {
+        if (usageLimitsExtensions == null) {
             return Optional.empty();
         }
 
         Map<String, Object> serializedUsageLimitExtensions = new LinkedHashMap<>();
 
-        for (UsageLimit usageLimitExtension : usageLimits.values()) {
+        for (UsageLimit usageLimitExtension : usageLimitsExtensions.values()) {
             Optional<Map<String, Object>> serializedUsageLimit = serializeValue(usageLimitExtension.getValue());
             if (serializedUsageLimit.isPresent()) {
 
@@ -4,6 +4,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import io.github.isagroup.services.formula.PriceFormula;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -18,16 +19,37 @@ public class Plan {
     private String name;
     private String description;
     private Object price;
+    private PriceFormula priceFormula;
     private String unit;
     private Boolean isPrivate;
     private Map<String, Feature> features;
     private Map<String, UsageLimit> usageLimits;
 
+    /**
+     * Returns the price, evaluating the price formula if the price is defined by
+     * one.
+     *
+     * @return the price
+     */
+    public Object getPrice() {
+        return priceFormula != null ? priceFormula.getValue() : price;
+    }
+
+    public void setPrice(Object price) {
+        this.price = price;
+        this.priceFormula = null;
+    }
+
+    public void setPriceFormula(PriceFormula priceFormula) {
+        this.priceFormula = priceFormula;
+        this.price = null;
+    }
+
     public Map<String, Object> parseToMap(){
         Map<String, Object> planMap = new LinkedHashMap<>();
         planMap.put("name", name);
         planMap.put("description", description);
-        planMap.put("price", price);
+        planMap.put("price", getPrice());
         planMap.put("unit", unit);
         planMap.put("isPrivate", isPrivate);
         planMap.put("features", features);
@@ -38,7 +60,7 @@ public class Plan {
     public Map<String, Object> serializePlan() {
         Map<String, Object> attributes = new LinkedHashMap<>();
         attributes.put("description", description);
-        attributes.put("price", price);
+        attributes.put("price", priceFormula != null ? priceFormula.getSource() : price);
         attributes.put("unit", unit);
         attributes.put("private", isPrivate);
 
@@ -111,7 +133,7 @@ public class Plan {
 
     @Override
     public String toString() {
-        return "Plan[name=" + name + ", price=" + price + ", unit="
+        return "Plan[name=" + name + ", price=" + getPrice() + ", unit="
                 + unit + ", features: " + features.get("superAdminRole") + "]";
     }
 }
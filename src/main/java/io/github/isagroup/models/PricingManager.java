@@ -1,10 +1,13 @@
 package io.github.isagroup.models;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import io.github.isagroup.services.formula.FormulaContext;
 import io.github.isagroup.services.updaters.Version;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -30,6 +33,44 @@ public class PricingManager {
     private Map<String, UsageLimit> usageLimits;
     private Map<String, Plan> plans;
     private Map<String, AddOn> addOns;
+    @EqualsAndHashCode.Exclude
+    @Setter(AccessLevel.NONE)
+    private FormulaContext formulaContext;
+
+    /**
+     * Returns the context in which the price formulas of this pricing are
+     * evaluated, creating it on the first call.
+     *
+     * @return the formula context of the pricing
+     */
+    public synchronized FormulaContext getFormulaContext() {
+        if (formulaContext == null) {
+            formulaContext = new FormulaContext(variables);
+        }
+        return formulaContext;
+    }
+
+    public synchronized void setVariables(Map<String, Object> variables) {
+        this.variables = variables;
+        if (formulaContext != null) {
+            formulaContext.setVariables(variables);
+        }
+    }
+
+    /**
+     * Sets the value of a variable. Price formulas that reference it are
+     * evaluated again the next time their price is requested.
+     *
+     * @param name  name of the variable
+     * @param value new value of the variable
+     */
+    public synchronized void updateVariable(String name, Object value) {
+        if (variables == null) {
+            variables = new LinkedHashMap<>();
+        }
+        variables.put(name, value);
+        getFormulaContext().setVariable(name, value);
+    }
 
     /**
      * TODO: Check if this method should be here or where
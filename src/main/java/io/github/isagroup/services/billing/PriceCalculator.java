@@ -0,0 +1,266 @@
+package io.github.isagroup.services.billing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.ConfigurationSpace;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+
+/**
+ * Computes the itemised price of subscriptions.
+ *
+ * Unit prices and billing factors are converted to {@link BigDecimal} once,
+ * when the calculator is created. The unit price of each line is multiplied by
+ * the factor of the billing period and rounded to cents, and the line amount is
+ * that unit price times the quantity. Quotes are
+ * memoised in a bounded LRU cache keyed by the plan, the billing period and the
+ * add-on quantities, so repeated subscription shapes are only computed once.
+ */
+public class PriceCalculator {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final int SCALE = 2;
+
+    private final ConfigurationSpace space;
+    private final String currency;
+
+    private final Map<String, Integer> plans = new HashMap<>();
+    private final Map<String, Integer> addOns = new HashMap<>();
+    private final String[] planNames;
+    private final String[] addOnNames;
+
+    // Null when the price is not a number, e.g. "Contact sales"
+    private final BigDecimal[] planPrices;
+    private final BigDecimal[] addOnPrices;
+    private final Map<String, BigDecimal> billingFactors = new HashMap<>();
+
+    private final Map<QuoteKey, PriceQuote> quotes;
+
+    public PriceCalculator(PricingManager pricingManager, int maxSize) {
+        this.space = new ConfigurationSpace(pricingManager);
+        this.currency = pricingManager.getCurrency();
+        this.planNames = space.getPlans().toArray(new String[0]);
+        this.addOnNames = space.getAddOns().toArray(new String[0]);
+
+        this.planPrices = new BigDecimal[planNames.length];
+        for (int p = 0; p < planNames.length; p++) {
+            plans.put(planNames[p], p);
+            planPrices[p] = decimalOf(pricingManager.getPlans().get(planNames[p]).getPrice());
+        }
+
+        this.addOnPrices = new BigDecimal[addOnNames.length];
+        for (int a = 0; a < addOnNames.length; a++) {
+            addOns.put(addOnNames[a], a);
+            addOnPrices[a] = decimalOf(pricingManager.getAddOns().get(addOnNames[a]).getPrice());
+        }
+
+        if (pricingManager.getBilling() != null) {
+            pricingManager.getBilling().forEach((period, factor) -> billingFactors.put(period, BigDecimal.valueOf(factor)));
+        }
+
+        this.quotes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QuoteKey, PriceQuote> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the calculator attached to the snapshot.
+     *
+     * @param snapshot the pricing snapshot
+     * @return the calculator of the snapshot
+     */
+    public static PriceCalculator of(PricingSnapshot snapshot) {
+        return snapshot.computeIfAbsent(PriceCalculator.class,
+                s -> new PriceCalculator(s.getPricingManager(), DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Computes the price of a plan and some add-ons, one unit each.
+     *
+     * @param plan          the plan of the subscription
+     * @param addOnNames    the add-ons of the subscription
+     * @param billingPeriod a key of the pricing billing, or null to apply no
+     *                      factor
+     * @return the itemised price
+     */
+    public PriceQuote calculate(String plan, Collection<String> addOnNames, String billingPeriod) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (String addOnName : addOnNames) {
+            quantities.put(addOnName, 1);
+        }
+        return calculate(plan, quantities, billingPeriod);
+    }
+
+    /**
+     * Computes the price of a plan and some add-ons.
+     *
+     * @param plan            the plan of the subscription
+     * @param addOnQuantities the contracted units of each add-on, e.g. the
+     *                        number of custom domains
+     * @param billingPeriod   a key of the pricing billing, or null to apply no
+     *                        factor
+     * @return the itemised price, with the plan first and the add-ons in
+     *         declaration order
+     * @throws PricingPlanEvaluationException if the subscription is not valid or
+     *                                        any of its items has no numeric
+     *                                        price
+     */
+    public PriceQuote calculate(String plan, Map<String, Integer> addOnQuantities, String billingPeriod) {
+
+        Integer planIndex = plans.get(plan);
+
+        if (planIndex == null) {
+            throw new PricingPlanEvaluationException("The plan " + plan + " does not exist in the current pricing configuration");
+        }
+
+        if (billingPeriod != null && !billingFactors.containsKey(billingPeriod)) {
+            throw new IllegalArgumentException("The billing period " + billingPeriod + " does not exist in the pricing");
+        }
+
+        long mask = 0;
+        int[] quantities = new int[addOnNames.length];
+
+        for (Map.Entry<String, Integer> entry : addOnQuantities.entrySet()) {
+            Integer addOnIndex = addOns.get(entry.getKey());
+
+            if (addOnIndex == null) {
+                throw new PricingPlanEvaluationException(
+                        "The add-on " + entry.getKey() + " does not exist in the current pricing configuration");
+            }
+
+            if (entry.getValue() == null || entry.getValue() < 1) {
+                throw new IllegalArgumentException("The quantity of the add-on " + entry.getKey() + " must be positive");
+            }
+
+            mask |= 1L << addOnIndex;
+            quantities[addOnIndex] = entry.getValue();
+        }
+
+        QuoteKey key = new QuoteKey(planIndex, billingPeriod, mask, quantities);
+
+        synchronized (quotes) {
+            PriceQuote quote = quotes.get(key);
+            if (quote != null) {
+                return quote;
+            }
+        }
+
+        PriceQuote quote = quote(planIndex, mask, quantities, billingPeriod);
+
+        synchronized (quotes) {
+            quotes.putIfAbsent(key, quote);
+        }
+
+        return quote;
+    }
+
+    private PriceQuote quote(int planIndex, long mask, int[] quantities, String billingPeriod) {
+
+        if (!space.isValid(planNames[planIndex], mask)) {
+            throw new PricingPlanEvaluationException("The add-ons " + namesOf(mask)
+                    + " cannot be contracted together with the plan " + planNames[planIndex]);
+        }
+
+        BigDecimal factor = billingPeriod != null ? billingFactors.get(billingPeriod) : BigDecimal.ONE;
+        List<PriceLineItem> items = new ArrayList<>();
+
+        items.add(lineItem(PriceLineItem.Type.PLAN, planNames[planIndex], planPrices[planIndex], 1, factor));
+
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            int addOn = Long.numberOfTrailingZeros(remaining);
+            items.add(lineItem(PriceLineItem.Type.ADD_ON, addOnNames[addOn], addOnPrices[addOn], quantities[addOn],
+                    factor));
+        }
+
+        return new PriceQuote(planNames[planIndex], billingPeriod, currency, items);
+    }
+
+    private PriceLineItem lineItem(PriceLineItem.Type type, String name, BigDecimal price, int quantity,
+            BigDecimal factor) {
+
+        if (price == null) {
+            throw new PricingPlanEvaluationException("The price of " + name + " is not a number");
+        }
+
+        // The amount is derived from the rounded unit price, so every line item
+        // adds up as displayed
+        BigDecimal unitPrice = price.multiply(factor).setScale(SCALE, RoundingMode.HALF_UP);
+        BigDecimal amount = unitPrice.multiply(BigDecimal.valueOf(quantity));
+
+        return new PriceLineItem(type, name, unitPrice, quantity, amount);
+    }
+
+    private List<String> namesOf(long mask) {
+        List<String> names = new ArrayList<>();
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            names.add(addOnNames[Long.numberOfTrailingZeros(remaining)]);
+        }
+        return names;
+    }
+
+    private static BigDecimal decimalOf(Object price) {
+        if (price instanceof BigDecimal) {
+            return (BigDecimal) price;
+        }
+        if (price instanceof Double || price instanceof Float) {
+            return BigDecimal.valueOf(((Number) price).doubleValue());
+        }
+        if (price instanceof Number) {
+            return BigDecimal.valueOf(((Number) price).longValue());
+        }
+        if (price != null) {
+            try {
+                return new BigDecimal(price.toString().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static final class QuoteKey {
+
+        private final int plan;
+        private final String billingPeriod;
+        private final long mask;
+        private final int[] quantities;
+        private final int hash;
+
+        private QuoteKey(int plan, String billingPeriod, long mask, int[] quantities) {
+            this.plan = plan;
+            this.billingPeriod = billingPeriod;
+            this.mask = mask;
+            this.quantities = quantities;
+            this.hash = Objects.hash(plan, billingPeriod, mask, Arrays.hashCode(quantities));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey other = (QuoteKey) o;
+            return plan == other.plan && Objects.equals(billingPeriod, other.billingPeriod) && mask == other.mask
+                    && Arrays.equals(quantities, other.quantities);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.isagroup.services.billing;
+
+import java.math.BigDecimal;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A line of a {@link PriceQuote}: the plan or an add-on, with its discounted
+ * unit price and quantity.
+ */
+@Getter
+@EqualsAndHashCode
+public class PriceLineItem {
+
+    public enum Type {
+        PLAN, ADD_ON
+    }
+
+    private final Type type;
+    private final String name;
+    private final BigDecimal unitPrice;
+    private final int quantity;
+    private final BigDecimal amount;
+
+    PriceLineItem(Type type, String name, BigDecimal unitPrice, int quantity, BigDecimal amount) {
+        this.type = type;
+        this.name = name;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+        this.amount = amount;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + quantity + " x " + unitPrice + " = " + amount;
+    }
+}
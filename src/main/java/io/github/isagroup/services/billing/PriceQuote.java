@@ -0,0 +1,36 @@
+package io.github.isagroup.services.billing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * The itemised price of a subscription for a billing period. Quotes are shared
+ * between callers, so they are immutable.
+ */
+@Getter
+@EqualsAndHashCode
+public class PriceQuote {
+
+    private final String plan;
+    private final String billingPeriod;
+    private final String currency;
+    private final List<PriceLineItem> items;
+    private final BigDecimal total;
+
+    PriceQuote(String plan, String billingPeriod, String currency, List<PriceLineItem> items) {
+        this.plan = plan;
+        this.billingPeriod = billingPeriod;
+        this.currency = currency;
+        this.items = List.copyOf(items);
+        this.total = items.stream().map(PriceLineItem::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Override
+    public String toString() {
+        return "PriceQuote[plan=" + plan + ", billingPeriod=" + billingPeriod + ", items=" + items + ", total="
+                + total + (currency != null ? " " + currency : "") + "]";
+    }
+}
@@ -0,0 +1,513 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.PricingManager;
+import lombok.EqualsAndHashCode;
+
+/**
+ * The valid subscriptions of a pricing, i.e. the plans combined with every set
+ * of add-ons that respects their {@code availableFor}, {@code dependsOn} and
+ * {@code excludes} constraints.
+ *
+ * Add-ons are decided one by one, dependencies first, over bitmasks of their
+ * declaration indexes. An add-on is only included when its transitive
+ * dependencies are still possible and do not conflict with the add-ons already
+ * required, and a required add-on is never excluded. Every partial subscription
+ * can therefore be completed, so no branch is explored in vain.
+ *
+ * Pricings with up to 64 add-ons are supported.
+ */
+public class ConfigurationSpace {
+
+    // Below this number of add-ons the parallel overhead is not worth it
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    // Depth up to which the counting tasks are forked
+    private static final int FORK_DEPTH = 6;
+
+    private final String[] plans;
+    private final String[] addOnNames;
+
+    // Add-on declaration indexes in decision order
+    private final int[] order;
+    // Bits of the add-ons that are decided at or after each position
+    private final long[] futureMasks;
+
+    private final long[] dependencies;
+    private final long[] conflicts;
+    private final long[] closureConflicts;
+    private final long[] includable;
+
+    public ConfigurationSpace(PricingManager pricingManager) {
+
+        this.plans = pricingManager.getPlans() != null ? pricingManager.getPlans().keySet().toArray(new String[0])
+                : new String[0];
+
+        List<AddOn> addOns = pricingManager.getAddOns() != null ? new ArrayList<>(pricingManager.getAddOns().values())
+                : List.of();
+
+        if (addOns.size() > Long.SIZE) {
+            throw new IllegalArgumentException(
+                    "Configuration spaces support up to " + Long.SIZE + " add-ons, found " + addOns.size());
+        }
+
+        int n = addOns.size();
+        Map<String, Integer> indexes = new HashMap<>();
+        this.addOnNames = new String[n];
+
+        for (int i = 0; i < n; i++) {
+            addOnNames[i] = addOns.get(i).getName();
+            indexes.put(addOnNames[i], i);
+        }
+
+        long[] directDependencies = new long[n];
+        this.conflicts = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            AddOn addOn = addOns.get(i);
+            directDependencies[i] = maskOf(addOn.getDependsOn(), indexes);
+
+            long excludes = maskOf(addOn.getExcludes(), indexes);
+            conflicts[i] |= excludes;
+            for (long mask = excludes; mask != 0; mask &= mask - 1) {
+                conflicts[Long.numberOfTrailingZeros(mask)] |= 1L << i;
+            }
+        }
+
+        this.dependencies = transitiveClosure(directDependencies);
+        this.closureConflicts = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            long closure = dependencies[i] | (1L << i);
+            for (long mask = closure; mask != 0; mask &= mask - 1) {
+                closureConflicts[i] |= conflicts[Long.numberOfTrailingZeros(mask)];
+            }
+        }
+
+        this.includable = new long[plans.length];
+
+        for (int p = 0; p < plans.length; p++) {
+            long available = 0;
+            for (int i = 0; i < n; i++) {
+                List<String> availableFor = addOns.get(i).getAvailableFor();
+                if (availableFor == null || availableFor.isEmpty() || availableFor.contains(plans[p])) {
+                    available |= 1L << i;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                long closure = dependencies[i] | (1L << i);
+                if ((closure & ~available) == 0 && (closureConflicts[i] & closure) == 0) {
+                    includable[p] |= 1L << i;
+                }
+            }
+        }
+
+        this.order = dependencyOrder(directDependencies);
+        this.futureMasks = new long[n + 1];
+
+        for (int depth = n - 1; depth >= 0; depth--) {
+            futureMasks[depth] = futureMasks[depth + 1] | (1L << order[depth]);
+        }
+    }
+
+    /**
+     * Lazily enumerates the valid subscriptions. The stream can be made parallel,
+     * in which case pending branches are split between workers.
+     *
+     * @return a stream of the valid subscriptions
+     */
+    public Stream<SubscriptionConfiguration> stream() {
+        Deque<State> states = new ArrayDeque<>();
+        for (int p = plans.length - 1; p >= 0; p--) {
+            states.push(new State(p, 0, 0, 0, 0, 0));
+        }
+        return StreamSupport.stream(new ConfigurationSpliterator(states), false);
+    }
+
+    /**
+     * Counts the valid subscriptions without materialising them. Partial
+     * subscriptions that constrain the remaining add-ons in the same way are
+     * counted once, and large spaces are counted in parallel.
+     *
+     * @return the number of valid subscriptions
+     */
+    public long count() {
+        ConcurrentMap<CountKey, Long> memo = new ConcurrentHashMap<>();
+        long total = 0;
+
+        for (int p = 0; p < plans.length; p++) {
+            State root = new State(p, 0, 0, 0, 0, 0);
+            total += addOnNames.length >= PARALLEL_THRESHOLD
+                    ? ForkJoinPool.commonPool().invoke(new CountTask(root, memo))
+                    : count(root, memo);
+        }
+
+        return total;
+    }
+
+    /**
+     * Checks whether a plan and a set of add-ons form a valid subscription.
+     *
+     * @param plan      the name of the plan
+     * @param addOnMask bitmask of the declaration indexes of the add-ons
+     * @return whether the subscription respects every constraint
+     */
+    public boolean isValid(String plan, long addOnMask) {
+        int planIndex = List.of(plans).indexOf(plan);
+
+        if (planIndex < 0 || (addOnMask & ~includable[planIndex]) != 0) {
+            return false;
+        }
+
+        for (long mask = addOnMask; mask != 0; mask &= mask - 1) {
+            int addOn = Long.numberOfTrailingZeros(mask);
+            if ((dependencies[addOn] & ~addOnMask) != 0 || (conflicts[addOn] & addOnMask) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public List<String> getPlans() {
+        return List.of(plans);
+    }
+
+    public List<String> getAddOns() {
+        return List.of(addOnNames);
+    }
+
+    /**
+     * @param addOnIndex declaration index of an add-on
+     * @return the mask of its transitive dependencies
+     */
+    long getDependencies(int addOnIndex) {
+        return dependencies[addOnIndex];
+    }
+
+    /**
+     * @param planIndex declaration index of a plan
+     * @return the mask of the add-ons that can be contracted with the plan
+     */
+    long getIncludable(int planIndex) {
+        return includable[planIndex];
+    }
+
+    /**
+     * @param addOnIndex declaration index of an add-on
+     * @return the mask of the add-ons that conflict with it or its dependencies
+     */
+    long getClosureConflicts(int addOnIndex) {
+        return closureConflicts[addOnIndex];
+    }
+
+    private long count(State state, ConcurrentMap<CountKey, Long> memo) {
+
+        if (state.depth == order.length) {
+            return 1;
+        }
+
+        CountKey key = countKey(state);
+        Long cached = memo.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        long result = 0;
+        State included = include(state);
+        State excluded = exclude(state);
+
+        if (included != null) {
+            result += count(included, memo);
+        }
+
+        if (excluded != null) {
+            result += count(excluded, memo);
+        }
+
+        memo.put(key, result);
+        return result;
+    }
+
+    private State include(State state) {
+
+        int addOn = order[state.depth];
+        long bit = 1L << addOn;
+        long closure = dependencies[addOn] | bit;
+
+        if ((includable[state.plan] & bit) == 0 || (closure & (state.forbidden | state.excluded)) != 0) {
+            return null;
+        }
+
+        return new State(state.plan, state.depth + 1, state.chosen | bit, state.required | dependencies[addOn],
+                state.forbidden | closureConflicts[addOn], state.excluded);
+    }
+
+    private State exclude(State state) {
+
+        long bit = 1L << order[state.depth];
+
+        if ((state.required & bit) != 0) {
+            return null;
+        }
+
+        return new State(state.plan, state.depth + 1, state.chosen, state.required, state.forbidden,
+                state.excluded | bit);
+    }
+
+    /**
+     * The remaining decisions only depend on which remaining add-ons are
+     * forbidden, required or blocked by an excluded dependency.
+     */
+    private CountKey countKey(State state) {
+
+        long future = futureMasks[state.depth];
+        long blocked = 0;
+
+        for (long mask = future; mask != 0; mask &= mask - 1) {
+            int addOn = Long.numberOfTrailingZeros(mask);
+            if ((dependencies[addOn] & state.excluded) != 0) {
+                blocked |= 1L << addOn;
+            }
+        }
+
+        return new CountKey(state.plan, state.depth, state.forbidden & future, state.required & future, blocked);
+    }
+
+    private SubscriptionConfiguration toConfiguration(State state) {
+        return new SubscriptionConfiguration(plans[state.plan], state.chosen, addOnNames);
+    }
+
+    private static long maskOf(List<String> names, Map<String, Integer> indexes) {
+        long mask = 0;
+
+        if (names == null) {
+            return mask;
+        }
+
+        for (String name : names) {
+            Integer index = indexes.get(name);
+            if (index != null) {
+                mask |= 1L << index;
+            }
+        }
+
+        return mask;
+    }
+
+    private static long[] transitiveClosure(long[] directDependencies) {
+        long[] closure = directDependencies.clone();
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < closure.length; i++) {
+                long expanded = closure[i];
+                for (long mask = closure[i]; mask != 0; mask &= mask - 1) {
+                    expanded |= closure[Long.numberOfTrailingZeros(mask)];
+                }
+                expanded &= ~(1L << i);
+                if (expanded != closure[i]) {
+                    closure[i] = expanded;
+                    changed = true;
+                }
+            }
+        }
+
+        return closure;
+    }
+
+    /**
+     * Orders the add-ons so dependencies are decided before their dependents.
+     * Add-ons in a dependency cycle keep their declaration order.
+     */
+    private static int[] dependencyOrder(long[] directDependencies) {
+        int n = directDependencies.length;
+        int[] order = new int[n];
+        long placed = 0;
+        int size = 0;
+
+        while (size < n) {
+            boolean progress = false;
+            for (int i = 0; i < n; i++) {
+                long bit = 1L << i;
+                if ((placed & bit) == 0 && (directDependencies[i] & ~placed) == 0) {
+                    order[size++] = i;
+                    placed |= bit;
+                    progress = true;
+                }
+            }
+            if (!progress) {
+                int next = Long.numberOfTrailingZeros(~placed);
+                order[size++] = next;
+                placed |= 1L << next;
+            }
+        }
+
+        return order;
+    }
+
+    private static final class State {
+
+        private final int plan;
+        private final int depth;
+        private final long chosen;
+        private final long required;
+        private final long forbidden;
+        private final long excluded;
+
+        private State(int plan, int depth, long chosen, long required, long forbidden, long excluded) {
+            this.plan = plan;
+            this.depth = depth;
+            this.chosen = chosen;
+            this.required = required;
+            this.forbidden = forbidden;
+            this.excluded = excluded;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class CountKey {
+
+        private final int plan;
+        private final int depth;
+        private final long forbidden;
+        private final long required;
+        private final long blocked;
+
+        private CountKey(int plan, int depth, long forbidden, long required, long blocked) {
+            this.plan = plan;
+            this.depth = depth;
+            this.forbidden = forbidden;
+            this.required = required;
+            this.blocked = blocked;
+        }
+    }
+
+    private final class CountTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final State state;
+        private final ConcurrentMap<CountKey, Long> memo;
+
+        private CountTask(State state, ConcurrentMap<CountKey, Long> memo) {
+            this.state = state;
+            this.memo = memo;
+        }
+
+        @Override
+        protected Long compute() {
+
+            if (state.depth >= FORK_DEPTH || state.depth == order.length) {
+                return count(state, memo);
+            }
+
+            State included = include(state);
+            State excluded = exclude(state);
+
+            if (included == null || excluded == null) {
+                State next = included != null ? included : excluded;
+                return new CountTask(next, memo).compute();
+            }
+
+            CountTask includedTask = new CountTask(included, memo);
+            includedTask.fork();
+            long result = new CountTask(excluded, memo).compute();
+            return result + includedTask.join();
+        }
+    }
+
+    /**
+     * Depth-first enumeration over a stack of pending partial subscriptions.
+     * Splitting hands over the shallowest pending branches, which are the
+     * largest ones.
+     */
+    private final class ConfigurationSpliterator implements Spliterator<SubscriptionConfiguration> {
+
+        private final Deque<State> pending;
+
+        private ConfigurationSpliterator(Deque<State> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super SubscriptionConfiguration> action) {
+
+            State state;
+
+            while ((state = pending.poll()) != null) {
+
+                if (state.depth == order.length) {
+                    action.accept(toConfiguration(state));
+                    return true;
+                }
+
+                expand(state);
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<SubscriptionConfiguration> trySplit() {
+
+            // Expand the only pending branch until there is something to share
+            while (pending.size() == 1 && pending.peek().depth < order.length) {
+                expand(pending.poll());
+            }
+
+            if (pending.size() < 2) {
+                return null;
+            }
+
+            Deque<State> split = new ArrayDeque<>();
+            int half = pending.size() / 2;
+
+            for (int i = 0; i < half; i++) {
+                split.addFirst(pending.pollLast());
+            }
+
+            return new ConfigurationSpliterator(split);
+        }
+
+        private void expand(State state) {
+            State excluded = exclude(state);
+            State included = include(state);
+
+            if (excluded != null) {
+                pending.push(excluded);
+            }
+
+            if (included != null) {
+                pending.push(included);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL | IMMUTABLE;
+        }
+    }
+}
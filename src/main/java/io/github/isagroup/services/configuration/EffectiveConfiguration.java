@@ -0,0 +1,252 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+
+/**
+ * Feature and usage limit values of a subscription, i.e. a plan and a set of
+ * add-ons.
+ * 
+ * Values start from the plan. Then, in the order the add-ons are declared in
+ * the pricing, their features and usage limits override the plan values.
+ * Finally, the usage limit extensions of every add-on are added to the
+ * resulting usage limits.
+ *
+ * Values are merged over the ordinals of a {@link PricingIndex} into primitive
+ * columns, and the map getters are views that box them on access.
+ */
+public class EffectiveConfiguration {
+
+    private final PricingIndex index;
+    private final int planOrdinal;
+    private final List<String> addOns;
+    private final ValueColumns featureValues;
+    private final ValueColumns usageLimitValues;
+    private final Map<String, Object> features;
+    private final Map<String, Object> usageLimits;
+
+    private EffectiveConfiguration(PricingIndex index, int planOrdinal, List<String> addOns,
+            ValueColumns featureValues, ValueColumns usageLimitValues) {
+        this.index = index;
+        this.planOrdinal = planOrdinal;
+        this.addOns = Collections.unmodifiableList(addOns);
+        this.featureValues = featureValues;
+        this.usageLimitValues = usageLimitValues;
+        this.features = index.featureView(featureValues);
+        this.usageLimits = index.usageLimitView(usageLimitValues);
+    }
+
+    /**
+     * Computes the effective configuration of a subscription. The pricing may
+     * have been modified since the last call, so it is indexed on every call;
+     * the configurations of a {@link PricingSnapshot} are cached by
+     * {@link EffectiveConfigurationCache} instead.
+     * 
+     * @param pricingManager the pricing configuration
+     * @param planName       the plan of the subscription
+     * @param addOnNames     the add-ons of the subscription
+     * @return the effective configuration
+     * @throws PricingPlanEvaluationException if the plan or an add-on does not
+     *                                        exist or the subscription breaks
+     *                                        the availability, dependencies or
+     *                                        exclusions of its add-ons
+     */
+    public static EffectiveConfiguration of(PricingManager pricingManager, String planName,
+            Collection<String> addOnNames) {
+        return of(new PricingIndex(pricingManager), planName, addOnNames);
+    }
+
+    /**
+     * Computes the effective configuration of a subscription over the ordinals
+     * of an indexed pricing.
+     *
+     * @see #of(PricingManager, String, Collection)
+     */
+    public static EffectiveConfiguration of(PricingIndex index, String planName, Collection<String> addOnNames) {
+
+        int plan = index.planOrdinal(planName);
+
+        if (plan < 0) {
+            throw new PricingPlanEvaluationException(
+                    "The plan " + planName + " does not exist in the current pricing configuration");
+        }
+
+        ValueColumns features = index.planFeatureValues(plan).copy();
+        ValueColumns usageLimits = index.planUsageLimitValues(plan).copy();
+
+        BitSet addOns = resolveAddOns(index, plan, addOnNames);
+        List<String> names = new ArrayList<>();
+
+        for (int a = addOns.nextSetBit(0); a >= 0; a = addOns.nextSetBit(a + 1)) {
+            names.add(index.addOnName(a));
+            override(index.addOnFeatures(a), index.addOnFeatureValues(a), features);
+            override(index.addOnUsageLimits(a), index.addOnUsageLimitValues(a), usageLimits);
+        }
+
+        for (int a = addOns.nextSetBit(0); a >= 0; a = addOns.nextSetBit(a + 1)) {
+            int[] extensions = index.addOnExtensions(a);
+            Object[] extensionValues = index.addOnExtensionValues(a);
+            for (int i = 0; i < extensions.length; i++) {
+                usageLimits.add(extensions[i], extensionValues[i]);
+            }
+        }
+
+        return new EffectiveConfiguration(index, plan, names, features, usageLimits);
+    }
+
+    public Plan getPlan() {
+        return index.getPlan(planOrdinal);
+    }
+
+    /**
+     * @return the names of the add-ons, in the order they are declared in the
+     *         pricing
+     */
+    public List<String> getAddOns() {
+        return addOns;
+    }
+
+    /**
+     * @return a read-only view of the feature values, by name
+     */
+    public Map<String, Object> getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return a read-only view of the usage limit values, by name
+     */
+    public Map<String, Object> getUsageLimits() {
+        return usageLimits;
+    }
+
+    public PricingIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @param feature the ordinal of a feature in {@link #getIndex()}
+     * @return the effective value of the feature
+     */
+    public Object getFeatureValue(int feature) {
+        return featureValues.get(feature);
+    }
+
+    /**
+     * @param usageLimit the ordinal of a usage limit in {@link #getIndex()}
+     * @return the effective value of the usage limit
+     */
+    public Object getUsageLimitValue(int usageLimit) {
+        return usageLimitValues.get(usageLimit);
+    }
+
+    /**
+     * @param usageLimit the ordinal of a usage limit in {@link #getIndex()}
+     * @return true if the effective value of the usage limit is a number
+     */
+    public boolean hasNumericUsageLimit(int usageLimit) {
+        return usageLimitValues.isNumeric(usageLimit);
+    }
+
+    /**
+     * Reads a numeric usage limit without boxing it.
+     *
+     * @param usageLimit the ordinal of a usage limit whose value is a number
+     * @return the effective value of the usage limit, truncated if it is decimal
+     * @see #hasNumericUsageLimit(int)
+     */
+    public long getUsageLimitAsLong(int usageLimit) {
+        return usageLimitValues.isIntegral(usageLimit) ? usageLimitValues.longValue(usageLimit)
+                : (long) usageLimitValues.doubleValue(usageLimit);
+    }
+
+    ValueColumns featureValues() {
+        return featureValues;
+    }
+
+    ValueColumns usageLimitValues() {
+        return usageLimitValues;
+    }
+
+    /**
+     * Builds a plan context with the effective values. It has the same entries
+     * as the context of the plan alone, plus the {@code addOns} of the
+     * subscription when there is any.
+     * 
+     * @return a new plan context
+     */
+    public Map<String, Object> toPlanContext() {
+        Map<String, Object> planContext = getPlan().parseToMap();
+        planContext.put("features", new HashMap<>(features));
+        planContext.put("usageLimits", new HashMap<>(usageLimits));
+
+        if (!addOns.isEmpty()) {
+            planContext.put("addOns", addOns);
+        }
+
+        return planContext;
+    }
+
+    private static BitSet resolveAddOns(PricingIndex index, int plan, Collection<String> addOnNames) {
+
+        BitSet subscribed = new BitSet(index.addOnCount());
+
+        if (addOnNames == null || addOnNames.isEmpty()) {
+            return subscribed;
+        }
+
+        for (String addOnName : addOnNames) {
+            int addOn = index.addOnOrdinal(addOnName);
+
+            if (addOn < 0) {
+                throw new PricingPlanEvaluationException(
+                        "The add-on " + addOnName + " does not exist in the current pricing configuration");
+            }
+
+            subscribed.set(addOn);
+        }
+
+        for (int a = subscribed.nextSetBit(0); a >= 0; a = subscribed.nextSetBit(a + 1)) {
+
+            AddOn addOn = index.getAddOn(a);
+
+            if (!index.isAvailable(a, plan)) {
+                throw new PricingPlanEvaluationException(
+                        "The add-on " + addOn.getName() + " is not available for the plan " + index.planName(plan));
+            }
+
+            for (int dependency : index.addOnDependencies(a)) {
+                if (dependency < 0 || !subscribed.get(dependency)) {
+                    throw new PricingPlanEvaluationException(
+                            "The add-on " + addOn.getName() + " depends on " + String.join(", ", addOn.getDependsOn()));
+                }
+            }
+
+            for (int exclusion : index.addOnExclusions(a)) {
+                if (exclusion >= 0 && subscribed.get(exclusion)) {
+                    throw new PricingPlanEvaluationException(
+                            "The add-on " + addOn.getName() + " cannot be combined with " + index.addOnName(exclusion));
+                }
+            }
+        }
+
+        return subscribed;
+    }
+
+    private static void override(int[] ordinals, Object[] overrides, ValueColumns values) {
+        for (int i = 0; i < ordinals.length; i++) {
+            values.set(ordinals[i], overrides[i]);
+        }
+    }
+}
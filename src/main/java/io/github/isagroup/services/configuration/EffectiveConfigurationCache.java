@@ -0,0 +1,136 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Bounded LRU cache of the {@link EffectiveConfiguration} of every subscription
+ * of a {@link PricingSnapshot}. Subscriptions are keyed by the plan ordinal
+ * and a bitmask of their add-on ordinals, so each subscription shape is
+ * computed once per snapshot regardless of the order in which add-ons are
+ * listed.
+ * 
+ * Pricings with more than 64 add-ons cannot be represented with a bitmask, so
+ * their configurations are computed on every call.
+ */
+public class EffectiveConfigurationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final PricingIndex index;
+    private final Map<SubscriptionKey, EffectiveConfiguration> configurations;
+
+    public EffectiveConfigurationCache(PricingManager pricingManager, int maxSize) {
+        this(new PricingIndex(pricingManager), maxSize);
+    }
+
+    public EffectiveConfigurationCache(PricingIndex index, int maxSize) {
+        this.index = index;
+
+        this.configurations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SubscriptionKey, EffectiveConfiguration> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache attached to the snapshot.
+     * 
+     * @param snapshot the pricing snapshot
+     * @return the cache of the snapshot
+     */
+    public static EffectiveConfigurationCache of(PricingSnapshot snapshot) {
+        // Resolved first, as the attachments of the snapshot cannot be computed
+        // while another one is being computed
+        PricingIndex index = PricingIndex.of(snapshot);
+        return snapshot.computeIfAbsent(EffectiveConfigurationCache.class,
+                s -> new EffectiveConfigurationCache(index, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Returns the effective configuration of a subscription, computing it if it
+     * is not cached.
+     * 
+     * @param planName   the plan of the subscription
+     * @param addOnNames the add-ons of the subscription
+     * @return the effective configuration
+     */
+    public EffectiveConfiguration get(String planName, Collection<String> addOnNames) {
+
+        int plan = index.planOrdinal(planName);
+
+        if (plan < 0 || index.addOnCount() > Long.SIZE) {
+            return EffectiveConfiguration.of(index, planName, addOnNames);
+        }
+
+        SubscriptionKey key = new SubscriptionKey(plan, addOnMask(addOnNames));
+
+        synchronized (configurations) {
+            EffectiveConfiguration configuration = configurations.get(key);
+            if (configuration != null) {
+                return configuration;
+            }
+        }
+
+        // Computed outside the lock. Concurrent misses of the same key compute
+        // equal configurations, so any of them can be kept
+        EffectiveConfiguration configuration = EffectiveConfiguration.of(index, planName, addOnNames);
+
+        synchronized (configurations) {
+            configurations.putIfAbsent(key, configuration);
+        }
+
+        return configuration;
+    }
+
+    public int size() {
+        synchronized (configurations) {
+            return configurations.size();
+        }
+    }
+
+    /**
+     * @param addOnNames names of add-ons of the pricing
+     * @return a bitmask whose bits are the declaration indexes of the add-ons
+     */
+    public long addOnMask(Collection<String> addOnNames) {
+        long mask = 0;
+
+        if (addOnNames == null) {
+            return mask;
+        }
+
+        for (String addOnName : addOnNames) {
+            int addOn = index.addOnOrdinal(addOnName);
+
+            if (addOn < 0) {
+                throw new PricingPlanEvaluationException(
+                        "The add-on " + addOnName + " does not exist in the current pricing configuration");
+            }
+
+            mask |= 1L << addOn;
+        }
+
+        return mask;
+    }
+
+    @EqualsAndHashCode
+    private static final class SubscriptionKey {
+
+        private final int plan;
+        private final long addOnMask;
+
+        private SubscriptionKey(int plan, long addOnMask) {
+            this.plan = plan;
+            this.addOnMask = addOnMask;
+        }
+    }
+}
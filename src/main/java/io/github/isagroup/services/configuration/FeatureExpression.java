@@ -0,0 +1,348 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Feature expression compiled against the ordinals of a {@link PricingIndex},
+ * so it is evaluated over the primitive values of an
+ * {@link EffectiveConfiguration} instead of through SpEL.
+ *
+ * Only the usual shapes of feature expressions are compiled: conjunctions of
+ * boolean features and comparisons between user context entries, features,
+ * usage limits and literals, e.g.
+ * {@code planContext['features']['flows'] && userContext['calls'] < planContext['usageLimits']['callsLimit']}.
+ * Any other expression, and any evaluation whose operands are not numbers or
+ * booleans, is left to SpEL.
+ */
+public final class FeatureExpression {
+
+    private static final Pattern OPERAND = Pattern.compile(
+            "(?:planContext\\[\\s*['\"](features|usageLimits)['\"]\\s*\\]\\s*\\[\\s*['\"]([^'\"]+)['\"]\\s*\\]"
+                    + "|userContext\\[\\s*['\"]([^'\"]+)['\"]\\s*\\]"
+                    + "|(-?\\d+)|(-?\\d+\\.\\d+)|(true|false))");
+
+    private static final Pattern COMPARISON = Pattern.compile("(.+?)\\s*(<=|>=|==|!=|<|>)\\s*(.+)");
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNDECIDED = -1;
+
+    // SpEL is not used for blank expressions either, they evaluate to false
+    private static final FeatureExpression ALWAYS_FALSE = new FeatureExpression(
+            new Term[] { new Term(new Operand(Source.LITERAL, -1, false), null, null) });
+
+    private final Term[] terms;
+
+    private FeatureExpression(Term[] terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * Compiles a feature expression.
+     *
+     * @param expression the expression of a feature
+     * @param index      the index the expression refers to
+     * @return the compiled expression, or null if it must be evaluated with SpEL
+     */
+    static FeatureExpression compile(String expression, PricingIndex index) {
+
+        if (expression == null) {
+            return null;
+        }
+
+        if (expression.trim().isEmpty()) {
+            return ALWAYS_FALSE;
+        }
+
+        if (expression.contains("||")) {
+            return null;
+        }
+
+        List<Term> terms = new ArrayList<>();
+
+        for (String source : expression.split("&&")) {
+            Term term = compileTerm(source.trim(), index);
+            if (term == null) {
+                return null;
+            }
+            terms.add(term);
+        }
+
+        return new FeatureExpression(terms.toArray(new Term[0]));
+    }
+
+    /**
+     * Evaluates the expression without boxing the values of the configuration.
+     *
+     * @param configuration the effective configuration of the user
+     * @param userContext   the user context
+     * @return the evaluation, or null if the values are not numbers or booleans
+     *         and the expression must be evaluated with SpEL
+     */
+    public Boolean evaluate(EffectiveConfiguration configuration, Map<String, Object> userContext) {
+
+        ValueColumns features = configuration.featureValues();
+        ValueColumns usageLimits = configuration.usageLimitValues();
+
+        for (Term term : terms) {
+            int result = term.evaluate(features, usageLimits, userContext);
+            if (result == UNDECIDED) {
+                return null;
+            }
+            if (result == FALSE) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Term compileTerm(String source, PricingIndex index) {
+
+        Operand single = compileOperand(source, index);
+
+        if (single != null) {
+            return new Term(single, null, null);
+        }
+
+        Matcher comparison = COMPARISON.matcher(source);
+
+        if (!comparison.matches()) {
+            return null;
+        }
+
+        Operand left = compileOperand(comparison.group(1).trim(), index);
+        Operand right = compileOperand(comparison.group(3).trim(), index);
+
+        if (left == null || right == null) {
+            return null;
+        }
+
+        return new Term(left, Operator.of(comparison.group(2)), right);
+    }
+
+    private static Operand compileOperand(String source, PricingIndex index) {
+
+        Matcher matcher = OPERAND.matcher(source);
+
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        if (matcher.group(1) != null) {
+            boolean feature = matcher.group(1).equals("features");
+            int ordinal = feature ? index.featureOrdinal(matcher.group(2)) : index.usageLimitOrdinal(matcher.group(2));
+            return ordinal >= 0 ? new Operand(feature ? Source.FEATURE : Source.USAGE_LIMIT, ordinal, null) : null;
+        }
+
+        if (matcher.group(3) != null) {
+            return new Operand(Source.USER_CONTEXT, -1, matcher.group(3));
+        }
+
+        try {
+            if (matcher.group(4) != null) {
+                return new Operand(Source.LITERAL, -1, Long.parseLong(matcher.group(4)));
+            }
+
+            if (matcher.group(5) != null) {
+                return new Operand(Source.LITERAL, -1, Double.parseDouble(matcher.group(5)));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return new Operand(Source.LITERAL, -1, Boolean.parseBoolean(matcher.group(6)));
+    }
+
+    private enum Source {
+        FEATURE, USAGE_LIMIT, USER_CONTEXT, LITERAL
+    }
+
+    private enum Operator {
+        LT, LE, GT, GE, EQ, NE;
+
+        static Operator of(String symbol) {
+            switch (symbol) {
+                case "<":
+                    return LT;
+                case "<=":
+                    return LE;
+                case ">":
+                    return GT;
+                case ">=":
+                    return GE;
+                case "==":
+                    return EQ;
+                default:
+                    return NE;
+            }
+        }
+
+        // Primitive comparisons, so -0.0 equals 0.0 and NaN is neither equal to,
+        // less than nor greater than anything, as in SpEL
+        boolean test(long left, long right) {
+            switch (this) {
+                case LT:
+                    return left < right;
+                case LE:
+                    return left <= right;
+                case GT:
+                    return left > right;
+                case GE:
+                    return left >= right;
+                case EQ:
+                    return left == right;
+                default:
+                    return left != right;
+            }
+        }
+
+        boolean test(double left, double right) {
+            switch (this) {
+                case LT:
+                    return left < right;
+                case LE:
+                    return left <= right;
+                case GT:
+                    return left > right;
+                case GE:
+                    return left >= right;
+                case EQ:
+                    return left == right;
+                default:
+                    return left != right;
+            }
+        }
+    }
+
+    private static final class Term {
+
+        private final Operand left;
+        private final Operator operator;
+        private final Operand right;
+
+        private Term(Operand left, Operator operator, Operand right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        private int evaluate(ValueColumns features, ValueColumns usageLimits, Map<String, Object> userContext) {
+
+            if (operator == null) {
+                return left.booleanOf(features, usageLimits, userContext);
+            }
+
+            byte leftKind = left.kindOf(features, usageLimits, userContext);
+            byte rightKind = right.kindOf(features, usageLimits, userContext);
+
+            if (leftKind == ValueColumns.BOOLEAN && rightKind == ValueColumns.BOOLEAN
+                    && (operator == Operator.EQ || operator == Operator.NE)) {
+                boolean satisfied = operator.test(left.booleanOf(features, usageLimits, userContext),
+                        right.booleanOf(features, usageLimits, userContext));
+                return satisfied ? TRUE : FALSE;
+            }
+
+            if (!isNumeric(leftKind) || !isNumeric(rightKind)) {
+                return UNDECIDED;
+            }
+
+            boolean satisfied;
+
+            if (leftKind != ValueColumns.DOUBLE && rightKind != ValueColumns.DOUBLE) {
+                satisfied = operator.test(left.longOf(features, usageLimits, userContext),
+                        right.longOf(features, usageLimits, userContext));
+            } else {
+                satisfied = operator.test(left.doubleOf(features, usageLimits, userContext),
+                        right.doubleOf(features, usageLimits, userContext));
+            }
+
+            return satisfied ? TRUE : FALSE;
+        }
+
+        private static boolean isNumeric(byte kind) {
+            return kind == ValueColumns.INT || kind == ValueColumns.LONG || kind == ValueColumns.DOUBLE;
+        }
+    }
+
+    private static final class Operand {
+
+        private final Source source;
+        private final int ordinal;
+        // Key of the user context entry, or value of the literal
+        private final Object value;
+
+        private Operand(Source source, int ordinal, Object value) {
+            this.source = source;
+            this.ordinal = ordinal;
+            this.value = value;
+        }
+
+        private ValueColumns columns(ValueColumns features, ValueColumns usageLimits) {
+            return source == Source.FEATURE ? features : usageLimits;
+        }
+
+        private Object boxed(Map<String, Object> userContext) {
+            return source == Source.LITERAL ? value : userContext != null ? userContext.get((String) value) : null;
+        }
+
+        private byte kindOf(ValueColumns features, ValueColumns usageLimits, Map<String, Object> userContext) {
+
+            if (source == Source.FEATURE || source == Source.USAGE_LIMIT) {
+                return columns(features, usageLimits).kind(ordinal);
+            }
+
+            Object boxed = boxed(userContext);
+
+            if (boxed instanceof Integer || boxed instanceof Long || boxed instanceof Short
+                    || boxed instanceof Byte) {
+                return ValueColumns.LONG;
+            }
+            if (boxed instanceof Double || boxed instanceof Float) {
+                return ValueColumns.DOUBLE;
+            }
+            if (boxed instanceof Boolean) {
+                return ValueColumns.BOOLEAN;
+            }
+            return ValueColumns.OBJECT;
+        }
+
+        private int booleanOf(ValueColumns features, ValueColumns usageLimits, Map<String, Object> userContext) {
+
+            if (source == Source.FEATURE || source == Source.USAGE_LIMIT) {
+                ValueColumns columns = columns(features, usageLimits);
+                if (columns.kind(ordinal) != ValueColumns.BOOLEAN) {
+                    return UNDECIDED;
+                }
+                return columns.booleanValue(ordinal) ? TRUE : FALSE;
+            }
+
+            Object boxed = boxed(userContext);
+
+            if (!(boxed instanceof Boolean)) {
+                return UNDECIDED;
+            }
+            return (Boolean) boxed ? TRUE : FALSE;
+        }
+
+        private long longOf(ValueColumns features, ValueColumns usageLimits, Map<String, Object> userContext) {
+
+            if (source == Source.FEATURE || source == Source.USAGE_LIMIT) {
+                return columns(features, usageLimits).longValue(ordinal);
+            }
+            return ((Number) boxed(userContext)).longValue();
+        }
+
+        private double doubleOf(ValueColumns features, ValueColumns usageLimits, Map<String, Object> userContext) {
+
+            if (source == Source.FEATURE || source == Source.USAGE_LIMIT) {
+                return columns(features, usageLimits).doubleValue(ordinal);
+            }
+            return ((Number) boxed(userContext)).doubleValue();
+        }
+    }
+}
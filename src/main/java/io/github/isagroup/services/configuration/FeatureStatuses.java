@@ -0,0 +1,277 @@
+package io.github.isagroup.services.configuration;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import io.github.isagroup.models.FeatureStatus;
+
+/**
+ * Evaluation of every feature of a pricing for a user, indexed by the feature
+ * ordinals of a {@link PricingIndex}. Evaluations are kept in a {@link BitSet}
+ * and the used and limit values in {@link ValueColumns}, so filling it does
+ * not allocate a {@link FeatureStatus} per feature. {@link #asMap()} builds
+ * them only when they are read, and Jackson serializes the statuses straight
+ * from the columns with the same layout as a {@code Map<String, FeatureStatus>}.
+ *
+ * Each thread reuses its own instance through {@link #forCurrentThread}, so
+ * the statuses are only valid until the same thread computes the statuses
+ * again and must be {@link #retain() retained} before they are kept or shared.
+ * The thread only references its instance weakly, so the instance, and the
+ * index of a pricing that is no longer in use, can be collected once no
+ * evaluation is running.
+ */
+@JsonSerialize(using = FeatureStatuses.Serializer.class)
+public final class FeatureStatuses {
+
+    private static final ThreadLocal<WeakReference<FeatureStatuses>> BUFFER = new ThreadLocal<>();
+
+    private final PricingIndex index;
+    private final BitSet evals;
+    private final ValueColumns used;
+    private final ValueColumns limits;
+    private final boolean threadBuffer;
+
+    public FeatureStatuses(PricingIndex index) {
+        this(index, false);
+    }
+
+    private FeatureStatuses(PricingIndex index, boolean threadBuffer) {
+        this.index = index;
+        this.threadBuffer = threadBuffer;
+        this.evals = new BitSet(index.featureCount());
+        this.used = new ValueColumns(index.featureCount());
+        this.limits = new ValueColumns(index.featureCount());
+    }
+
+    private FeatureStatuses(FeatureStatuses other) {
+        this.index = other.index;
+        this.evals = (BitSet) other.evals.clone();
+        this.used = other.used.copy();
+        this.limits = other.limits.copy();
+        this.threadBuffer = false;
+    }
+
+    /**
+     * Returns the cleared buffer of the current thread for the index, creating
+     * it when the thread has none or it belongs to another index.
+     *
+     * @param index the index of the pricing being evaluated
+     * @return empty feature statuses
+     */
+    public static FeatureStatuses forCurrentThread(PricingIndex index) {
+
+        WeakReference<FeatureStatuses> reference = BUFFER.get();
+        FeatureStatuses statuses = reference != null ? reference.get() : null;
+
+        if (statuses == null || statuses.index != index) {
+            statuses = new FeatureStatuses(index, true);
+            BUFFER.set(new WeakReference<>(statuses));
+        } else {
+            statuses.clear();
+        }
+
+        return statuses;
+    }
+
+    /**
+     * @return a copy of the statuses that is not reused by any thread
+     */
+    public FeatureStatuses copy() {
+        return new FeatureStatuses(this);
+    }
+
+    /**
+     * @return these statuses, or a copy if they are the buffer of a thread, so
+     *         the result stays valid after the thread evaluates again
+     */
+    public FeatureStatuses retain() {
+        return threadBuffer ? copy() : this;
+    }
+
+    public void clear() {
+        evals.clear();
+        used.clear();
+        limits.clear();
+    }
+
+    public PricingIndex getIndex() {
+        return index;
+    }
+
+    public int size() {
+        return index.featureCount();
+    }
+
+    public boolean getEval(int feature) {
+        return evals.get(feature);
+    }
+
+    public Object getUsed(int feature) {
+        return used.get(feature);
+    }
+
+    public Object getLimit(int feature) {
+        return limits.get(feature);
+    }
+
+    public void setEval(int feature, boolean eval) {
+        evals.set(feature, eval);
+    }
+
+    public void setUsed(int feature, Object value) {
+        used.set(feature, value);
+    }
+
+    /**
+     * Sets the limit of the feature to the effective value of a usage limit.
+     *
+     * @param usageLimit the ordinal of the usage limit, or -1 to set no limit
+     */
+    public void setUsageLimit(int feature, EffectiveConfiguration configuration, int usageLimit) {
+        if (usageLimit >= 0) {
+            limits.set(feature, configuration.usageLimitValues(), usageLimit);
+        } else {
+            limits.clear(feature);
+        }
+    }
+
+    /**
+     * Sets the limit of the feature to its own effective value.
+     */
+    public void setFeatureLimit(int feature, EffectiveConfiguration configuration) {
+        limits.set(feature, configuration.featureValues(), feature);
+    }
+
+    /**
+     * @param feature the ordinal of the feature
+     * @return a new status with the evaluation, used and limit values of the
+     *         feature
+     */
+    public FeatureStatus getStatus(int feature) {
+        FeatureStatus status = new FeatureStatus();
+        status.setEval(evals.get(feature));
+        status.setUsed(used.get(feature));
+        status.setLimit(limits.get(feature));
+        return status;
+    }
+
+    /**
+     * @return a read-only view of the statuses by feature name, whose
+     *         {@link FeatureStatus} objects are built on access
+     */
+    public Map<String, FeatureStatus> asMap() {
+        return new AbstractMap<>() {
+
+            @Override
+            public FeatureStatus get(Object key) {
+                int feature = key instanceof String ? index.featureOrdinal((String) key) : -1;
+                return feature >= 0 ? getStatus(feature) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String && index.featureOrdinal((String) key) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return index.featureCount();
+            }
+
+            @Override
+            public Set<Entry<String, FeatureStatus>> entrySet() {
+                return new AbstractSet<>() {
+
+                    @Override
+                    public int size() {
+                        return index.featureCount();
+                    }
+
+                    @Override
+                    public Iterator<Entry<String, FeatureStatus>> iterator() {
+                        return new Iterator<>() {
+
+                            private int next = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return next < index.featureCount();
+                            }
+
+                            @Override
+                            public Entry<String, FeatureStatus> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                int feature = next++;
+                                return new SimpleImmutableEntry<>(index.featureName(feature), getStatus(feature));
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    static class Serializer extends StdSerializer<FeatureStatuses> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(FeatureStatuses.class);
+        }
+
+        @Override
+        public void serialize(FeatureStatuses statuses, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeStartObject();
+
+            for (int feature = 0; feature < statuses.size(); feature++) {
+                generator.writeObjectFieldStart(statuses.index.featureName(feature));
+                generator.writeBooleanField("eval", statuses.evals.get(feature));
+                generator.writeFieldName("used");
+                write(statuses.used, feature, generator, provider);
+                generator.writeFieldName("limit");
+                write(statuses.limits, feature, generator, provider);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+        }
+
+        private static void write(ValueColumns values, int feature, JsonGenerator generator,
+                SerializerProvider provider) throws IOException {
+
+            switch (values.kind(feature)) {
+                case ValueColumns.INT:
+                case ValueColumns.LONG:
+                    generator.writeNumber(values.longValue(feature));
+                    break;
+                case ValueColumns.DOUBLE:
+                    generator.writeNumber(values.doubleValue(feature));
+                    break;
+                case ValueColumns.BOOLEAN:
+                    generator.writeBoolean(values.booleanValue(feature));
+                    break;
+                case ValueColumns.OBJECT:
+                    provider.defaultSerializeValue(values.get(feature), generator);
+                    break;
+                default:
+                    generator.writeNull();
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Bounded cache of the {@link FeatureStatuses} of the users of a
+ * {@link PricingSnapshot}. Users with the same plan, the same add-ons and the
+ * same values in the user context entries read by the feature expressions get
+ * the same statuses, so they are evaluated once. Since the cache is attached to
+ * the snapshot, its entries are discarded when the pricing changes.
+ *
+ * Eviction is frequency-aware: the accesses of every key are counted in a
+ * small count-min sketch whose counters are halved periodically, and once the
+ * cache is full a new entry only replaces the least recently used of a sample
+ * of the entries if its key has been requested more often. One-off users
+ * therefore do not evict the shapes shared by many users, such as the ones
+ * without usage.
+ *
+ * Lookups do not lock: the entries are held in a concurrent map, and the
+ * sketch and the access times tolerate concurrent updates. Only admissions and
+ * evictions are serialised.
+ *
+ * Pricings whose evaluated user context entries cannot be determined, see
+ * {@link PricingIndex#evaluatedUserContextKeys()}, or with more than 64
+ * add-ons are evaluated on every call.
+ */
+public class FeatureStatusesCache {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final PricingIndex index;
+    private final String[] userContextKeys;
+    private final int maxSize;
+
+    // Entries compared to pick the victim of an eviction
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final Map<EvaluationKey, Entry> statuses = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final AtomicLong clock = new AtomicLong();
+
+    // Keys of the cached entries, so victims can be sampled. Guarded by itself,
+    // which is the lock of admissions and evictions
+    private final List<EvaluationKey> keys = new ArrayList<>();
+
+    public FeatureStatusesCache(PricingIndex index, int maxSize) {
+        this.index = index;
+        this.userContextKeys = index.evaluatedUserContextKeys();
+        this.maxSize = maxSize;
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Returns the cache attached to the snapshot.
+     *
+     * @param snapshot the pricing snapshot
+     * @return the cache of the snapshot
+     */
+    public static FeatureStatusesCache of(PricingSnapshot snapshot) {
+        // Resolved first, as the attachments of the snapshot cannot be computed
+        // while another one is being computed
+        PricingIndex index = PricingIndex.of(snapshot);
+        return snapshot.computeIfAbsent(FeatureStatusesCache.class,
+                s -> new FeatureStatusesCache(index, DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Returns the statuses of a user, evaluating them if they are not cached.
+     * Cached statuses are shared by every user with the same inputs, so they
+     * must not be modified.
+     *
+     * @param configuration the effective configuration of the user
+     * @param userContext   the user context
+     * @param evaluation    evaluates the statuses of the user. Its result is
+     *                      retained before it is cached, so it may be the
+     *                      buffer of the thread, which is returned as is when
+     *                      the statuses cannot be cached
+     * @return the statuses of the user
+     */
+    public FeatureStatuses get(EffectiveConfiguration configuration, Map<String, Object> userContext,
+            Supplier<FeatureStatuses> evaluation) {
+
+        EvaluationKey key = keyOf(configuration, userContext);
+
+        if (key == null) {
+            return evaluation.get();
+        }
+
+        sketch.increment(key.hashCode());
+
+        Entry cached = statuses.get(key);
+        if (cached != null) {
+            return cached.access(clock);
+        }
+
+        // Evaluated outside the lock. Concurrent misses of the same key evaluate
+        // equal statuses, so any of them can be kept
+        FeatureStatuses evaluated = evaluation.get().retain();
+
+        synchronized (keys) {
+            cached = statuses.get(key);
+            if (cached != null) {
+                return cached.access(clock);
+            }
+            admit(key, evaluated);
+        }
+
+        return evaluated;
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    private void admit(EvaluationKey key, FeatureStatuses evaluated) {
+
+        if (keys.size() < maxSize) {
+            keys.add(key);
+            statuses.put(key, new Entry(evaluated, clock.incrementAndGet()));
+            return;
+        }
+
+        int victimSlot = victimSlot();
+        EvaluationKey victim = keys.get(victimSlot);
+
+        if (sketch.frequency(key.hashCode()) <= sketch.frequency(victim.hashCode())) {
+            return;
+        }
+
+        statuses.remove(victim);
+        keys.set(victimSlot, key);
+        statuses.put(key, new Entry(evaluated, clock.incrementAndGet()));
+    }
+
+    // Least recently used of every entry in small caches, and of a random
+    // sample of them otherwise
+    private int victimSlot() {
+
+        boolean sampled = keys.size() > EVICTION_SAMPLE_SIZE;
+        int candidates = sampled ? EVICTION_SAMPLE_SIZE : keys.size();
+
+        int victimSlot = 0;
+        long victimAccess = Long.MAX_VALUE;
+
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            int slot = sampled ? ThreadLocalRandom.current().nextInt(keys.size()) : candidate;
+            long lastAccess = statuses.get(keys.get(slot)).lastAccess;
+            if (lastAccess < victimAccess) {
+                victimSlot = slot;
+                victimAccess = lastAccess;
+            }
+        }
+
+        return victimSlot;
+    }
+
+    private EvaluationKey keyOf(EffectiveConfiguration configuration, Map<String, Object> userContext) {
+
+        if (userContextKeys == null || maxSize <= 0 || index.addOnCount() > Long.SIZE) {
+            return null;
+        }
+
+        int plan = index.planOrdinal(configuration.getPlan().getName());
+
+        if (plan < 0) {
+            return null;
+        }
+
+        long addOnMask = 0;
+
+        for (String addOnName : configuration.getAddOns()) {
+            int addOn = index.addOnOrdinal(addOnName);
+            if (addOn < 0) {
+                return null;
+            }
+            addOnMask |= 1L << addOn;
+        }
+
+        Object[] values = new Object[userContextKeys.length];
+
+        if (userContext != null) {
+            for (int key = 0; key < values.length; key++) {
+                values[key] = userContext.get(userContextKeys[key]);
+            }
+        }
+
+        return new EvaluationKey(plan, addOnMask, Arrays.asList(values));
+    }
+
+    private static final class Entry {
+
+        private final FeatureStatuses statuses;
+        private volatile long lastAccess;
+
+        private Entry(FeatureStatuses statuses, long lastAccess) {
+            this.statuses = statuses;
+            this.lastAccess = lastAccess;
+        }
+
+        private FeatureStatuses access(AtomicLong clock) {
+            lastAccess = clock.incrementAndGet();
+            return statuses;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class EvaluationKey {
+
+        private final int plan;
+        private final long addOnMask;
+        private final List<Object> userContextValues;
+
+        private EvaluationKey(int plan, long addOnMask, List<Object> userContextValues) {
+            this.plan = plan;
+            this.addOnMask = addOnMask;
+            this.userContextValues = userContextValues;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters that estimates how often each key has
+     * been requested recently. The counters are halved once the number of
+     * increments reaches ten times the size of the cache, so old popularity
+     * fades.
+     *
+     * Counters are updated without synchronisation. Concurrent updates may
+     * lose increments or halvings, which only makes the estimates less precise.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L };
+
+        private static final int MAX_COUNT = 15;
+
+        private final byte[] counters;
+        private final int width;
+        private final int sampleSize;
+        private int increments;
+
+        private FrequencySketch(int maxSize) {
+            int capacity = Math.max(16, maxSize);
+            this.width = Integer.highestOneBit(capacity - 1) << 1;
+            this.counters = new byte[SEEDS.length * width];
+            this.sampleSize = 10 * capacity;
+        }
+
+        private void increment(int hash) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int counter = indexOf(hash, row);
+                byte count = counters[counter];
+                if (count < MAX_COUNT) {
+                    counters[counter] = (byte) (count + 1);
+                }
+            }
+
+            if (++increments >= sampleSize) {
+                for (int counter = 0; counter < counters.length; counter++) {
+                    counters[counter] >>>= 1;
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            long mixed = (hash + SEEDS[row]) * SEEDS[row];
+            mixed += mixed >>> 32;
+            return row * width + ((int) mixed & (width - 1));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view of values stored in the {@link ValueColumns} of a
+ * {@link PricingIndex}. Values are boxed on access.
+ */
+class OrdinalMap extends AbstractMap<String, Object> {
+
+    private final String[] names;
+    private final Map<String, Integer> ordinals;
+    private final ValueColumns values;
+    private final BitSet present;
+
+    OrdinalMap(String[] names, Map<String, Integer> ordinals, ValueColumns values) {
+        this.names = names;
+        this.ordinals = ordinals;
+        this.values = values;
+        this.present = values.present();
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer ordinal = ordinals.get(key);
+        return ordinal != null && present.get(ordinal) ? values.get(ordinal) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Integer ordinal = ordinals.get(key);
+        return ordinal != null && present.get(ordinal);
+    }
+
+    @Override
+    public int size() {
+        return present.cardinality();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public int size() {
+                return present.cardinality();
+            }
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+
+                    private int next = present.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(names[next], values.get(next));
+                        next = present.nextSetBit(next + 1);
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,496 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Feature;
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+
+/**
+ * Dense ordinals of the features, usage limits, plans and add-ons of a pricing,
+ * in declaration order, together with their values stored in arrays indexed by
+ * those ordinals. Names are only resolved at the boundaries; evaluation, token
+ * building and add-on merging work with ordinals.
+ *
+ * The index is a read-only copy of the pricing, so it must be built from a
+ * pricing that is not modified afterwards, such as the one of a
+ * {@link PricingSnapshot}.
+ */
+public class PricingIndex {
+
+    private static final Pattern USER_CONTEXT_ENTRY = Pattern.compile("userContext\\[\\s*['\"]([^'\"]+)['\"]\\s*\\]");
+
+    private static final Pattern OPAQUE_EXPRESSION = Pattern.compile("\\bT\\s*\\(|#|@|\\bnew\\s");
+
+    private final String[] features;
+    private final String[] usageLimits;
+    private final String[] plans;
+    private final String[] addOns;
+
+    private final Map<String, Integer> featureOrdinals;
+    private final Map<String, Integer> usageLimitOrdinals;
+    private final Map<String, Integer> planOrdinals;
+    private final Map<String, Integer> addOnOrdinals;
+
+    private final Feature[] featureDefinitions;
+    private final UsageLimit[] usageLimitDefinitions;
+    private final Plan[] planDefinitions;
+    private final AddOn[] addOnDefinitions;
+
+    // Values of the features and usage limits of each plan: value ?? defaultValue
+    private final ValueColumns[] planFeatureValues;
+    private final ValueColumns[] planUsageLimitValues;
+
+    // Ordinals and values that each add-on overrides or extends
+    private final int[][] addOnFeatures;
+    private final Object[][] addOnFeatureValues;
+    private final int[][] addOnUsageLimits;
+    private final Object[][] addOnUsageLimitValues;
+    private final int[][] addOnExtensions;
+    private final Object[][] addOnExtensionValues;
+
+    private final boolean[][] addOnAvailability;
+    private final int[][] addOnDependencies;
+    private final int[][] addOnExclusions;
+
+    // Usage limit and user context entry that each feature expression refers to
+    private final boolean[] featureUsesUsageLimit;
+    private final int[] featureUsageLimits;
+    private final String[] featureUserContextKeys;
+    private final int[][] linkedUsageLimits;
+    private final FeatureExpression[] expressions;
+    private final FeatureExpression[] serverExpressions;
+    private final String[] evaluatedUserContextKeys;
+
+    public PricingIndex(PricingManager pricingManager) {
+
+        Map<String, Feature> pricingFeatures = orEmpty(pricingManager.getFeatures());
+        Map<String, UsageLimit> pricingUsageLimits = orEmpty(pricingManager.getUsageLimits());
+        Map<String, Plan> pricingPlans = orEmpty(pricingManager.getPlans());
+        Map<String, AddOn> pricingAddOns = orEmpty(pricingManager.getAddOns());
+
+        this.features = pricingFeatures.keySet().toArray(new String[0]);
+        this.usageLimits = pricingUsageLimits.keySet().toArray(new String[0]);
+        this.plans = pricingPlans.keySet().toArray(new String[0]);
+        this.addOns = pricingAddOns.keySet().toArray(new String[0]);
+
+        this.featureOrdinals = ordinals(features);
+        this.usageLimitOrdinals = ordinals(usageLimits);
+        this.planOrdinals = ordinals(plans);
+        this.addOnOrdinals = ordinals(addOns);
+
+        this.featureDefinitions = pricingFeatures.values().toArray(new Feature[0]);
+        this.usageLimitDefinitions = pricingUsageLimits.values().toArray(new UsageLimit[0]);
+        this.planDefinitions = pricingPlans.values().toArray(new Plan[0]);
+        this.addOnDefinitions = pricingAddOns.values().toArray(new AddOn[0]);
+
+        this.planFeatureValues = new ValueColumns[plans.length];
+        this.planUsageLimitValues = new ValueColumns[plans.length];
+
+        for (int p = 0; p < plans.length; p++) {
+            Plan plan = planDefinitions[p];
+
+            planFeatureValues[p] = new ValueColumns(features.length);
+            for (Map.Entry<String, Feature> entry : orEmpty(plan.getFeatures()).entrySet()) {
+                int f = ordinal(featureOrdinals, entry.getKey());
+                if (f >= 0) {
+                    planFeatureValues[p].set(f, valueOf(entry.getValue()));
+                }
+            }
+
+            planUsageLimitValues[p] = new ValueColumns(usageLimits.length);
+            for (Map.Entry<String, UsageLimit> entry : orEmpty(plan.getUsageLimits()).entrySet()) {
+                int u = ordinal(usageLimitOrdinals, entry.getKey());
+                if (u >= 0) {
+                    planUsageLimitValues[p].set(u, valueOf(entry.getValue()));
+                }
+            }
+        }
+
+        this.addOnFeatures = new int[addOns.length][];
+        this.addOnFeatureValues = new Object[addOns.length][];
+        this.addOnUsageLimits = new int[addOns.length][];
+        this.addOnUsageLimitValues = new Object[addOns.length][];
+        this.addOnExtensions = new int[addOns.length][];
+        this.addOnExtensionValues = new Object[addOns.length][];
+        this.addOnAvailability = new boolean[addOns.length][];
+        this.addOnDependencies = new int[addOns.length][];
+        this.addOnExclusions = new int[addOns.length][];
+
+        for (int a = 0; a < addOns.length; a++) {
+            AddOn addOn = addOnDefinitions[a];
+
+            Map<Integer, Object> overrides = new LinkedHashMap<>();
+            orEmpty(addOn.getFeatures()).forEach((name, feature) -> put(overrides, featureOrdinals, name, feature.getValue()));
+            addOnFeatures[a] = keys(overrides);
+            addOnFeatureValues[a] = overrides.values().toArray();
+
+            overrides.clear();
+            orEmpty(addOn.getUsageLimits())
+                    .forEach((name, usageLimit) -> put(overrides, usageLimitOrdinals, name, usageLimit.getValue()));
+            addOnUsageLimits[a] = keys(overrides);
+            addOnUsageLimitValues[a] = overrides.values().toArray();
+
+            overrides.clear();
+            orEmpty(addOn.getUsageLimitsExtensions())
+                    .forEach((name, extension) -> put(overrides, usageLimitOrdinals, name, extension.getValue()));
+            addOnExtensions[a] = keys(overrides);
+            addOnExtensionValues[a] = overrides.values().toArray();
+
+            addOnAvailability[a] = new boolean[plans.length];
+            for (int p = 0; p < plans.length; p++) {
+                addOnAvailability[a][p] = addOn.getAvailableFor() == null || addOn.getAvailableFor().isEmpty()
+                        || addOn.getAvailableFor().contains(plans[p]);
+            }
+
+            addOnDependencies[a] = ordinalsOf(addOnOrdinals, addOn.getDependsOn());
+            addOnExclusions[a] = ordinalsOf(addOnOrdinals, addOn.getExcludes());
+        }
+
+        this.featureUsesUsageLimit = new boolean[features.length];
+        this.featureUsageLimits = new int[features.length];
+        this.featureUserContextKeys = new String[features.length];
+        this.linkedUsageLimits = new int[features.length][];
+        this.expressions = new FeatureExpression[features.length];
+        this.serverExpressions = new FeatureExpression[features.length];
+
+        for (int f = 0; f < features.length; f++) {
+            String expression = featureDefinitions[f].getExpression();
+            String serverExpression = featureDefinitions[f].getServerExpression();
+            featureUsageLimits[f] = -1;
+            expressions[f] = FeatureExpression.compile(expression, this);
+            serverExpressions[f] = serverExpression != null ? FeatureExpression.compile(serverExpression, this)
+                    : expressions[f];
+
+            if (expression != null) {
+                Optional<String> userContextKey = FeatureStatus.computeUserContextVariable(expression);
+                featureUserContextKeys[f] = userContextKey.orElse(null);
+
+                if (userContextKey.isPresent() && expression.contains("usageLimits")) {
+                    featureUsesUsageLimit[f] = true;
+                    featureUsageLimits[f] = usageLimitOrdinalOf(expression);
+                }
+            }
+
+            int[] linked = new int[usageLimits.length];
+            int count = 0;
+            for (int u = 0; u < usageLimits.length; u++) {
+                if (usageLimitDefinitions[u].getLinkedFeatures() != null
+                        && usageLimitDefinitions[u].isLinkedToFeature(features[f])) {
+                    linked[count++] = u;
+                }
+            }
+            linkedUsageLimits[f] = Arrays.copyOf(linked, count);
+        }
+
+        this.evaluatedUserContextKeys = userContextKeysOf(featureDefinitions);
+    }
+
+    /**
+     * Returns the index attached to the snapshot.
+     *
+     * @param snapshot the pricing snapshot
+     * @return the index of the snapshot
+     */
+    public static PricingIndex of(PricingSnapshot snapshot) {
+        return snapshot.computeIfAbsent(PricingIndex.class, s -> new PricingIndex(s.getPricingManager()));
+    }
+
+    // ---------- ordinals ----------
+
+    /**
+     * @return the ordinal of the feature, or -1 if it does not exist
+     */
+    public int featureOrdinal(String name) {
+        return ordinal(featureOrdinals, name);
+    }
+
+    public int usageLimitOrdinal(String name) {
+        return ordinal(usageLimitOrdinals, name);
+    }
+
+    public int planOrdinal(String name) {
+        return ordinal(planOrdinals, name);
+    }
+
+    public int addOnOrdinal(String name) {
+        return ordinal(addOnOrdinals, name);
+    }
+
+    public int featureCount() {
+        return features.length;
+    }
+
+    public int usageLimitCount() {
+        return usageLimits.length;
+    }
+
+    public int planCount() {
+        return plans.length;
+    }
+
+    public int addOnCount() {
+        return addOns.length;
+    }
+
+    public String featureName(int feature) {
+        return features[feature];
+    }
+
+    public String usageLimitName(int usageLimit) {
+        return usageLimits[usageLimit];
+    }
+
+    public String planName(int plan) {
+        return plans[plan];
+    }
+
+    public String addOnName(int addOn) {
+        return addOns[addOn];
+    }
+
+    public Feature getFeature(int feature) {
+        return featureDefinitions[feature];
+    }
+
+    public UsageLimit getUsageLimit(int usageLimit) {
+        return usageLimitDefinitions[usageLimit];
+    }
+
+    public Plan getPlan(int plan) {
+        return planDefinitions[plan];
+    }
+
+    public AddOn getAddOn(int addOn) {
+        return addOnDefinitions[addOn];
+    }
+
+    // ---------- plans and add-ons ----------
+
+    ValueColumns planFeatureValues(int plan) {
+        return planFeatureValues[plan];
+    }
+
+    ValueColumns planUsageLimitValues(int plan) {
+        return planUsageLimitValues[plan];
+    }
+
+    /**
+     * @return the ordinals of the features whose value the add-on sets
+     */
+    int[] addOnFeatures(int addOn) {
+        return addOnFeatures[addOn];
+    }
+
+    /**
+     * @return the values of {@link #addOnFeatures(int)}, in the same order
+     */
+    Object[] addOnFeatureValues(int addOn) {
+        return addOnFeatureValues[addOn];
+    }
+
+    int[] addOnUsageLimits(int addOn) {
+        return addOnUsageLimits[addOn];
+    }
+
+    Object[] addOnUsageLimitValues(int addOn) {
+        return addOnUsageLimitValues[addOn];
+    }
+
+    int[] addOnExtensions(int addOn) {
+        return addOnExtensions[addOn];
+    }
+
+    Object[] addOnExtensionValues(int addOn) {
+        return addOnExtensionValues[addOn];
+    }
+
+    boolean isAvailable(int addOn, int plan) {
+        return addOnAvailability[addOn][plan];
+    }
+
+    int[] addOnDependencies(int addOn) {
+        return addOnDependencies[addOn];
+    }
+
+    int[] addOnExclusions(int addOn) {
+        return addOnExclusions[addOn];
+    }
+
+    // ---------- feature expressions ----------
+
+    /**
+     * @return true if the limit of the feature is a usage limit instead of its
+     *         own value
+     */
+    public boolean featureUsesUsageLimit(int feature) {
+        return featureUsesUsageLimit[feature];
+    }
+
+    /**
+     * @return the ordinal of the usage limit that the expression of the feature
+     *         compares with the user context, or -1 if it does not use any or
+     *         the usage limit does not exist
+     */
+    public int featureUsageLimit(int feature) {
+        return featureUsageLimits[feature];
+    }
+
+    /**
+     * @return the user context entry that the expression of the feature reads,
+     *         or null if it does not read any
+     */
+    public String featureUserContextKey(int feature) {
+        return featureUserContextKeys[feature];
+    }
+
+    /**
+     * @return the ordinals of the usage limits linked to the feature
+     */
+    public int[] linkedUsageLimits(int feature) {
+        return linkedUsageLimits[feature];
+    }
+
+    /**
+     * @return the compiled expression of the feature, or null if it cannot be
+     *         evaluated natively and must be evaluated with SpEL
+     */
+    public FeatureExpression getExpression(int feature) {
+        return expressions[feature];
+    }
+
+    /**
+     * @return the compiled server expression of the feature, which is its
+     *         expression when it has no server expression, or null if it must be
+     *         evaluated with SpEL
+     */
+    public FeatureExpression getServerExpression(int feature) {
+        return serverExpressions[feature];
+    }
+
+    /**
+     * Returns the user context entries that the expressions of the features
+     * read, so the evaluation of a subscription only depends on their values.
+     * It cannot be told when an expression reads the user context other than
+     * through {@code userContext['key']}, or uses SpEL types, variables, beans
+     * or constructors, whose result may depend on anything else.
+     *
+     * @return the entries read by the expressions, or null if they cannot be
+     *         determined
+     */
+    public String[] evaluatedUserContextKeys() {
+        return evaluatedUserContextKeys != null ? evaluatedUserContextKeys.clone() : null;
+    }
+
+    /**
+     * @return a read-only map view of feature values indexed by ordinals
+     */
+    Map<String, Object> featureView(ValueColumns values) {
+        return new OrdinalMap(features, featureOrdinals, values);
+    }
+
+    /**
+     * @return a read-only map view of usage limit values indexed by ordinals
+     */
+    Map<String, Object> usageLimitView(ValueColumns values) {
+        return new OrdinalMap(usageLimits, usageLimitOrdinals, values);
+    }
+
+    private static String[] userContextKeysOf(Feature[] definitions) {
+
+        Set<String> keys = new LinkedHashSet<>();
+
+        for (Feature definition : definitions) {
+            String expression = definition.getExpression();
+
+            if (expression == null) {
+                continue;
+            }
+
+            if (OPAQUE_EXPRESSION.matcher(expression).find()) {
+                return null;
+            }
+
+            Matcher entry = USER_CONTEXT_ENTRY.matcher(expression);
+            int entries = 0;
+
+            while (entry.find()) {
+                keys.add(entry.group(1));
+                entries++;
+            }
+
+            if (entries != expression.split("userContext", -1).length - 1) {
+                return null;
+            }
+        }
+
+        return keys.toArray(new String[0]);
+    }
+
+    private int usageLimitOrdinalOf(String expression) {
+        try {
+            return ordinal(usageLimitOrdinals, expression.split("usageLimits")[1].split("[',\"]")[2]);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static void put(Map<Integer, Object> overrides, Map<String, Integer> ordinals, String name, Object value) {
+        int ordinal = ordinal(ordinals, name);
+        if (ordinal >= 0 && value != null) {
+            overrides.put(ordinal, value);
+        }
+    }
+
+    private static int[] keys(Map<Integer, Object> overrides) {
+        return overrides.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int ordinal(Map<String, Integer> ordinals, String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    private static int[] ordinalsOf(Map<String, Integer> ordinals, List<String> names) {
+
+        if (names == null) {
+            return new int[0];
+        }
+
+        return names.stream().mapToInt(name -> ordinal(ordinals, name)).toArray();
+    }
+
+    private static Map<String, Integer> ordinals(String[] names) {
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ordinals.put(names[i], i);
+        }
+        return Collections.unmodifiableMap(ordinals);
+    }
+
+    private static <T> Map<String, T> orEmpty(Map<String, T> map) {
+        return map != null ? map : Map.of();
+    }
+
+    private static Object valueOf(Feature feature) {
+        return feature.getValue() != null ? feature.getValue() : feature.getDefaultValue();
+    }
+
+    private static Object valueOf(UsageLimit usageLimit) {
+        return usageLimit.getValue() != null ? usageLimit.getValue() : usageLimit.getDefaultValue();
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * A valid subscription of a pricing: a plan and a set of add-ons. Add-ons are
+ * encoded as a bitmask of their declaration indexes, the same encoding used by
+ * {@link EffectiveConfigurationCache#addOnMask(java.util.Collection)}.
+ */
+@EqualsAndHashCode(exclude = "addOnNames")
+public class SubscriptionConfiguration {
+
+    private final String plan;
+    private final long addOnMask;
+    private final String[] addOnNames;
+
+    SubscriptionConfiguration(String plan, long addOnMask, String[] addOnNames) {
+        this.plan = plan;
+        this.addOnMask = addOnMask;
+        this.addOnNames = addOnNames;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public long getAddOnMask() {
+        return addOnMask;
+    }
+
+    /**
+     * @return the names of the add-ons, in declaration order
+     */
+    public List<String> getAddOns() {
+        List<String> addOns = new ArrayList<>(Long.bitCount(addOnMask));
+        for (long mask = addOnMask; mask != 0; mask &= mask - 1) {
+            addOns.add(addOnNames[Long.numberOfTrailingZeros(mask)]);
+        }
+        return addOns;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionConfiguration[plan=" + plan + ", addOns=" + getAddOns() + "]";
+    }
+}
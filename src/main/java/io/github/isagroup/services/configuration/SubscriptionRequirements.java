@@ -0,0 +1,43 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Features and usage limits a subscription must provide.
+ * 
+ * A feature without minimum must be enabled: a true boolean, a positive number
+ * or any text. A feature or usage limit with a minimum must have a numeric
+ * value greater than or equal to it.
+ */
+public class SubscriptionRequirements {
+
+    static final double ENABLED = Double.MIN_VALUE;
+
+    private final Map<String, Double> features = new LinkedHashMap<>();
+    private final Map<String, Double> usageLimits = new LinkedHashMap<>();
+
+    public SubscriptionRequirements feature(String featureName) {
+        features.put(featureName, ENABLED);
+        return this;
+    }
+
+    public SubscriptionRequirements feature(String featureName, double minimum) {
+        features.put(featureName, minimum);
+        return this;
+    }
+
+    public SubscriptionRequirements usageLimit(String usageLimitName, double minimum) {
+        usageLimits.put(usageLimitName, minimum);
+        return this;
+    }
+
+    public Map<String, Double> getFeatures() {
+        return Collections.unmodifiableMap(features);
+    }
+
+    public Map<String, Double> getUsageLimits() {
+        return Collections.unmodifiableMap(usageLimits);
+    }
+}
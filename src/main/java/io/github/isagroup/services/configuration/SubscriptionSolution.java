@@ -0,0 +1,24 @@
+package io.github.isagroup.services.configuration;
+
+import lombok.Getter;
+
+/**
+ * A subscription together with its price for a billing period.
+ */
+@Getter
+public class SubscriptionSolution {
+
+    private final SubscriptionConfiguration configuration;
+    private final double price;
+
+    SubscriptionSolution(SubscriptionConfiguration configuration, double price) {
+        this.configuration = configuration;
+        this.price = price;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriptionSolution[plan=" + configuration.getPlan() + ", addOns=" + configuration.getAddOns()
+                + ", price=" + price + "]";
+    }
+}
@@ -0,0 +1,433 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Feature;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+
+/**
+ * Finds the cheapest valid subscription that fulfils some
+ * {@link SubscriptionRequirements}.
+ *
+ * Every plan and add-on is precomputed as a capability vector with the numeric
+ * level of each feature and usage limit, so the search only works with
+ * bitmasks and arrays. The search is a branch and bound over the add-ons that
+ * can contribute to the requirements: a branch is cut when it already costs as
+ * much as the best subscription found, or when even contracting every
+ * compatible remaining add-on would not fulfil the requirements. Add-ons are
+ * contracted together with their dependencies, and their values are merged as
+ * in {@link EffectiveConfiguration}.
+ */
+public class SubscriptionSolver {
+
+    private final PricingManager pricingManager;
+    private final ConfigurationSpace space;
+
+    private final String[] plans;
+    private final String[] addOnNames;
+    private final Map<String, Integer> featureColumns = new HashMap<>();
+    private final Map<String, Integer> usageLimitColumns = new HashMap<>();
+
+    // NaN prices are not numeric, so the item cannot be contracted
+    private final double[] planPrices;
+    private final double[] addOnPrices;
+
+    private final double[][] planFeatures;
+    private final double[][] planUsageLimits;
+
+    // NaN levels mean that the add-on does not override the value
+    private final double[][] addOnFeatures;
+    private final double[][] addOnUsageLimits;
+    private final double[][] addOnExtensions;
+
+    public SubscriptionSolver(PricingManager pricingManager) {
+        this.pricingManager = pricingManager;
+        this.space = new ConfigurationSpace(pricingManager);
+        this.plans = space.getPlans().toArray(new String[0]);
+        this.addOnNames = space.getAddOns().toArray(new String[0]);
+
+        if (pricingManager.getFeatures() != null) {
+            for (String featureName : pricingManager.getFeatures().keySet()) {
+                featureColumns.put(featureName, featureColumns.size());
+            }
+        }
+
+        if (pricingManager.getUsageLimits() != null) {
+            for (String usageLimitName : pricingManager.getUsageLimits().keySet()) {
+                usageLimitColumns.put(usageLimitName, usageLimitColumns.size());
+            }
+        }
+
+        this.planPrices = new double[plans.length];
+        this.planFeatures = new double[plans.length][];
+        this.planUsageLimits = new double[plans.length][];
+
+        for (int p = 0; p < plans.length; p++) {
+            Plan plan = pricingManager.getPlans().get(plans[p]);
+            planPrices[p] = priceOf(plan.getPrice());
+            planFeatures[p] = featureLevels(plan.getFeatures(), true);
+            planUsageLimits[p] = usageLimitLevels(plan.getUsageLimits(), true);
+        }
+
+        this.addOnPrices = new double[addOnNames.length];
+        this.addOnFeatures = new double[addOnNames.length][];
+        this.addOnUsageLimits = new double[addOnNames.length][];
+        this.addOnExtensions = new double[addOnNames.length][];
+
+        for (int a = 0; a < addOnNames.length; a++) {
+            AddOn addOn = pricingManager.getAddOns().get(addOnNames[a]);
+            addOnPrices[a] = priceOf(addOn.getPrice());
+            addOnFeatures[a] = featureLevels(addOn.getFeatures(), false);
+            addOnUsageLimits[a] = usageLimitLevels(addOn.getUsageLimits(), false);
+            addOnExtensions[a] = usageLimitLevels(addOn.getUsageLimitsExtensions(), false);
+            for (int u = 0; u < addOnExtensions[a].length; u++) {
+                if (Double.isNaN(addOnExtensions[a][u])) {
+                    addOnExtensions[a][u] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the solver attached to the snapshot.
+     *
+     * @param snapshot the pricing snapshot
+     * @return the solver of the snapshot
+     */
+    public static SubscriptionSolver of(PricingSnapshot snapshot) {
+        return snapshot.computeIfAbsent(SubscriptionSolver.class, s -> new SubscriptionSolver(s.getPricingManager()));
+    }
+
+    /**
+     * Finds the cheapest subscription billed monthly.
+     *
+     * @param requirements the features and usage limits to fulfil
+     * @return the cheapest subscription, or empty if no subscription fulfils the
+     *         requirements
+     */
+    public Optional<SubscriptionSolution> solve(SubscriptionRequirements requirements) {
+        return solve(requirements, null);
+    }
+
+    /**
+     * Finds the cheapest subscription for a billing period. Prices are multiplied
+     * by the factor of the period in the {@code billing} of the pricing.
+     *
+     * @param requirements  the features and usage limits to fulfil
+     * @param billingPeriod a key of the pricing billing, or null to use the
+     *                      prices as they are
+     * @return the cheapest subscription, or empty if no subscription fulfils the
+     *         requirements. Ties are resolved in favour of the plan declared
+     *         first.
+     */
+    public Optional<SubscriptionSolution> solve(SubscriptionRequirements requirements, String billingPeriod) {
+        Search search = new Search(requirements, billingFactor(billingPeriod));
+
+        for (int p = 0; p < plans.length; p++) {
+            search.solvePlan(p);
+        }
+
+        if (search.bestPlan < 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new SubscriptionSolution(
+                new SubscriptionConfiguration(plans[search.bestPlan], search.bestMask, addOnNames), search.best));
+    }
+
+    private double billingFactor(String billingPeriod) {
+
+        if (billingPeriod == null) {
+            return 1.0;
+        }
+
+        Map<String, Double> billing = pricingManager.getBilling();
+
+        if (billing == null || !billing.containsKey(billingPeriod)) {
+            throw new IllegalArgumentException("The billing period " + billingPeriod + " does not exist in the pricing");
+        }
+
+        return billing.get(billingPeriod);
+    }
+
+    private double[] featureLevels(Map<String, Feature> features, boolean withDefaults) {
+        double[] levels = new double[featureColumns.size()];
+        Arrays.fill(levels, withDefaults ? 0 : Double.NaN);
+
+        if (features != null) {
+            features.forEach((name, feature) -> {
+                Integer column = featureColumns.get(name);
+                Object value = feature.getValue() != null || !withDefaults ? feature.getValue()
+                        : feature.getDefaultValue();
+                if (column != null && value != null) {
+                    levels[column] = levelOf(value);
+                }
+            });
+        }
+
+        return levels;
+    }
+
+    private double[] usageLimitLevels(Map<String, UsageLimit> usageLimits, boolean withDefaults) {
+        double[] levels = new double[usageLimitColumns.size()];
+        Arrays.fill(levels, withDefaults ? 0 : Double.NaN);
+
+        if (usageLimits != null) {
+            usageLimits.forEach((name, usageLimit) -> {
+                Integer column = usageLimitColumns.get(name);
+                Object value = usageLimit.getValue() != null || !withDefaults ? usageLimit.getValue()
+                        : usageLimit.getDefaultValue();
+                if (column != null && value != null) {
+                    levels[column] = levelOf(value);
+                }
+            });
+        }
+
+        return levels;
+    }
+
+    private static double levelOf(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value.toString().isEmpty() ? 0 : 1;
+    }
+
+    private static double priceOf(Object price) {
+        if (price instanceof Number) {
+            return ((Number) price).doubleValue();
+        }
+        if (price != null) {
+            try {
+                return Double.parseDouble(price.toString());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * State of a single search, so the solver can be shared between threads.
+     */
+    private final class Search {
+
+        private final int[] features;
+        private final double[] featureMinimums;
+        private final int[] usageLimits;
+        private final double[] usageLimitMinimums;
+        private final double billingFactor;
+
+        private final double[] closurePrices;
+        private final long relevant;
+
+        private int[] candidates;
+        private double best = Double.POSITIVE_INFINITY;
+        private int bestPlan = -1;
+        private long bestMask;
+
+        private Search(SubscriptionRequirements requirements, double billingFactor) {
+            this.billingFactor = billingFactor;
+
+            this.features = new int[requirements.getFeatures().size()];
+            this.featureMinimums = new double[features.length];
+            int i = 0;
+            for (Map.Entry<String, Double> entry : requirements.getFeatures().entrySet()) {
+                features[i] = column(featureColumns, "feature", entry.getKey());
+                featureMinimums[i++] = entry.getValue();
+            }
+
+            this.usageLimits = new int[requirements.getUsageLimits().size()];
+            this.usageLimitMinimums = new double[usageLimits.length];
+            i = 0;
+            for (Map.Entry<String, Double> entry : requirements.getUsageLimits().entrySet()) {
+                usageLimits[i] = column(usageLimitColumns, "usage limit", entry.getKey());
+                usageLimitMinimums[i++] = entry.getValue();
+            }
+
+            this.closurePrices = new double[addOnNames.length];
+            long relevantMask = 0;
+
+            for (int a = 0; a < addOnNames.length; a++) {
+                long closure = space.getDependencies(a) | (1L << a);
+                for (long mask = closure; mask != 0; mask &= mask - 1) {
+                    closurePrices[a] += addOnPrices[Long.numberOfTrailingZeros(mask)];
+                }
+                if (contributes(a)) {
+                    relevantMask |= 1L << a;
+                }
+            }
+
+            this.relevant = relevantMask;
+        }
+
+        private void solvePlan(int plan) {
+
+            double planCost = planPrices[plan] * billingFactor;
+
+            if (Double.isNaN(planCost) || planCost >= best) {
+                return;
+            }
+
+            List<Integer> planCandidates = new ArrayList<>();
+            for (long mask = relevant & space.getIncludable(plan); mask != 0; mask &= mask - 1) {
+                int addOn = Long.numberOfTrailingZeros(mask);
+                if (!Double.isNaN(closurePrices[addOn])) {
+                    planCandidates.add(addOn);
+                }
+            }
+
+            // Cheap add-ons first, so good bounds are found early
+            planCandidates.sort(Comparator.comparingDouble(addOn -> closurePrices[addOn]));
+            candidates = planCandidates.stream().mapToInt(Integer::intValue).toArray();
+
+            search(plan, 0, 0, planCost);
+        }
+
+        private void search(int plan, int index, long chosen, double cost) {
+
+            if (cost >= best) {
+                return;
+            }
+
+            if (fulfils(plan, chosen)) {
+                best = cost;
+                bestPlan = plan;
+                bestMask = chosen;
+                return;
+            }
+
+            if (index == candidates.length || !mayFulfil(plan, index, chosen)) {
+                return;
+            }
+
+            int addOn = candidates[index];
+            long closure = space.getDependencies(addOn) | (1L << addOn);
+
+            if ((space.getClosureConflicts(addOn) & chosen) == 0) {
+                double addedCost = 0;
+                for (long mask = closure & ~chosen; mask != 0; mask &= mask - 1) {
+                    addedCost += addOnPrices[Long.numberOfTrailingZeros(mask)];
+                }
+                search(plan, index + 1, chosen | closure, cost + addedCost * billingFactor);
+            }
+
+            search(plan, index + 1, chosen, cost);
+        }
+
+        /**
+         * Exact values, where the add-on declared last overrides the others.
+         */
+        private boolean fulfils(int plan, long chosen) {
+
+            for (int i = 0; i < features.length; i++) {
+                if (value(planFeatures[plan], addOnFeatures, features[i], chosen) < featureMinimums[i]) {
+                    return false;
+                }
+            }
+
+            for (int i = 0; i < usageLimits.length; i++) {
+                double value = value(planUsageLimits[plan], addOnUsageLimits, usageLimits[i], chosen);
+                for (long mask = chosen; mask != 0; mask &= mask - 1) {
+                    value += addOnExtensions[Long.numberOfTrailingZeros(mask)][usageLimits[i]];
+                }
+                if (value < usageLimitMinimums[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Upper bound of the values reachable by contracting every compatible
+         * remaining candidate.
+         */
+        private boolean mayFulfil(int plan, int index, long chosen) {
+
+            long reachable = chosen;
+
+            for (int i = index; i < candidates.length; i++) {
+                int addOn = candidates[i];
+                if ((space.getClosureConflicts(addOn) & chosen) == 0) {
+                    reachable |= space.getDependencies(addOn) | (1L << addOn);
+                }
+            }
+
+            for (int i = 0; i < features.length; i++) {
+                if (maxValue(planFeatures[plan], addOnFeatures, features[i], reachable) < featureMinimums[i]) {
+                    return false;
+                }
+            }
+
+            for (int i = 0; i < usageLimits.length; i++) {
+                double value = maxValue(planUsageLimits[plan], addOnUsageLimits, usageLimits[i], reachable);
+                for (long mask = reachable; mask != 0; mask &= mask - 1) {
+                    value += Math.max(0, addOnExtensions[Long.numberOfTrailingZeros(mask)][usageLimits[i]]);
+                }
+                if (value < usageLimitMinimums[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private double value(double[] planLevels, double[][] addOnLevels, int column, long chosen) {
+            for (long mask = chosen; mask != 0; mask &= ~Long.highestOneBit(mask)) {
+                double level = addOnLevels[63 - Long.numberOfLeadingZeros(mask)][column];
+                if (!Double.isNaN(level)) {
+                    return level;
+                }
+            }
+            return planLevels[column];
+        }
+
+        private double maxValue(double[] planLevels, double[][] addOnLevels, int column, long reachable) {
+            double max = planLevels[column];
+            for (long mask = reachable; mask != 0; mask &= mask - 1) {
+                double level = addOnLevels[Long.numberOfTrailingZeros(mask)][column];
+                if (!Double.isNaN(level)) {
+                    max = Math.max(max, level);
+                }
+            }
+            return max;
+        }
+
+        private boolean contributes(int addOn) {
+            for (int i = 0; i < features.length; i++) {
+                if (addOnFeatures[addOn][features[i]] >= featureMinimums[i]) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < usageLimits.length; i++) {
+                if (!Double.isNaN(addOnUsageLimits[addOn][usageLimits[i]])
+                        || addOnExtensions[addOn][usageLimits[i]] > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int column(Map<String, Integer> columns, String kind, String name) {
+            Integer column = columns.get(name);
+            if (column == null) {
+                throw new IllegalArgumentException("The " + kind + " " + name + " does not exist in the pricing");
+            }
+            return column;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.isagroup.services.configuration;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Values of features or usage limits indexed by the ordinals of a
+ * {@link PricingIndex}, stored in primitive columns according to their type:
+ * NUMERIC values in a {@code long[]} or {@code double[]}, BOOLEAN values in a
+ * {@link BitSet} and anything else, e.g. TEXT values, as objects. A tag per
+ * ordinal remembers the original type, so the boxed value is the same one that
+ * was stored.
+ *
+ * The double and object columns are only allocated when a value needs them.
+ */
+final class ValueColumns {
+
+    static final byte NULL = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+    static final byte BOOLEAN = 4;
+    static final byte OBJECT = 5;
+
+    private final byte[] kinds;
+    private final long[] longs;
+    private final BitSet booleans;
+    private final BitSet present;
+    private double[] doubles;
+    private Object[] objects;
+
+    ValueColumns(int size) {
+        this.kinds = new byte[size];
+        this.longs = new long[size];
+        this.booleans = new BitSet(size);
+        this.present = new BitSet(size);
+    }
+
+    private ValueColumns(ValueColumns other) {
+        this.kinds = other.kinds.clone();
+        this.longs = other.longs.clone();
+        this.booleans = (BitSet) other.booleans.clone();
+        this.present = (BitSet) other.present.clone();
+        this.doubles = other.doubles != null ? other.doubles.clone() : null;
+        this.objects = other.objects != null ? other.objects.clone() : null;
+    }
+
+    ValueColumns copy() {
+        return new ValueColumns(this);
+    }
+
+    int size() {
+        return kinds.length;
+    }
+
+    BitSet present() {
+        return present;
+    }
+
+    boolean isPresent(int ordinal) {
+        return present.get(ordinal);
+    }
+
+    byte kind(int ordinal) {
+        return kinds[ordinal];
+    }
+
+    boolean isIntegral(int ordinal) {
+        return kinds[ordinal] == INT || kinds[ordinal] == LONG;
+    }
+
+    boolean isNumeric(int ordinal) {
+        return isIntegral(ordinal) || kinds[ordinal] == DOUBLE;
+    }
+
+    /**
+     * @return the value of an INT or LONG ordinal
+     */
+    long longValue(int ordinal) {
+        return longs[ordinal];
+    }
+
+    /**
+     * @return the value of a numeric ordinal, widened to double
+     */
+    double doubleValue(int ordinal) {
+        return kinds[ordinal] == DOUBLE ? doubles[ordinal] : longs[ordinal];
+    }
+
+    boolean booleanValue(int ordinal) {
+        return booleans.get(ordinal);
+    }
+
+    /**
+     * @return the boxed value, which is null when the ordinal is not present
+     */
+    Object get(int ordinal) {
+        switch (kinds[ordinal]) {
+            case INT:
+                return (int) longs[ordinal];
+            case LONG:
+                return longs[ordinal];
+            case DOUBLE:
+                return doubles[ordinal];
+            case BOOLEAN:
+                return booleans.get(ordinal);
+            case OBJECT:
+                return objects[ordinal];
+            default:
+                return null;
+        }
+    }
+
+    void set(int ordinal, Object value) {
+
+        present.set(ordinal);
+        booleans.clear(ordinal);
+        if (objects != null) {
+            objects[ordinal] = null;
+        }
+
+        if (value instanceof Integer) {
+            setLong(ordinal, INT, (Integer) value);
+        } else if (value instanceof Long) {
+            setLong(ordinal, LONG, (Long) value);
+        } else if (value instanceof Double) {
+            setDouble(ordinal, (Double) value);
+        } else if (value instanceof Boolean) {
+            kinds[ordinal] = BOOLEAN;
+            booleans.set(ordinal, (Boolean) value);
+        } else if (value != null) {
+            if (objects == null) {
+                objects = new Object[kinds.length];
+            }
+            kinds[ordinal] = OBJECT;
+            objects[ordinal] = value;
+        } else {
+            kinds[ordinal] = NULL;
+        }
+    }
+
+    /**
+     * Copies a value from other columns without boxing it.
+     */
+    void set(int ordinal, ValueColumns source, int sourceOrdinal) {
+
+        clear(ordinal);
+
+        if (!source.isPresent(sourceOrdinal)) {
+            return;
+        }
+
+        present.set(ordinal);
+
+        switch (source.kinds[sourceOrdinal]) {
+            case INT:
+            case LONG:
+                setLong(ordinal, source.kinds[sourceOrdinal], source.longs[sourceOrdinal]);
+                break;
+            case DOUBLE:
+                setDouble(ordinal, source.doubles[sourceOrdinal]);
+                break;
+            case BOOLEAN:
+                kinds[ordinal] = BOOLEAN;
+                booleans.set(ordinal, source.booleans.get(sourceOrdinal));
+                break;
+            default:
+                set(ordinal, source.get(sourceOrdinal));
+        }
+    }
+
+    void clear(int ordinal) {
+        present.clear(ordinal);
+        booleans.clear(ordinal);
+        kinds[ordinal] = NULL;
+        if (objects != null) {
+            objects[ordinal] = null;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(kinds, NULL);
+        booleans.clear();
+        present.clear();
+        if (objects != null) {
+            Arrays.fill(objects, null);
+        }
+    }
+
+    /**
+     * Adds a usage limit extension to the value of the ordinal. Non numeric
+     * extensions are ignored and replace non numeric values. The result is a
+     * double if any of the operands is decimal, a long if any of them is or the
+     * sum does not fit in an int, and an int otherwise.
+     */
+    void add(int ordinal, Object extension) {
+
+        if (!(extension instanceof Number)) {
+            return;
+        }
+
+        Object value = get(ordinal);
+
+        if (!(value instanceof Number)) {
+            set(ordinal, extension);
+            return;
+        }
+
+        Number a = (Number) value;
+        Number b = (Number) extension;
+
+        if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+            set(ordinal, a.doubleValue() + b.doubleValue());
+            return;
+        }
+
+        long result = a.longValue() + b.longValue();
+
+        if (a instanceof Long || b instanceof Long || result != (int) result) {
+            set(ordinal, result);
+        } else {
+            set(ordinal, (int) result);
+        }
+    }
+
+    private void setLong(int ordinal, byte kind, long value) {
+        kinds[ordinal] = kind;
+        longs[ordinal] = value;
+    }
+
+    private void setDouble(int ordinal, double value) {
+        if (doubles == null) {
+            doubles = new double[kinds.length];
+        }
+        kinds[ordinal] = DOUBLE;
+        doubles[ordinal] = value;
+    }
+}
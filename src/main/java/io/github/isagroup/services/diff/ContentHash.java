@@ -0,0 +1,74 @@
+package io.github.isagroup.services.diff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 64-bit structural hash of the serialized form of pricing entities. Maps are
+ * hashed regardless of their order, collections in order, and numbers by their
+ * value, so {@code 5} and {@code 5.0} hash the same.
+ */
+public final class ContentHash {
+
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+    private ContentHash() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    public static long of(Object value) {
+
+        if (value == null) {
+            return NULL_HASH;
+        }
+
+        if (value instanceof Map) {
+            long hash = 0x51ed270b27L;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                // Commutative combination, so the order of the entries does not matter
+                hash += mix(of(entry.getKey()) * 31 + of(entry.getValue()));
+            }
+            return mix(hash);
+        }
+
+        if (value instanceof Collection) {
+            long hash = 0x2545f4914f6cdd1dL;
+            for (Object element : (Collection<?>) value) {
+                hash = mix(hash * 31 + of(element));
+            }
+            return hash;
+        }
+
+        if (value instanceof Number) {
+            return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+        }
+
+        if (value instanceof Enum) {
+            return mix(fnv1a(((Enum<?>) value).name()));
+        }
+
+        return mix(fnv1a(value.getClass().getName()) * 0xff51afd7ed558ccdL + fnv1a(value.toString()));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 bytes of a string.
+     */
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of SplitMix64.
+     */
+    static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
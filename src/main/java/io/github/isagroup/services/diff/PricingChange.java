@@ -0,0 +1,47 @@
+package io.github.isagroup.services.diff;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A single change between two versions of a pricing.
+ *
+ * Added and removed entities are reported as a whole. Modified entities are
+ * reported once per changed attribute, whose path joins nested keys with dots,
+ * e.g. {@code features.maxPets.value} in a plan.
+ */
+@Getter
+@EqualsAndHashCode
+public class PricingChange {
+
+    public enum EntityType {
+        PRICING, FEATURE, USAGE_LIMIT, PLAN, ADD_ON
+    }
+
+    public enum ChangeType {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    private final EntityType entityType;
+    private final ChangeType changeType;
+    private final String name;
+    private final String attribute;
+    private final Object oldValue;
+    private final Object newValue;
+
+    PricingChange(EntityType entityType, ChangeType changeType, String name, String attribute, Object oldValue,
+            Object newValue) {
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.name = name;
+        this.attribute = attribute;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    @Override
+    public String toString() {
+        return changeType + " " + entityType + " " + name + (attribute != null ? "." + attribute : "")
+                + (changeType == ChangeType.MODIFIED ? ": " + oldValue + " -> " + newValue : "");
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.isagroup.services.diff;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.github.isagroup.services.diff.PricingChange.EntityType;
+
+/**
+ * The changes between two versions of a pricing.
+ */
+public class PricingDiff {
+
+    private final List<PricingChange> changes;
+
+    PricingDiff(List<PricingChange> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public List<PricingChange> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public List<PricingChange> getChanges(EntityType entityType) {
+        return changes.stream().filter(change -> change.getEntityType() == entityType).collect(Collectors.toList());
+    }
+
+    /**
+     * @param entityType the type of the entities
+     * @return the names of the added, removed or modified entities of the type
+     */
+    public Set<String> getChangedNames(EntityType entityType) {
+        return changes.stream()
+                .filter(change -> change.getEntityType() == entityType)
+                .map(PricingChange::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Returns the features whose evaluation may differ between both versions:
+     * the changed features themselves and those whose value changed in a plan
+     * or an add-on.
+     *
+     * @return the names of the affected features
+     */
+    public Set<String> getAffectedFeatures() {
+        return affected(EntityType.FEATURE, "features.");
+    }
+
+    /**
+     * Returns the changed usage limits and those whose value or extension
+     * changed in a plan or an add-on.
+     *
+     * @return the names of the affected usage limits
+     */
+    public Set<String> getAffectedUsageLimits() {
+        Set<String> usageLimits = affected(EntityType.USAGE_LIMIT, "usageLimits.");
+        usageLimits.addAll(affected(EntityType.USAGE_LIMIT, "usageLimitsExtensions."));
+        return usageLimits;
+    }
+
+    private Set<String> affected(EntityType entityType, String prefix) {
+        Set<String> names = getChangedNames(entityType);
+
+        for (PricingChange change : changes) {
+            String attribute = change.getAttribute();
+            if (attribute != null && attribute.startsWith(prefix)) {
+                int end = attribute.indexOf('.', prefix.length());
+                names.add(attribute.substring(prefix.length(), end < 0 ? attribute.length() : end));
+            }
+        }
+
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "PricingDiff" + changes;
+    }
+}
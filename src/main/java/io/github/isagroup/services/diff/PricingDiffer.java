@@ -0,0 +1,112 @@
+package io.github.isagroup.services.diff;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.diff.PricingChange.ChangeType;
+import io.github.isagroup.services.diff.PricingChange.EntityType;
+
+/**
+ * Computes the structural diff of two pricings.
+ *
+ * Entities are matched by name and compared by their content hash, so the
+ * diff runs in time linear in the size of both pricings. Only the entities
+ * whose hashes differ are serialized again to find the changed attributes.
+ */
+public class PricingDiffer {
+
+    private PricingDiffer() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    public static PricingDiff diff(PricingManager oldPricing, PricingManager newPricing) {
+        return diff(oldPricing, new PricingHashes(oldPricing), newPricing, new PricingHashes(newPricing));
+    }
+
+    /**
+     * Computes the diff reusing hashes that have already been computed.
+     *
+     * @param oldPricing the previous version
+     * @param oldHashes  the hashes of the previous version
+     * @param newPricing the current version
+     * @param newHashes  the hashes of the current version
+     * @return the changes from the previous version to the current one
+     */
+    public static PricingDiff diff(PricingManager oldPricing, PricingHashes oldHashes, PricingManager newPricing,
+            PricingHashes newHashes) {
+
+        List<PricingChange> changes = new ArrayList<>();
+
+        for (EntityType entityType : EntityType.values()) {
+
+            Map<String, Long> oldEntities = oldHashes.getHashes(entityType);
+            Map<String, Long> newEntities = newHashes.getHashes(entityType);
+
+            for (Map.Entry<String, Long> entry : oldEntities.entrySet()) {
+                String name = entry.getKey();
+                Long newHash = newEntities.get(name);
+
+                if (newHash == null) {
+                    changes.add(new PricingChange(entityType, ChangeType.REMOVED, name, null, null, null));
+                } else if (!newHash.equals(entry.getValue())) {
+                    attributeChanges(entityType, name, PricingHashes.serialize(entityType, oldPricing, name),
+                            PricingHashes.serialize(entityType, newPricing, name), changes);
+                }
+            }
+
+            for (String name : newEntities.keySet()) {
+                if (!oldEntities.containsKey(name)) {
+                    changes.add(new PricingChange(entityType, ChangeType.ADDED, name, null, null, null));
+                }
+            }
+        }
+
+        return new PricingDiff(changes);
+    }
+
+    private static void attributeChanges(EntityType entityType, String name, Map<String, Object> oldAttributes,
+            Map<String, Object> newAttributes, List<PricingChange> changes) {
+
+        Map<String, Object> oldLeaves = new LinkedHashMap<>();
+        Map<String, Object> newLeaves = new LinkedHashMap<>();
+        flatten("", oldAttributes, oldLeaves);
+        flatten("", newAttributes, newLeaves);
+
+        for (Map.Entry<String, Object> entry : oldLeaves.entrySet()) {
+            Object newValue = newLeaves.get(entry.getKey());
+            if (!sameValue(entry.getValue(), newValue)) {
+                changes.add(new PricingChange(entityType, ChangeType.MODIFIED, name, entry.getKey(), entry.getValue(),
+                        newValue));
+            }
+        }
+
+        for (Map.Entry<String, Object> entry : newLeaves.entrySet()) {
+            if (!oldLeaves.containsKey(entry.getKey()) && entry.getValue() != null) {
+                changes.add(new PricingChange(entityType, ChangeType.MODIFIED, name, entry.getKey(), null,
+                        entry.getValue()));
+            }
+        }
+    }
+
+    private static void flatten(String prefix, Map<?, ?> map, Map<String, Object> leaves) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String path = prefix + entry.getKey();
+            if (entry.getValue() instanceof Map) {
+                flatten(path + ".", (Map<?, ?>) entry.getValue(), leaves);
+            } else {
+                leaves.put(path, entry.getValue());
+            }
+        }
+    }
+
+    private static boolean sameValue(Object oldValue, Object newValue) {
+        if (oldValue instanceof Number && newValue instanceof Number) {
+            return ((Number) oldValue).doubleValue() == ((Number) newValue).doubleValue();
+        }
+        return Objects.equals(oldValue, newValue);
+    }
+}
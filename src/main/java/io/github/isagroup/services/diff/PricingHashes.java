@@ -0,0 +1,91 @@
+package io.github.isagroup.services.diff;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Feature;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.services.diff.PricingChange.EntityType;
+
+/**
+ * Content hashes of every entity of a pricing, computed from their serialized
+ * form. Two entities with the same hash are considered equal.
+ */
+public class PricingHashes {
+
+    /**
+     * Name of the single {@link EntityType#PRICING} entity, which holds the
+     * global attributes of the pricing.
+     */
+    public static final String PRICING_NAME = "pricing";
+
+    private final Map<EntityType, Map<String, Long>> hashes = new EnumMap<>(EntityType.class);
+
+    public PricingHashes(PricingManager pricingManager) {
+        hashes.put(EntityType.PRICING, Map.of(PRICING_NAME, ContentHash.of(serializePricing(pricingManager))));
+        hashes.put(EntityType.FEATURE, hashAll(pricingManager.getFeatures(), PricingHashes::serializeFeature));
+        hashes.put(EntityType.USAGE_LIMIT, hashAll(pricingManager.getUsageLimits(), UsageLimit::serialize));
+        hashes.put(EntityType.PLAN, hashAll(pricingManager.getPlans(), Plan::serializePlan));
+        hashes.put(EntityType.ADD_ON, hashAll(pricingManager.getAddOns(), AddOn::serializeAddOn));
+    }
+
+    /**
+     * @param entityType the type of the entities
+     * @return the hash of every entity of the type, by name
+     */
+    public Map<String, Long> getHashes(EntityType entityType) {
+        return hashes.get(entityType);
+    }
+
+    static Map<String, Object> serialize(EntityType entityType, PricingManager pricingManager, String name) {
+        switch (entityType) {
+            case PRICING:
+                return serializePricing(pricingManager);
+            case FEATURE:
+                return serializeFeature(pricingManager.getFeatures().get(name));
+            case USAGE_LIMIT:
+                return pricingManager.getUsageLimits().get(name).serialize();
+            case PLAN:
+                return pricingManager.getPlans().get(name).serializePlan();
+            default:
+                return pricingManager.getAddOns().get(name).serializeAddOn();
+        }
+    }
+
+    private static Map<String, Object> serializePricing(PricingManager pricingManager) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("saasName", pricingManager.getSaasName());
+        attributes.put("url", pricingManager.getUrl());
+        attributes.put("version", pricingManager.getVersion());
+        attributes.put("currency", pricingManager.getCurrency());
+        attributes.put("tags", pricingManager.getTags());
+        attributes.put("billing", pricingManager.getBilling());
+        attributes.put("variables", pricingManager.getVariables());
+        return attributes;
+    }
+
+    private static Map<String, Object> serializeFeature(Feature feature) {
+        Map<String, Object> attributes = feature.serializeFeature();
+        if (feature.getValue() != null) {
+            attributes.put("value", feature.getValue());
+        }
+        return attributes;
+    }
+
+    private static <T> Map<String, Long> hashAll(Map<String, T> entities, Function<T, Map<String, Object>> serializer) {
+
+        if (entities == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> entityHashes = new LinkedHashMap<>();
+        entities.forEach((name, entity) -> entityHashes.put(name, ContentHash.of(serializer.apply(entity))));
+        return Collections.unmodifiableMap(entityHashes);
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.isagroup.services.evaluation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Executors of the asynchronous retrieval of the evaluation inputs.
+ */
+public final class EvaluationExecutors {
+
+    private static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+
+    private EvaluationExecutors() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns the executor shared by the contexts that do not configure one. It
+     * starts a virtual thread per task when the runtime supports them (Java 21
+     * or later), and otherwise uses a cached pool of daemon threads, as the
+     * inputs are usually retrieved through blocking calls.
+     *
+     * @return the default executor
+     */
+    public static Executor defaultExecutor() {
+        return DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Returns an executor that runs the tasks of another one with the request
+     * attributes and the security context of the calling thread, which the
+     * threads of the executor do not have. Both are captured when this method
+     * is called, so it must be called on the thread that handles the request,
+     * and the tasks must complete before the request does. The previous state
+     * of the executor threads is restored after each task.
+     *
+     * @param executor the executor the tasks run on
+     * @return an executor that runs the tasks in the context of the caller
+     */
+    public static Executor withCallerContext(Executor executor) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        return task -> executor.execute(() -> runInContext(task, requestAttributes, securityContext));
+    }
+
+    private static void runInContext(Runnable task, RequestAttributes requestAttributes,
+            SecurityContext securityContext) {
+
+        RequestAttributes previousRequestAttributes = RequestContextHolder.getRequestAttributes();
+        SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+        SecurityContextHolder.setContext(securityContext);
+
+        try {
+            task.run();
+        } finally {
+            RequestContextHolder.setRequestAttributes(previousRequestAttributes);
+            // getContext creates an empty context on threads without one, which
+            // is not left behind on pooled threads
+            if (previousSecurityContext.getAuthentication() != null) {
+                SecurityContextHolder.setContext(previousSecurityContext);
+            } else {
+                SecurityContextHolder.clearContext();
+            }
+        }
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "pricing-evaluation-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package io.github.isagroup.services.evaluation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import io.github.isagroup.PricingContext;
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.PlanContextManager;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.EffectiveConfigurationCache;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.diff.ContentHash;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+
+/**
+ * Evaluation inputs of the current user (user context, plan, add-ons, plan
+ * context and pricing configuration). Each input is retrieved from the
+ * {@link PricingContext} the first time it is requested and reused until it is
+ * explicitly invalidated.
+ *
+ * The inputs the application provides can also be retrieved in parallel with
+ * {@link #loadAsync()}, so the evaluation that follows reads them from memory.
+ *
+ * Inputs are memoised under short locks, and the {@link PricingContext} is
+ * called and waited for outside them, so a slow retrieval does not block the
+ * callers of the other inputs. Inputs whose retrieval fails are not memoised,
+ * so the next call retrieves them again.
+ *
+ * @see PricingEvaluationContextHolder
+ */
+public class PricingEvaluationContext {
+
+    private final PricingContext pricingContext;
+
+    private final Memo<PricingSnapshot> snapshot = new Memo<>();
+    private final Memo<EffectiveConfiguration> effectiveConfiguration = new Memo<>();
+    private final Memo<Map<String, Object>> planContext = new Memo<>();
+    private final Input<Map<String, Object>> userContext;
+    private final Input<String> userPlan;
+    private final Input<List<String>> userAddOns;
+    private final Memo<String> subscriptionFingerprint = new Memo<>();
+
+    public PricingEvaluationContext(PricingContext pricingContext) {
+        this.pricingContext = pricingContext;
+        this.userContext = new Input<>(pricingContext::getUserContext, pricingContext::getUserContextAsync);
+        this.userPlan = new Input<>(pricingContext::getUserPlan, pricingContext::getUserPlanAsync);
+        this.userAddOns = new Input<>(pricingContext::getUserAddOns, pricingContext::getUserAddOnsAsync);
+    }
+
+    public PricingContext getPricingContext() {
+        return pricingContext;
+    }
+
+    /**
+     * Returns the current {@link PricingSnapshot} of the configured pricing,
+     * retrieving it on the first call.
+     *
+     * @return the pricing snapshot used to evaluate the user
+     */
+    public PricingSnapshot getSnapshot() {
+        return snapshot.get(pricingContext::getPricingSnapshot);
+    }
+
+    /**
+     * Returns the {@link PricingManager} of the memoised snapshot. It is shared
+     * with other requests, so it must not be modified.
+     *
+     * @return the pricing configuration used to evaluate the user
+     */
+    public PricingManager getPricingManager() {
+        return getSnapshot().getPricingManager();
+    }
+
+    /**
+     * Returns the user context, retrieving it from
+     * {@link PricingContext#getUserContext()} on the first call or after
+     * {@link #invalidateUserContext()}.
+     *
+     * @return Map with the user context
+     */
+    public Map<String, Object> getUserContext() {
+        return userContext.get();
+    }
+
+    /**
+     * Returns the user context, retrieving it from
+     * {@link PricingContext#getUserContextAsync()} on the first call or after
+     * {@link #invalidateUserContext()}.
+     *
+     * @return stage completed with the user context
+     */
+    public CompletionStage<Map<String, Object>> getUserContextAsync() {
+        return userContext.getAsync();
+    }
+
+    /**
+     * Returns the plan name of the user, retrieving it from
+     * {@link PricingContext#getUserPlan()} on the first call.
+     *
+     * @return the current user's plan name
+     */
+    public String getUserPlan() {
+        return userPlan.get();
+    }
+
+    /**
+     * Returns the plan name of the user, retrieving it from
+     * {@link PricingContext#getUserPlanAsync()} on the first call.
+     *
+     * @return stage completed with the current user's plan name
+     */
+    public CompletionStage<String> getUserPlanAsync() {
+        return userPlan.getAsync();
+    }
+
+    /**
+     * Returns the add-on names of the user, retrieving them from
+     * {@link PricingContext#getUserAddOns()} on the first call.
+     *
+     * @return the current user's add-on names
+     */
+    public List<String> getUserAddOns() {
+        return userAddOns.get();
+    }
+
+    /**
+     * Returns the add-on names of the user, retrieving them from
+     * {@link PricingContext#getUserAddOnsAsync()} on the first call.
+     *
+     * @return stage completed with the current user's add-on names
+     */
+    public CompletionStage<List<String>> getUserAddOnsAsync() {
+        return userAddOns.getAsync();
+    }
+
+    /**
+     * Retrieves the user context, plan and add-ons in parallel through the
+     * asynchronous methods of the {@link PricingContext}. Inputs that are
+     * already memoised are not retrieved again.
+     *
+     * @return stage completed with this context once every input is memoised
+     */
+    public CompletionStage<PricingEvaluationContext> loadAsync() {
+        CompletableFuture<?> currentUserContext = getUserContextAsync().toCompletableFuture();
+        CompletableFuture<?> currentUserPlan = getUserPlanAsync().toCompletableFuture();
+        CompletableFuture<?> currentUserAddOns = getUserAddOnsAsync().toCompletableFuture();
+
+        return CompletableFuture.allOf(currentUserContext, currentUserPlan, currentUserAddOns)
+                .thenApply(loaded -> this);
+    }
+
+    /**
+     * Returns the identifier of the user, taken from the {@code username} or
+     * {@code user} entries of the user context.
+     *
+     * @return the user identifier, or "Default" if the user context does not
+     *         contain any of those entries
+     */
+    public String getSubject() {
+        Map<String, Object> currentUserContext = getUserContext();
+
+        if (currentUserContext.containsKey("username")) {
+            return (String) currentUserContext.get("username");
+        } else if (currentUserContext.containsKey("user")) {
+            return (String) currentUserContext.get("user");
+        }
+
+        return "Default";
+    }
+
+    /**
+     * Returns the identifier of the user that per-user state, such as usage
+     * counters and rate limits, is kept for. Unlike {@link #getSubject()} it has
+     * no fallback, so users without identifier never share that state.
+     *
+     * @return the user identifier, taken from the {@code username} or
+     *         {@code user} entries of the user context
+     * @throws PricingPlanEvaluationException if the user context contains none
+     *                                        of those entries
+     */
+    public String getRequiredSubject() {
+        Map<String, Object> currentUserContext = getUserContext();
+
+        Object subject = currentUserContext.get("username");
+        if (subject == null) {
+            subject = currentUserContext.get("user");
+        }
+
+        if (subject == null) {
+            throw new PricingPlanEvaluationException(
+                    "The user context must contain a username or user entry to track the usage of the user");
+        }
+
+        return subject.toString();
+    }
+
+    /**
+     * Returns the effective configuration of the user's plan and add-ons in the
+     * memoised snapshot. Its values can be read by the ordinals of
+     * {@link PricingIndex#of(PricingSnapshot)}.
+     *
+     * @return current user's effective configuration
+     */
+    public EffectiveConfiguration getEffectiveConfiguration() {
+        return effectiveConfiguration.get(() -> EffectiveConfigurationCache.of(getSnapshot())
+                .get(getUserPlan(), getUserAddOns()));
+    }
+
+    /**
+     * Returns the plan context of the current user, built from the effective
+     * configuration of the user's plan and add-ons in the memoised snapshot.
+     *
+     * @return current user's plan context
+     */
+    public Map<String, Object> getPlanContext() {
+        return planContext.get(() -> getEffectiveConfiguration().toPlanContext());
+    }
+
+    /**
+     * Returns a reference to the version of the pricing, which is the content
+     * hash of the memoised snapshot. Unlike the snapshot version, it is the same
+     * for every instance of the application and after restarts.
+     *
+     * @return the pricing version, in hexadecimal
+     */
+    public String getPricingVersion() {
+        return Long.toHexString(getSnapshot().getContentHash());
+    }
+
+    /**
+     * Returns a fingerprint of the user's subscription and usage: a hash of the
+     * plan, the add-ons and the user context. Any change of them changes the
+     * fingerprint, so a token with the same fingerprint and pricing version
+     * would be evaluated to the same result.
+     *
+     * @return the subscription fingerprint, in hexadecimal
+     */
+    public String getSubscriptionFingerprint() {
+        return subscriptionFingerprint.get(() -> {
+            List<String> addOns = getUserAddOns();
+            return Long.toHexString(ContentHash.of(Arrays.asList(getUserPlan(),
+                    addOns != null ? new TreeSet<>(addOns) : null, getUserContext())));
+        });
+    }
+
+    /**
+     * Builds a {@link PlanContextManager} with the memoised user and plan contexts.
+     *
+     * @return the object over which feature expressions are evaluated
+     */
+    public PlanContextManager getPlanContextManager() {
+        PlanContextManager planContextManager = new PlanContextManager();
+        planContextManager.setUserContext(getUserContext());
+        planContextManager.setPlanContext(getPlanContext());
+        return planContextManager;
+    }
+
+    /**
+     * Discards the memoised user context, so the next evaluation reads the usage
+     * values again. It must be called after any operation that changes the usage
+     * of the current user.
+     */
+    public void invalidateUserContext() {
+        userContext.invalidate();
+        subscriptionFingerprint.invalidate();
+    }
+
+    /**
+     * Discards every memoised input.
+     */
+    public void invalidate() {
+        invalidateUserContext();
+        userPlan.invalidate();
+        userAddOns.invalidate();
+        snapshot.invalidate();
+        effectiveConfiguration.invalidate();
+        planContext.invalidate();
+    }
+
+    // Failures of the application are rethrown as they were thrown by the
+    // synchronous methods
+    private static <T> T join(CompletableFuture<T> input) {
+        try {
+            return input.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * An input the application provides, memoised as a future. The future is
+     * installed under the lock of the input, and the application is called and
+     * the future is joined outside it. Failed futures are discarded once they
+     * complete, so the next call retrieves the input again.
+     */
+    private static final class Input<T> {
+
+        private final Supplier<T> retrieval;
+        private final Supplier<CompletionStage<T>> asyncRetrieval;
+        private CompletableFuture<T> future;
+
+        private Input(Supplier<T> retrieval, Supplier<CompletionStage<T>> asyncRetrieval) {
+            this.retrieval = retrieval;
+            this.asyncRetrieval = asyncRetrieval;
+        }
+
+        private T get() {
+            CompletableFuture<T> installed = new CompletableFuture<>();
+            CompletableFuture<T> current = install(installed);
+
+            if (current == installed) {
+                try {
+                    installed.complete(retrieval.get());
+                } catch (Throwable e) {
+                    installed.completeExceptionally(e);
+                }
+            }
+
+            return join(current);
+        }
+
+        private CompletionStage<T> getAsync() {
+            CompletableFuture<T> installed = new CompletableFuture<>();
+            CompletableFuture<T> current = install(installed);
+
+            if (current == installed) {
+                CompletionStage<T> retrieved;
+                try {
+                    retrieved = asyncRetrieval.get();
+                } catch (Throwable e) {
+                    retrieved = CompletableFuture.failedFuture(e);
+                }
+                retrieved.whenComplete((value, failure) -> {
+                    if (failure != null) {
+                        installed.completeExceptionally(failure);
+                    } else {
+                        installed.complete(value);
+                    }
+                });
+            }
+
+            return current.copy();
+        }
+
+        private synchronized CompletableFuture<T> install(CompletableFuture<T> installed) {
+            if (future == null) {
+                future = installed;
+                // Registered before the retrieval starts, so the failed future is
+                // discarded before any caller sees the failure
+                installed.whenComplete((value, failure) -> {
+                    if (failure != null) {
+                        discard(installed);
+                    }
+                });
+            }
+            return future;
+        }
+
+        private synchronized void discard(CompletableFuture<T> failed) {
+            if (future == failed) {
+                future = null;
+            }
+        }
+
+        private synchronized void invalidate() {
+            future = null;
+        }
+    }
+
+    /**
+     * A value derived from the inputs, computed outside the lock of the memo.
+     * A value whose computation overlaps an invalidation is returned but not
+     * memoised, as it may have been derived from discarded inputs.
+     */
+    private static final class Memo<T> {
+
+        private T value;
+        private long generation;
+
+        private T get(Supplier<T> computation) {
+            long observed;
+
+            synchronized (this) {
+                if (value != null) {
+                    return value;
+                }
+                observed = generation;
+            }
+
+            T computed = computation.get();
+
+            synchronized (this) {
+                if (generation != observed) {
+                    return computed;
+                }
+                if (value == null) {
+                    value = computed;
+                }
+                return value;
+            }
+        }
+
+        private synchronized void invalidate() {
+            value = null;
+            generation++;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.isagroup.services.evaluation;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import io.github.isagroup.PricingContext;
+
+/**
+ * Keeps a {@link PricingEvaluationContext} in the scope of the current request,
+ * so the filter and every {@code @PricingPlanAware} method executed while
+ * serving it share the same user context, plan context and pricing
+ * configuration.
+ *
+ * When no request is bound to the current thread, as in WebFlux applications,
+ * the context bound with {@link #callWithContext} is returned, or a new,
+ * non-shared context on each call.
+ */
+public class PricingEvaluationContextHolder {
+
+    public static final String CONTEXT_ATTRIBUTE = PricingEvaluationContextHolder.class.getName() + ".CONTEXT";
+
+    private static final ThreadLocal<PricingEvaluationContext> BOUND_CONTEXT = new ThreadLocal<>();
+
+    private PricingEvaluationContextHolder() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns the evaluation context of the current request, creating it on the
+     * first call.
+     *
+     * @param pricingContext the {@link PricingContext} the context retrieves its
+     *                       inputs from
+     * @return the evaluation context bound to the current request
+     */
+    public static PricingEvaluationContext getContext(PricingContext pricingContext) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        if (requestAttributes == null) {
+            PricingEvaluationContext bound = BOUND_CONTEXT.get();
+            return bound != null && bound.getPricingContext() == pricingContext ? bound
+                    : new PricingEvaluationContext(pricingContext);
+        }
+
+        Object current = requestAttributes.getAttribute(CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (current instanceof PricingEvaluationContext evaluationContext
+                && evaluationContext.getPricingContext() == pricingContext) {
+            return evaluationContext;
+        }
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+        requestAttributes.setAttribute(CONTEXT_ATTRIBUTE, evaluationContext, RequestAttributes.SCOPE_REQUEST);
+        return evaluationContext;
+    }
+
+    /**
+     * Binds an evaluation context to the current thread while the callable is
+     * executed, so it is shared by every call made without a request bound to
+     * the thread. Reactive pipelines use it around each blocking step they
+     * offload.
+     *
+     * @param evaluationContext the context to share
+     * @param callable          the code that evaluates the pricing
+     * @return the result of the callable
+     * @throws Exception if the callable fails
+     */
+    public static <T> T callWithContext(PricingEvaluationContext evaluationContext, Callable<T> callable)
+            throws Exception {
+
+        PricingEvaluationContext previous = BOUND_CONTEXT.get();
+        BOUND_CONTEXT.set(evaluationContext);
+
+        try {
+            return callable.call();
+        } finally {
+            if (previous != null) {
+                BOUND_CONTEXT.set(previous);
+            } else {
+                BOUND_CONTEXT.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards the memoised user context of the current request, if any. Use it
+     * when the usage of the user is changed outside a {@code @PricingPlanAware}
+     * method.
+     */
+    public static void invalidateUserContext() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        if (requestAttributes == null) {
+            PricingEvaluationContext bound = BOUND_CONTEXT.get();
+            if (bound != null) {
+                bound.invalidateUserContext();
+            }
+            return;
+        }
+
+        Object current = requestAttributes.getAttribute(CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+        if (current instanceof PricingEvaluationContext evaluationContext) {
+            evaluationContext.invalidateUserContext();
+        }
+    }
+
+    /**
+     * Removes the evaluation context from the current request.
+     */
+    public static void reset() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        if (requestAttributes != null) {
+            requestAttributes.removeAttribute(CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
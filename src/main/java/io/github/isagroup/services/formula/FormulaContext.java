@@ -0,0 +1,76 @@
+package io.github.isagroup.services.formula;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * Evaluation context shared by every {@link PriceFormula} of a pricing. It
+ * holds the pricing {@code variables} and records when each of them last
+ * changed, so formulas only re-evaluate when one of their variables does.
+ */
+public class FormulaContext {
+
+    private final StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
+    private final Map<String, Long> variableVersions = new HashMap<>();
+    private long version;
+
+    public FormulaContext(Map<String, Object> variables) {
+        setVariables(variables);
+    }
+
+    /**
+     * Replaces every variable.
+     *
+     * @param variables the new variables, may be null
+     */
+    public synchronized void setVariables(Map<String, Object> variables) {
+        for (String name : variableVersions.keySet()) {
+            evaluationContext.setVariable(name, null);
+        }
+
+        version++;
+        variableVersions.replaceAll((name, lastChange) -> version);
+
+        if (variables != null) {
+            variables.forEach(this::setVariable);
+        }
+    }
+
+    /**
+     * Sets the value of a variable.
+     *
+     * @param name  name of the variable, without the leading {@code #}
+     * @param value value of the variable
+     */
+    public synchronized void setVariable(String name, Object value) {
+        evaluationContext.setVariable(name, value);
+        variableVersions.put(name, ++version);
+    }
+
+    /**
+     * @return a number that increases on every change
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param names names of some variables
+     * @return the version of the latest change to any of them
+     */
+    public synchronized long getVersion(Collection<String> names) {
+        long latest = 0;
+        for (String name : names) {
+            latest = Math.max(latest, variableVersions.getOrDefault(name, 0L));
+        }
+        return latest;
+    }
+
+    synchronized <T> T evaluate(Expression expression, Class<T> type) {
+        return expression.getValue(evaluationContext, type);
+    }
+}
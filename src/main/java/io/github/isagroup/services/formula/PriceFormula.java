@@ -0,0 +1,102 @@
+package io.github.isagroup.services.formula;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * A price defined as a SpEL formula over the pricing {@code variables}, such as
+ * {@code "#vip ? 0.0 : #x"}.
+ *
+ * The formula is parsed once, together with the variables it references. Its
+ * value is cached and only recomputed after one of those variables changes in
+ * the {@link FormulaContext}.
+ */
+public class PriceFormula {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, PriceFormula.class.getClassLoader()));
+
+    private final String source;
+    private final Expression expression;
+    private final Set<String> variables;
+    private final FormulaContext context;
+
+    private Double value;
+    private long evaluatedAt = -1;
+
+    public PriceFormula(String source, FormulaContext context) {
+        this.source = source;
+        this.expression = PARSER.parseExpression(source);
+        this.context = context;
+
+        Set<String> referenced = new LinkedHashSet<>();
+        collectVariables(((SpelExpression) expression).getAST(), referenced);
+        this.variables = Collections.unmodifiableSet(referenced);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the names of the variables referenced by the formula
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the value of the formula, evaluating it again if any of its
+     * variables has changed since the last evaluation.
+     *
+     * @return the price
+     */
+    public synchronized Double getValue() {
+        if (evaluatedAt < 0 || context.getVersion(variables) > evaluatedAt) {
+            long version = context.getVersion();
+            value = context.evaluate(expression, Double.class);
+            evaluatedAt = version;
+        }
+        return value;
+    }
+
+    /**
+     * Two formulas are equal when they have the same source, whatever the
+     * value of their variables.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PriceFormula other && source.equals(other.source);
+    }
+
+    @Override
+    public int hashCode() {
+        return source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static void collectVariables(SpelNode node, Set<String> variables) {
+        if (node instanceof VariableReference) {
+            String name = node.toStringAST().substring(1);
+            if (!name.equals("this") && !name.equals("root")) {
+                variables.add(name);
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectVariables(node.getChild(i), variables);
+        }
+    }
+}
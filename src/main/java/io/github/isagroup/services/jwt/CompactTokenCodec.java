@@ -0,0 +1,338 @@
+package io.github.isagroup.services.jwt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.services.configuration.FeatureStatuses;
+import io.github.isagroup.services.configuration.PricingIndex;
+
+/**
+ * Binary encoding of the feature statuses of a compact pricing token.
+ *
+ * Features are identified by their position in the pricing, so the names are
+ * a dictionary shared by the server and the clients instead of being written in
+ * every token. The encoding is a header byte followed by the number of
+ * features, a bitset with their evaluations and the used and limit values of
+ * the features that have any of them. Values are numbers, booleans, text, or
+ * lists and string-keyed maps of them. The body can be compressed with DEFLATE,
+ * which is flagged in the header. The result is written in URL-safe base64
+ * without padding.
+ *
+ * The decoder only depends on the feature names, in declaration order, so
+ * clients can decode tokens without loading the pricing.
+ */
+public final class CompactTokenCodec {
+
+    public static final String PLAN_CLAIM = "plan";
+    public static final String ADD_ONS_CLAIM = "addOns";
+    public static final String FEATURES_CLAIM = "fs";
+
+    private static final int FORMAT = 1;
+    private static final int DEFLATED = 0x80;
+
+    private static final int NULL = 0;
+    private static final int INTEGER = 1;
+    private static final int DECIMAL = 2;
+    private static final int FALSE = 3;
+    private static final int TRUE = 4;
+    private static final int TEXT = 5;
+    private static final int LIST = 6;
+    private static final int MAP = 7;
+
+    private static final int MAX_DEPTH = 16;
+
+    private CompactTokenCodec() {
+    }
+
+    /**
+     * Encodes feature statuses.
+     *
+     * @param statuses the statuses of every feature of a pricing
+     * @param deflate  whether the body is compressed
+     * @return the encoded statuses
+     * @throws IllegalArgumentException if a used or limit value is not a
+     *                                  number, a boolean, text, or a list or
+     *                                  a map with string keys of them
+     */
+    public static String encode(FeatureStatuses statuses, boolean deflate) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(FORMAT | (deflate ? DEFLATED : 0));
+
+        try (DataOutputStream out = new DataOutputStream(deflate ? new DeflaterOutputStream(bytes) : bytes)) {
+
+            int size = statuses.size();
+            writeVarLong(out, size);
+
+            for (int offset = 0; offset < size; offset += 8) {
+                int bits = 0;
+                for (int bit = 0; bit < 8 && offset + bit < size; bit++) {
+                    if (statuses.getEval(offset + bit)) {
+                        bits |= 1 << bit;
+                    }
+                }
+                out.write(bits);
+            }
+
+            int pairs = 0;
+            for (int feature = 0; feature < size; feature++) {
+                if (hasUsage(statuses, feature)) {
+                    pairs++;
+                }
+            }
+            writeVarLong(out, pairs);
+
+            int previous = -1;
+            for (int feature = 0; feature < size; feature++) {
+                if (hasUsage(statuses, feature)) {
+                    writeVarLong(out, feature - previous - 1);
+                    writeValue(out, statuses.getUsed(feature), 0);
+                    writeValue(out, statuses.getLimit(feature), 0);
+                    previous = feature;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes feature statuses with the features of an indexed pricing.
+     *
+     * @see #decode(String, List)
+     */
+    public static Map<String, FeatureStatus> decode(String encoded, PricingIndex index) {
+        String[] names = new String[index.featureCount()];
+        for (int feature = 0; feature < names.length; feature++) {
+            names[feature] = index.featureName(feature);
+        }
+        return decode(encoded, List.of(names));
+    }
+
+    /**
+     * Decodes feature statuses.
+     *
+     * @param encoded      the encoded statuses
+     * @param featureNames the names of the features of the pricing the statuses
+     *                     were encoded with, in declaration order
+     * @return the status of every feature, in declaration order. Features with
+     *         no usage have null used and limit values.
+     * @throws IllegalArgumentException if the statuses are malformed or were
+     *                                  encoded for a pricing with a different
+     *                                  number of features
+     */
+    public static Map<String, FeatureStatus> decode(String encoded, List<String> featureNames) {
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(encoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The feature statuses are not valid base64", e);
+        }
+
+        if (bytes.length == 0 || (bytes[0] & ~DEFLATED & 0xFF) != FORMAT) {
+            throw new IllegalArgumentException("Unsupported feature statuses format");
+        }
+
+        InputStream body = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+
+        try (DataInputStream in = new DataInputStream((bytes[0] & DEFLATED) != 0 ? new InflaterInputStream(body) : body)) {
+
+            int size = (int) readVarLong(in);
+
+            if (size != featureNames.size()) {
+                throw new IllegalArgumentException("The feature statuses were encoded with " + size
+                        + " features but the pricing has " + featureNames.size());
+            }
+
+            Map<String, FeatureStatus> statuses = new LinkedHashMap<>();
+
+            for (int offset = 0; offset < size; offset += 8) {
+                int bits = in.readUnsignedByte();
+                for (int bit = 0; bit < 8 && offset + bit < size; bit++) {
+                    FeatureStatus status = new FeatureStatus();
+                    status.setEval((bits & (1 << bit)) != 0);
+                    statuses.put(featureNames.get(offset + bit), status);
+                }
+            }
+
+            long pairs = readVarLong(in);
+            int feature = -1;
+
+            for (long pair = 0; pair < pairs; pair++) {
+                feature += (int) readVarLong(in) + 1;
+                if (feature < 0 || feature >= size) {
+                    throw new IllegalArgumentException("Unknown feature " + feature + " in the feature statuses");
+                }
+                FeatureStatus status = statuses.get(featureNames.get(feature));
+                status.setUsed(readValue(in, 0));
+                status.setLimit(readValue(in, 0));
+            }
+
+            return statuses;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The feature statuses are malformed", e);
+        }
+    }
+
+    private static boolean hasUsage(FeatureStatuses statuses, int feature) {
+        return statuses.getUsed(feature) != null || statuses.getLimit(feature) != null;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, int depth) throws IOException {
+
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            out.write(INTEGER);
+            long number = ((Number) value).longValue();
+            writeVarLong(out, (number << 1) ^ (number >> 63));
+        } else if (value instanceof Number) {
+            out.write(DECIMAL);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof Enum) {
+            out.write(TEXT);
+            writeText(out, value.toString());
+        } else if ((value instanceof Collection || value instanceof Map) && depth >= MAX_DEPTH) {
+            throw new IllegalArgumentException("The values of the feature statuses are nested too deeply");
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            out.write(LIST);
+            writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element, depth + 1);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(MAP);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IllegalArgumentException(
+                            "Only maps with string keys can be encoded in the feature statuses");
+                }
+                writeText(out, (String) entry.getKey());
+                writeValue(out, entry.getValue(), depth + 1);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                    "The value " + value + " of type " + value.getClass().getName()
+                            + " cannot be encoded in the feature statuses");
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, text.length);
+        out.write(text);
+    }
+
+    private static Object readValue(DataInputStream in, int depth) throws IOException {
+
+        int tag = in.readUnsignedByte();
+
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                long zigzag = readVarLong(in);
+                long number = (zigzag >>> 1) ^ -(zigzag & 1);
+                return number == (int) number ? (Object) (int) number : (Object) number;
+            case DECIMAL:
+                return in.readDouble();
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case TEXT:
+                return readText(in);
+            case LIST:
+            case MAP:
+                if (depth >= MAX_DEPTH) {
+                    throw new IllegalArgumentException("The values of the feature statuses are nested too deeply");
+                }
+                return tag == LIST ? readList(in, depth) : readMap(in, depth);
+            default:
+                throw new IllegalArgumentException("Unknown value type " + tag + " in the feature statuses");
+        }
+    }
+
+    private static List<Object> readList(DataInputStream in, int depth) throws IOException {
+        long size = readVarLong(in);
+        List<Object> list = new ArrayList<>();
+        for (long element = 0; element < size; element++) {
+            list.add(readValue(in, depth + 1));
+        }
+        return list;
+    }
+
+    private static Map<String, Object> readMap(DataInputStream in, int depth) throws IOException {
+        long size = readVarLong(in);
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (long entry = 0; entry < size; entry++) {
+            String key = readText(in);
+            map.put(key, readValue(in, depth + 1));
+        }
+        return map;
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+
+        long length = readVarLong(in);
+
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid text length " + length + " in the feature statuses");
+        }
+
+        // The bytes are read in chunks, so a forged length fails once the input
+        // ends instead of allocating it upfront
+        byte[] text = in.readNBytes((int) length);
+
+        if (text.length != length) {
+            throw new IllegalArgumentException("The text of the feature statuses is truncated");
+        }
+
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed number in the feature statuses");
+    }
+}
@@ -0,0 +1,323 @@
+package io.github.isagroup.services.jwt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.isagroup.PricingContext;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.PrematureJwtException;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+
+/**
+ * Signs and verifies HS512 JWTs with keys that are derived once.
+ *
+ * Secrets are decoded as base64, like jjwt does with string keys, so tokens
+ * are interchangeable with the ones built with
+ * {@code signWith(SignatureAlgorithm.HS512, secret)}. Each key keeps an
+ * initialised {@link Mac} per thread to sign tokens instead of creating one
+ * per token. Tokens are verified by jjwt with the derived keys.
+ *
+ * Signers are immutable. Tokens are signed with the current key, whose id is
+ * written in the {@code kid} header, and verified with the key named by their
+ * {@code kid}, so tokens signed with previous keys remain valid as long as the
+ * signer is created with those keys. Tokens without {@code kid}, or with an
+ * unknown one, are verified with the key that has no id, as jjwt ignores
+ * {@code kid}.
+ */
+public class JwtSigner {
+
+    private static final String ALGORITHM = "HS512";
+    private static final String MAC_ALGORITHM = "HmacSHA512";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int MAX_SIGNERS = 16;
+
+    // Signers of the last secrets in use, so their keys are derived once
+    private static final Map<List<Object>, JwtSigner> SIGNERS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, JwtSigner> eldest) {
+            return size() > MAX_SIGNERS;
+        }
+    };
+
+    private final SigningKey current;
+    private final Map<String, SigningKey> keys;
+
+    /**
+     * Creates a signer with a single key without id.
+     *
+     * @param secret the base64 encoded secret
+     */
+    public JwtSigner(String secret) {
+        this(null, secret);
+    }
+
+    /**
+     * Creates a signer whose only key has the given id.
+     *
+     * @param keyId  the id of the key, or null to write no {@code kid}
+     * @param secret the base64 encoded secret
+     */
+    public JwtSigner(String keyId, String secret) {
+        this(keyId, secret, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a signer whose current key has the given id, which also verifies
+     * the tokens signed with previous keys.
+     *
+     * @param keyId           the id of the current key, or null to write no
+     *                        {@code kid}
+     * @param secret          the base64 encoded current secret
+     * @param previousSecrets base64 encoded secrets that are only used to
+     *                        verify tokens, by key id. A null id stands for the
+     *                        tokens without key id.
+     * @throws IllegalArgumentException if a previous secret has the id of the
+     *                                  current one
+     */
+    public JwtSigner(String keyId, String secret, Map<String, String> previousSecrets) {
+
+        this.current = new SigningKey(keyId, secret);
+
+        Map<String, SigningKey> signingKeys = new LinkedHashMap<>();
+        signingKeys.put(current.mapKey(), current);
+
+        previousSecrets.forEach((previousKeyId, previousSecret) -> {
+            SigningKey key = new SigningKey(previousKeyId, previousSecret);
+            if (signingKeys.putIfAbsent(key.mapKey(), key) != null) {
+                throw new IllegalArgumentException("The previous JWT secret "
+                        + (previousKeyId != null ? "with key id " + previousKeyId : "without key id")
+                        + " has the same key id as the current secret");
+            }
+        });
+
+        this.keys = Collections.unmodifiableMap(signingKeys);
+    }
+
+    /**
+     * Returns the signer of the pricing JWTs of a pricing context. Signers are
+     * shared by the contexts with the same secrets, and the signers of the
+     * last secrets in use are kept.
+     *
+     * @param pricingContext the pricing context
+     * @return a signer whose current key is {@link PricingContext#getJwtSecret()}
+     * @throws IllegalArgumentException if a previous secret has the id of the
+     *                                  current one
+     */
+    public static JwtSigner of(PricingContext pricingContext) {
+
+        String keyId = pricingContext.getJwtKeyId();
+        String secret = pricingContext.getJwtSecret();
+        Map<String, String> previousSecrets = pricingContext.getPreviousJwtSecrets();
+
+        return signerOf(Arrays.asList(keyId, secret, previousSecrets),
+                () -> new JwtSigner(keyId, secret, previousSecrets));
+    }
+
+    /**
+     * Returns the signer of a single secret, shared by every caller.
+     *
+     * @param secret the base64 encoded secret
+     * @return a signer whose only key is the secret
+     */
+    public static JwtSigner forSecret(String secret) {
+        return signerOf(Arrays.asList(null, secret, Collections.emptyMap()), () -> new JwtSigner(secret));
+    }
+
+    private static JwtSigner signerOf(List<Object> secrets, Supplier<JwtSigner> factory) {
+
+        synchronized (SIGNERS) {
+            JwtSigner signer = SIGNERS.get(secrets);
+            if (signer != null) {
+                return signer;
+            }
+        }
+
+        // Keys are derived outside the lock. Signers of the same secrets are
+        // equivalent, so any of them can be kept
+        JwtSigner signer = factory.get();
+
+        synchronized (SIGNERS) {
+            JwtSigner raced = SIGNERS.putIfAbsent(secrets, signer);
+            return raced != null ? raced : signer;
+        }
+    }
+
+    public String getCurrentKeyId() {
+        return current.keyId;
+    }
+
+    /**
+     * Signs a token with the current key.
+     *
+     * @param claims     the claims of the token
+     * @param subject    the subject of the token
+     * @param issuedAt   the issue date of the token
+     * @param expiration the expiration date of the token
+     * @return the compact JWS
+     */
+    public String sign(Map<String, Object> claims, String subject, Date issuedAt, Date expiration) {
+
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", ALGORITHM);
+        if (current.keyId != null) {
+            header.put("kid", current.keyId);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>(claims);
+        if (subject != null) {
+            body.put(Claims.SUBJECT, subject);
+        }
+        body.put(Claims.ISSUED_AT, issuedAt.getTime() / 1000);
+        body.put(Claims.EXPIRATION, expiration.getTime() / 1000);
+
+        String unsigned = encode(header) + "." + encode(body);
+        return unsigned + "." + base64Url(current.sign(unsigned.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Verifies a token and returns its claims.
+     *
+     * @param token a compact JWS
+     * @return the claims of the token
+     * @throws IllegalArgumentException if the token is null or empty
+     * @throws MalformedJwtException    if the token is not a valid JWS
+     * @throws UnsupportedJwtException  if the token is not signed with HS512
+     * @throws SignatureException       if the signature is not valid or the key
+     *                                  of the token is unknown
+     * @throws ExpiredJwtException      if the token is expired
+     * @throws PrematureJwtException    if the token is not valid yet
+     */
+    public Claims parse(String token) {
+        return Jwts.parser().setSigningKeyResolver(new KeyResolver()).parseClaimsJws(token).getBody();
+    }
+
+    private SigningKey keyOf(String keyId) {
+
+        SigningKey key = keys.get(SigningKey.mapKey(keyId));
+
+        if (key == null && keyId != null) {
+            key = keys.get(SigningKey.mapKey(null));
+        }
+
+        if (key == null) {
+            throw new SignatureException("Unknown signing key " + keyId);
+        }
+
+        return key;
+    }
+
+    private static String encode(Map<String, Object> json) {
+        try {
+            return base64Url(MAPPER.writeValueAsBytes(json));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize the JWT to JSON", e);
+        }
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Resolves the key of a token from its {@code kid} header. The resolver
+     * API of jjwt takes raw headers.
+     */
+    @SuppressWarnings("rawtypes")
+    private final class KeyResolver extends SigningKeyResolverAdapter {
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+
+            if (!ALGORITHM.equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Unsupported signature algorithm " + header.getAlgorithm());
+            }
+
+            return keyOf(header.getKeyId()).secretKey;
+        }
+    }
+
+    private static final class SigningKey {
+
+        // Keys are looked up by id, and the map of keys does not hold null ids
+        private static final String NO_ID = "";
+
+        private final String keyId;
+        private final SecretKey secretKey;
+        private final ThreadLocal<Mac> macs;
+
+        private SigningKey(String keyId, String secret) {
+            this.keyId = keyId;
+            this.secretKey = new SecretKeySpec(decodeSecret(secret), MAC_ALGORITHM);
+            this.macs = ThreadLocal.withInitial(this::newMac);
+        }
+
+        /**
+         * Decodes a secret as jjwt decodes string keys: characters outside the
+         * base64 alphabet are skipped and an incomplete trailing group of four
+         * characters is dropped.
+         */
+        private static byte[] decodeSecret(String secret) {
+
+            StringBuilder base64 = new StringBuilder(secret.length());
+
+            for (int i = 0; i < secret.length(); i++) {
+                char c = secret.charAt(i);
+                if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+'
+                        || c == '/' || c == '=') {
+                    base64.append(c);
+                }
+            }
+
+            base64.setLength(base64.length() - base64.length() % 4);
+
+            return Base64.getDecoder().decode(base64.toString());
+        }
+
+        private static String mapKey(String keyId) {
+            return keyId != null ? keyId : NO_ID;
+        }
+
+        private String mapKey() {
+            return mapKey(keyId);
+        }
+
+        private Mac newMac() {
+            try {
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new SignatureException("Unable to initialise " + MAC_ALGORITHM, e);
+            }
+        }
+
+        // doFinal resets the Mac, so the instance of the thread can be reused
+        private byte[] sign(byte[] data) {
+            return macs.get().doFinal(data);
+        }
+    }
+}
@@ -11,10 +11,16 @@ import org.springframework.stereotype.Component;
 
 import io.github.isagroup.PricingContext;
 import io.github.isagroup.PricingEvaluatorUtil;
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.SignatureException;
 import io.jsonwebtoken.UnsupportedJwtException;
 
@@ -24,6 +30,17 @@ import io.jsonwebtoken.UnsupportedJwtException;
 @Component
 public class PricingJwtUtils {
 
+	/**
+	 * Claim with the version of the pricing the token was evaluated with.
+	 */
+	public static final String PRICING_VERSION_CLAIM = "pv";
+
+	/**
+	 * Claim with the fingerprint of the subscription and usage of the user the
+	 * token was evaluated with.
+	 */
+	public static final String SUBSCRIPTION_FINGERPRINT_CLAIM = "sf";
+
 	@Autowired
 	private PricingContext pricingContext;
 
@@ -40,7 +57,44 @@ public class PricingJwtUtils {
 	 * @return The subject of the JWT
 	 */
 	public String getSubjectFromJwtToken(String token) {
-		return Jwts.parser().setSigningKey(pricingContext.getJwtSecret()).parseClaimsJws(token).getBody().getSubject();
+		return parseClaims(token).getSubject();
+	}
+
+	/**
+	 * Verifies a JWT and extracts all its claims, so several of them can be read
+	 * with a single verification.
+	 * 
+	 * @param token a JWT signed with the pricing JWT secret
+	 * @return the claims of the JWT
+	 */
+	public Claims getClaimsFromJwtToken(String token) {
+		return parseClaims(token);
+	}
+
+	/**
+	 * Checks whether a pricing token still holds the current evaluation of the
+	 * user, by comparing its pricing version and subscription fingerprint with
+	 * the current ones. The features are not evaluated again.
+	 * 
+	 * @param token a JWT generated by
+	 *              {@link PricingEvaluatorUtil#generateUserToken()} or
+	 *              {@link PricingEvaluatorUtil#generateCompactUserToken()}
+	 * @return true if the token is valid and was evaluated with the current
+	 *         pricing, subscription and usage of the user
+	 */
+	public boolean isPricingTokenCurrent(String token) {
+
+		Claims claims;
+		try {
+			claims = parseClaims(token);
+		} catch (JwtException | IllegalArgumentException e) {
+			return false;
+		}
+
+		PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+
+		return evaluationContext.getPricingVersion().equals(claims.get(PRICING_VERSION_CLAIM))
+				&& evaluationContext.getSubscriptionFingerprint().equals(claims.get(SUBSCRIPTION_FINGERPRINT_CLAIM));
 	}
 
 	/**
@@ -52,9 +106,9 @@ public class PricingJwtUtils {
 	 */
 	public String generateTokenFromUsername(String username) {
 		Map<String, Object> claims = new HashMap<>();
-		return Jwts.builder().setClaims(claims).setSubject(username).setIssuedAt(new Date())
-				.setExpiration(new Date((new Date()).getTime() + pricingContext.getJwtExpiration()))
-				.signWith(SignatureAlgorithm.HS512, pricingContext.getJwtSecret()).compact();
+		Date now = new Date();
+		return JwtSigner.of(pricingContext).sign(claims, username, now,
+				new Date(now.getTime() + pricingContext.getJwtExpiration()));
 	}
 
 	/**
@@ -67,8 +121,37 @@ public class PricingJwtUtils {
 	 *         current user located in the JWT body
 	 */
 	public Map<String, Map<String, Object>> getFeaturesFromJwtToken(String token) {
-		return (Map<String, Map<String, Object>>) Jwts.parser().setSigningKey(pricingContext.getJwtSecret())
-				.parseClaimsJws(token).getBody().get("features");
+		return (Map<String, Map<String, Object>>) parseClaims(token).get("features");
+	}
+
+	/**
+	 * Extracts the features from a JWT generated by
+	 * {@link PricingEvaluatorUtil#generateCompactUserToken()} method, using the
+	 * features of the current pricing as dictionary.
+	 * 
+	 * @param token a JWT generated by
+	 *              {@link PricingEvaluatorUtil#generateCompactUserToken()} method
+	 * @return A Map that contains the evaluation of all the features for the
+	 *         current user, or an empty map if the token has no evaluation
+	 * @throws PricingPlanEvaluationException if the token was generated with
+	 *                                        another version of the pricing
+	 */
+	public Map<String, FeatureStatus> getFeaturesFromCompactToken(String token) {
+
+		Claims claims = parseClaims(token);
+		String features = claims.get(CompactTokenCodec.FEATURES_CLAIM, String.class);
+
+		if (features == null) {
+			return new HashMap<>();
+		}
+
+		PricingSnapshot snapshot = pricingContext.getPricingSnapshot();
+
+		if (!Long.toHexString(snapshot.getContentHash()).equals(claims.get(PRICING_VERSION_CLAIM))) {
+			throw new PricingPlanEvaluationException("The token was generated with another version of the pricing");
+		}
+
+		return CompactTokenCodec.decode(features, PricingIndex.of(snapshot));
 	}
 
 	/**
@@ -81,8 +164,7 @@ public class PricingJwtUtils {
 	 *         features located in the JWT body
 	 */
 	public Map<String, Object> getPlanContextFromJwtToken(String token) {
-		return (Map<String, Object>) Jwts.parser().setSigningKey(pricingContext.getJwtSecret()).parseClaimsJws(token)
-				.getBody().get("planContext");
+		return (Map<String, Object>) parseClaims(token).get("planContext");
 	}
 
 	/**
@@ -95,8 +177,7 @@ public class PricingJwtUtils {
 	 *         features located in the JWT body
 	 */
 	public Map<String, Object> getUserContextFromJwtToken(String token) {
-		return (Map<String, Object>) Jwts.parser().setSigningKey(pricingContext.getJwtSecret()).parseClaimsJws(token)
-				.getBody().get("userContext");
+		return (Map<String, Object>) parseClaims(token).get("userContext");
 	}
 
 	/**
@@ -109,7 +190,7 @@ public class PricingJwtUtils {
 	 * @return The username of the user located in the JWT body
 	 */
 	public String getUserNameFromJwtToken(String token) {
-		return Jwts.parser().setSigningKey(pricingContext.getJwtSecret()).parseClaimsJws(token).getBody().getSubject();
+		return parseClaims(token).getSubject();
 	}
 
 	/**
@@ -121,7 +202,7 @@ public class PricingJwtUtils {
 	 */
 	public boolean validateJwtToken(String authToken) {
 		try {
-			Jwts.parser().setSigningKey(pricingContext.getAuthJwtSecret()).parseClaimsJws(authToken);
+			JwtSigner.forSecret(pricingContext.getAuthJwtSecret()).parse(authToken);
 			return true;
 		} catch (SignatureException e) {
 			logger.error("Invalid JWT signature: {}", e.getMessage());
@@ -137,4 +218,8 @@ public class PricingJwtUtils {
 
 		return false;
 	}
+
+	private Claims parseClaims(String token) {
+		return JwtSigner.of(pricingContext).parse(token);
+	}
 }
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import io.github.isagroup.exceptions.FeatureNotFoundException;
 import io.github.isagroup.exceptions.InvalidDefaultValueException;
@@ -22,6 +23,18 @@ public class AddOnParser {
     }
 
     public static AddOn parseMapToAddOn(String addOnName, Map<String, Object> addOnMap, PricingManager pricingManager) {
+        return parseMapToAddOn(addOnName, addOnMap, pricingManager, pricingManager.getAddOns()::containsKey);
+    }
+
+    /**
+     * Parses an add-on without reading the add-ons of the pricing manager, so
+     * several add-ons can be parsed at the same time.
+     *
+     * @param definedAddOn tells whether an add-on is defined before this one,
+     *                     so it can be referenced in availableFor
+     */
+    public static AddOn parseMapToAddOn(String addOnName, Map<String, Object> addOnMap, PricingManager pricingManager,
+            Predicate<String> definedAddOn) {
         AddOn addOn = new AddOn();
 
         if (addOnName == null) {
@@ -35,7 +48,7 @@ public class AddOnParser {
         addOn.setDescription((String) addOnMap.get("description"));
         
         // ---------- availableFor ----------
-        setAvailableFor(addOnMap, pricingManager, addOn);
+        setAvailableFor(addOnMap, pricingManager, addOn, definedAddOn);
 
         // NOTE: dependsOn and excludes will be added later. This is because we need to have all the addOns parsed before we can check if the dependsOn and excludes are valid.
 
@@ -57,7 +70,7 @@ public class AddOnParser {
 
 
         if (addOnMap.get("price") instanceof String && addOnMap.get("price").toString().contains("#")) {
-            addOn.setPrice(PricingManagerParser.evaluateFormula(addOnMap.get("price").toString(), pricingManager));
+            addOn.setPriceFormula(PricingManagerParser.compileFormula(addOnMap.get("price").toString(), pricingManager));
         } else {
             addOn.setPrice(addOnMap.get("price"));
         }
@@ -89,7 +102,8 @@ public class AddOnParser {
         return addOn;
     }
 
-    private static void setAvailableFor(Map<String, Object> addOnMap, PricingManager pricingManager, AddOn addOn) {
+    private static void setAvailableFor(Map<String, Object> addOnMap, PricingManager pricingManager, AddOn addOn,
+            Predicate<String> definedAddOn) {
 
         List<String> plansAvailable = (List<String>) addOnMap.get("availableFor");
 
@@ -100,7 +114,7 @@ public class AddOnParser {
 
         for (String planName : plansAvailable) {
             if (!pricingManager.getPlans().containsKey(planName)
-                && !pricingManager.getAddOns().containsKey(planName)) {
+                && !definedAddOn.test(planName)) {
                 throw new InvalidPlanException(
                     "The plan or addOn " + planName + " is not defined in the pricing manager");
             }
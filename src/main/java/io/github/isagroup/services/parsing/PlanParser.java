@@ -56,7 +56,7 @@ public class PlanParser {
 
 
         if (map.get("price") instanceof String && map.get("price").toString().contains("#")) {
-            plan.setPrice(PricingManagerParser.evaluateFormula(map.get("price").toString(), pricingManager));
+            plan.setPriceFormula(PricingManagerParser.compileFormula(map.get("price").toString(), pricingManager));
         } else {
             plan.setPrice(map.get("price"));
         }
@@ -4,17 +4,17 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
 import java.util.regex.Pattern;
 
-import org.springframework.expression.Expression;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
-
 import io.github.isagroup.exceptions.PricingParsingException;
 import io.github.isagroup.exceptions.VersionException;
 import io.github.isagroup.models.AddOn;
@@ -22,6 +22,7 @@ import io.github.isagroup.models.Feature;
 import io.github.isagroup.models.Plan;
 import io.github.isagroup.models.PricingManager;
 import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.services.formula.PriceFormula;
 import io.github.isagroup.services.updaters.Version;
 
 public class PricingManagerParser {
@@ -30,14 +31,31 @@ public class PricingManagerParser {
     }
 
     public static PricingManager parseMapToPricingManager(Map<String, Object> yamlConfigMap) {
+        return parseMapToPricingManager(yamlConfigMap, null);
+    }
+
+    /**
+     * Parses a pricing, optionally parsing its plans and add-ons in parallel.
+     * Plans are parsed first and add-ons afterwards, since add-ons refer to the
+     * plans; add-on dependencies and exclusions are resolved once every add-on
+     * is parsed. The result, its order and the reported error are the same as
+     * in sequential parsing: if several plans or add-ons are invalid, the error
+     * of the first one in declaration order is thrown.
+     *
+     * @param yamlConfigMap the pricing, updated to the latest version
+     * @param pool          the pool where plans and add-ons are parsed, or
+     *                      null to parse them sequentially
+     * @return the parsed pricing
+     */
+    public static PricingManager parseMapToPricingManager(Map<String, Object> yamlConfigMap, ForkJoinPool pool) {
 
         PricingManager pricingManager = new PricingManager();
 
         setBasicAttributes(yamlConfigMap, pricingManager);
         setFeatures(yamlConfigMap, pricingManager);
         setUsageLimits(yamlConfigMap, pricingManager);
-        setPlans(yamlConfigMap, pricingManager);
-        setAddOns(yamlConfigMap, pricingManager);
+        setPlans(yamlConfigMap, pricingManager, pool);
+        setAddOns(yamlConfigMap, pricingManager, pool);
 
         if (pricingManager.getPlans() == null && pricingManager.getAddOns() == null) {
             throw new PricingParsingException("The pricing manager does not have any plans or add ons");
@@ -46,16 +64,14 @@ public class PricingManagerParser {
         return pricingManager;
     }
 
-    protected static Double evaluateFormula(String price, PricingManager pricingManager) {
-        SpelExpressionParser parser = new SpelExpressionParser();
-        StandardEvaluationContext context = new StandardEvaluationContext();
-
-        if (pricingManager.getVariables() != null) {
-            context.setVariables(pricingManager.getVariables());
-        }
-
-        Expression priceExpression = parser.parseExpression(price);
-        return priceExpression.getValue(context, Double.class);
+    /**
+     * Compiles a price formula over the variables of the pricing, evaluating it
+     * once so invalid formulas are detected while parsing.
+     */
+    protected static PriceFormula compileFormula(String price, PricingManager pricingManager) {
+        PriceFormula priceFormula = new PriceFormula(price, pricingManager.getFormulaContext());
+        priceFormula.getValue();
+        return priceFormula;
     }
 
     private static void setBasicAttributes(Map<String, Object> yamlConfigMap, PricingManager pricingManager) {
@@ -309,7 +325,7 @@ public class PricingManagerParser {
         pricingManager.setUsageLimits(usageLimits);
     }
 
-    private static void setPlans(Map<String, Object> map, PricingManager pricingManager) {
+    private static void setPlans(Map<String, Object> map, PricingManager pricingManager, ForkJoinPool pool) {
 
         Map<String, Object> plansMap = new HashMap<>();
 
@@ -326,22 +342,28 @@ public class PricingManagerParser {
             return;
         }
 
-        for (String planName : plansMap.keySet()) {
-            try {
-                Map<String, Object> planMap = (Map<String, Object>) plansMap.get(planName);
-                Plan plan = PlanParser.parseMapToPlan(planName, planMap, pricingManager);
+        List<String> planNames = new ArrayList<>(plansMap.keySet());
+        Map<String, Object> finalPlansMap = plansMap;
 
-                plans.put(planName, plan);
+        List<Plan> parsedPlans = parseAll(planNames, pool, index -> {
+            String planName = planNames.get(index);
+            try {
+                Map<String, Object> planMap = (Map<String, Object>) finalPlansMap.get(planName);
+                return PlanParser.parseMapToPlan(planName, planMap, pricingManager);
             } catch (ClassCastException e) {
                 throw new PricingParsingException(
                         "An error has occurred while parsing the plan " + planName + ". Error: " + e.getMessage());
             }
+        });
+
+        for (int i = 0; i < planNames.size(); i++) {
+            plans.put(planNames.get(i), parsedPlans.get(i));
         }
 
         pricingManager.setPlans(plans);
     }
 
-    private static void setAddOns(Map<String, Object> map, PricingManager pricingManager) {
+    private static void setAddOns(Map<String, Object> map, PricingManager pricingManager, ForkJoinPool pool) {
         Map<String, Object> addOnsMap = (Map<String, Object>) map.get("addOns");
 
         if (addOnsMap == null) {
@@ -350,16 +372,27 @@ public class PricingManagerParser {
 
         pricingManager.setAddOns(new LinkedHashMap<>());
 
-        for (String addOnName : addOnsMap.keySet()) {
+        List<String> addOnNames = new ArrayList<>(addOnsMap.keySet());
+        Map<String, Integer> addOnIndexes = new HashMap<>();
+        for (int i = 0; i < addOnNames.size(); i++) {
+            addOnIndexes.put(addOnNames.get(i), i);
+        }
+
+        List<AddOn> parsedAddOns = parseAll(addOnNames, pool, index -> {
+            String addOnName = addOnNames.get(index);
             try {
                 Map<String, Object> addOnMap = (Map<String, Object>) addOnsMap.get(addOnName);
-                AddOn addOn = AddOnParser.parseMapToAddOn(addOnName, addOnMap, pricingManager);
-
-                pricingManager.getAddOns().put(addOnName, addOn);
+                // An add-on can only be available for the add-ons declared before it
+                return AddOnParser.parseMapToAddOn(addOnName, addOnMap, pricingManager,
+                        name -> addOnIndexes.containsKey(name) && addOnIndexes.get(name) < index);
             } catch (ClassCastException e) {
                 throw new PricingParsingException(
                         "An error has occurred while parsing the add-on " + addOnName + ". Error: " + e.getMessage());
             }
+        });
+
+        for (int i = 0; i < addOnNames.size(); i++) {
+            pricingManager.getAddOns().put(addOnNames.get(i), parsedAddOns.get(i));
         }
 
         for (String addOnName : addOnsMap.keySet()) {
@@ -377,4 +410,52 @@ public class PricingManagerParser {
             }
         }
     }
+
+    /**
+     * Parses every element, in the pool if there is one. Failures are collected
+     * instead of being thrown by the workers, so the exception of the first
+     * failing element in declaration order is rethrown as is.
+     */
+    private static <T> List<T> parseAll(List<String> names, ForkJoinPool pool, IntFunction<T> parser) {
+
+        List<T> parsed = new ArrayList<>(names.size());
+
+        if (pool == null || names.size() < 2) {
+            for (int i = 0; i < names.size(); i++) {
+                parsed.add(parser.apply(i));
+            }
+            return parsed;
+        }
+
+        List<ForkJoinTask<Object>> tasks = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            int index = i;
+            tasks.add(pool.submit(() -> {
+                try {
+                    return parser.apply(index);
+                } catch (RuntimeException e) {
+                    return new ParsingFailure(e);
+                }
+            }));
+        }
+
+        for (ForkJoinTask<Object> task : tasks) {
+            Object result = task.join();
+            if (result instanceof ParsingFailure) {
+                throw ((ParsingFailure) result).exception;
+            }
+            parsed.add((T) result);
+        }
+
+        return parsed;
+    }
+
+    private static final class ParsingFailure {
+
+        private final RuntimeException exception;
+
+        private ParsingFailure(RuntimeException exception) {
+            this.exception = exception;
+        }
+    }
 }
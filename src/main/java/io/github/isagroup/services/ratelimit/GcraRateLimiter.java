@@ -0,0 +1,166 @@
+package io.github.isagroup.services.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter based on the generic cell rate algorithm (GCRA), which behaves as
+ * a token bucket whose capacity is the number of requests allowed per period.
+ * 
+ * The state of each key is a single {@link AtomicLong} holding its theoretical
+ * arrival time, updated with a compare-and-set loop. A key whose theoretical
+ * arrival time is in the past is indistinguishable from a new one, so idle
+ * keys are evicted without losing information: every {@code sweepInterval}
+ * acquisitions one caller sweeps the map and removes them.
+ */
+public class GcraRateLimiter {
+
+    private static final int DEFAULT_SWEEP_INTERVAL = 4096;
+
+    // Marks a state that has been evicted, so racing callers look it up again
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final ConcurrentMap<String, AtomicLong> states = new ConcurrentHashMap<>();
+    private final LongSupplier nanoTime;
+    private final int sweepInterval;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicBoolean sweeping = new AtomicBoolean(false);
+
+    public GcraRateLimiter() {
+        this(System::nanoTime, DEFAULT_SWEEP_INTERVAL);
+    }
+
+    /**
+     * @param nanoTime      monotonic time source in nanoseconds
+     * @param sweepInterval number of acquisitions between idle key sweeps
+     */
+    public GcraRateLimiter(LongSupplier nanoTime, int sweepInterval) {
+        this.nanoTime = nanoTime;
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * Tries to consume one request of the key.
+     * 
+     * @param key    the rate limited key, e.g. a user and a usage limit
+     * @param limit  requests allowed per period, which is also the burst size
+     * @param period length of the period
+     * @return whether the request is allowed and, if not, when to retry
+     */
+    public RateLimitResult tryAcquire(String key, long limit, Duration period) {
+
+        if (limit <= 0) {
+            return RateLimitResult.denied(period, null);
+        }
+
+        long periodNanos = period.toNanos();
+        long interval = Math.max(1, periodNanos / limit);
+
+        maybeSweep();
+
+        while (true) {
+            AtomicLong state = states.computeIfAbsent(key, k -> new AtomicLong(nanoTime.getAsLong()));
+            long now = nanoTime.getAsLong();
+            long tat = state.get();
+
+            if (tat == EVICTED) {
+                states.remove(key, state);
+                continue;
+            }
+
+            long newTat = Math.max(tat, now) + interval;
+            long waiting = newTat - now - periodNanos;
+
+            if (waiting > 0) {
+                return RateLimitResult.denied(Duration.ofNanos(waiting), null);
+            }
+
+            if (state.compareAndSet(tat, newTat)) {
+                return RateLimitResult.allowed();
+            }
+        }
+    }
+
+    /**
+     * Gives back one request previously consumed with
+     * {@link #tryAcquire(String, long, Duration)}, e.g. because the request it
+     * was consumed for could not be served. Keys that have already recovered
+     * their whole capacity are left as they are.
+     * 
+     * @param key    the rate limited key
+     * @param limit  requests allowed per period
+     * @param period length of the period
+     */
+    public void release(String key, long limit, Duration period) {
+
+        if (limit <= 0) {
+            return;
+        }
+
+        long interval = Math.max(1, period.toNanos() / limit);
+
+        while (true) {
+            AtomicLong state = states.get(key);
+
+            if (state == null) {
+                return;
+            }
+
+            long now = nanoTime.getAsLong();
+            long tat = state.get();
+
+            if (tat == EVICTED || tat - now <= 0) {
+                return;
+            }
+
+            long newTat = tat - interval - now > 0 ? tat - interval : now;
+
+            if (state.compareAndSet(tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes every key that has recovered its whole capacity.
+     * 
+     * @return the number of removed keys
+     */
+    public int evictIdle() {
+        int evicted = 0;
+        long now = nanoTime.getAsLong();
+
+        for (var entry : states.entrySet()) {
+            AtomicLong state = entry.getValue();
+            long tat = state.get();
+
+            if (tat != EVICTED && tat - now <= 0 && state.compareAndSet(tat, EVICTED)) {
+                states.remove(entry.getKey(), state);
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    private void maybeSweep() {
+        if (acquisitions.incrementAndGet() % sweepInterval != 0 || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            evictIdle();
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.isagroup.services.ratelimit;
+
+import java.time.Duration;
+
+import lombok.Getter;
+
+/**
+ * Outcome of a rate limited acquisition.
+ */
+@Getter
+public class RateLimitResult {
+
+    private static final RateLimitResult ALLOWED = new RateLimitResult(true, Duration.ZERO, null);
+
+    private final boolean allowed;
+    private final Duration retryAfter;
+    private final String usageLimit;
+
+    private RateLimitResult(boolean allowed, Duration retryAfter, String usageLimit) {
+        this.allowed = allowed;
+        this.retryAfter = retryAfter;
+        this.usageLimit = usageLimit;
+    }
+
+    public static RateLimitResult allowed() {
+        return ALLOWED;
+    }
+
+    /**
+     * @param retryAfter time to wait until the next request can be allowed
+     * @param usageLimit the usage limit that has been exceeded, may be null
+     * @return a denied result
+     */
+    public static RateLimitResult denied(Duration retryAfter, String usageLimit) {
+        return new RateLimitResult(false, retryAfter, usageLimit);
+    }
+}
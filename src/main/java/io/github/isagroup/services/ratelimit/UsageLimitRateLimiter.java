@@ -0,0 +1,206 @@
+package io.github.isagroup.services.ratelimit;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.models.UsageLimitType;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.usage.RenewalPeriod;
+
+/**
+ * Enforces throughput usage limits, such as "API calls per minute", with a
+ * {@link GcraRateLimiter}. The rate of every user is the value of the usage
+ * limit in the user's plan, per period of the usage limit unit.
+ * 
+ * A usage limit is rate limited when it is {@link UsageLimitType#RESPONSE_DRIVEN}
+ * and its unit has a period, or when it is {@link UsageLimitType#RENEWABLE} and
+ * renews every second, minute or hour. Longer renewable limits are quotas and
+ * are enforced by the usage counters instead.
+ *
+ * Users are told apart by {@link PricingEvaluationContext#getRequiredSubject()},
+ * so requests of user contexts without identifier are rejected instead of
+ * sharing a rate.
+ */
+public class UsageLimitRateLimiter {
+
+    private final GcraRateLimiter rateLimiter;
+
+    public UsageLimitRateLimiter() {
+        this(new GcraRateLimiter());
+    }
+
+    public UsageLimitRateLimiter(GcraRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public GcraRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public static boolean isRateLimited(UsageLimit usageLimit) {
+
+        Optional<RenewalPeriod> period = RenewalPeriod.fromUnit(usageLimit.getUnit());
+
+        if (period.isEmpty()) {
+            return false;
+        }
+
+        if (usageLimit.getType() == UsageLimitType.RESPONSE_DRIVEN) {
+            return true;
+        }
+
+        return usageLimit.getType() == UsageLimitType.RENEWABLE && period.get().compareTo(RenewalPeriod.HOUR) <= 0;
+    }
+
+    /**
+     * Consumes one request of every rate limited usage limit linked to the
+     * feature. Stops at the first limit that denies the request, giving back
+     * the requests already consumed from the previous ones.
+     * 
+     * @param featureName       the feature that is going to be used
+     * @param evaluationContext the evaluation context of the user
+     * @return the result of the acquisition
+     */
+    public RateLimitResult acquireForFeature(String featureName, PricingEvaluationContext evaluationContext) {
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+        int feature = configuration.getIndex().featureOrdinal(featureName);
+
+        if (feature < 0) {
+            return RateLimitResult.allowed();
+        }
+
+        return acquireAll(configuration.getIndex().linkedUsageLimits(feature), configuration, evaluationContext);
+    }
+
+    /**
+     * Gives back the request consumed by {@link #acquireForFeature} from every
+     * rate limited usage limit linked to the feature, e.g. because the request
+     * was rejected afterwards.
+     * 
+     * @param featureName       the feature whose requests are given back
+     * @param evaluationContext the evaluation context of the user
+     */
+    public void releaseForFeature(String featureName, PricingEvaluationContext evaluationContext) {
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+        int feature = configuration.getIndex().featureOrdinal(featureName);
+
+        if (feature < 0) {
+            return;
+        }
+
+        for (int usageLimit : configuration.getIndex().linkedUsageLimits(feature)) {
+            release(usageLimit, configuration, evaluationContext);
+        }
+    }
+
+    /**
+     * Consumes one request of each of the given usage limits. Either every
+     * request is consumed or none is: when a limit denies the request, the
+     * requests already consumed from the previous ones are given back.
+     * 
+     * @param usageLimitNames   the names of the usage limits
+     * @param evaluationContext the evaluation context of the user
+     * @return the result of the acquisition. Usage limits that do not exist or
+     *         are not rate limited always allow the request.
+     */
+    public RateLimitResult acquire(Collection<String> usageLimitNames, PricingEvaluationContext evaluationContext) {
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+
+        return acquireAll(ordinals(usageLimitNames, configuration.getIndex()), configuration, evaluationContext);
+    }
+
+    /**
+     * Consumes one request of the given usage limit.
+     * 
+     * @param usageLimitName    the name of the usage limit
+     * @param evaluationContext the evaluation context of the user
+     * @return the result of the acquisition. Requests are allowed when the usage
+     *         limit does not exist or is not rate limited.
+     */
+    public RateLimitResult acquire(String usageLimitName, PricingEvaluationContext evaluationContext) {
+        return acquire(List.of(usageLimitName), evaluationContext);
+    }
+
+    /**
+     * Gives back the request consumed from each of the given usage limits, e.g.
+     * because the request could not be served.
+     * 
+     * @param usageLimitNames   the names of the usage limits
+     * @param evaluationContext the evaluation context of the user
+     */
+    public void release(Collection<String> usageLimitNames, PricingEvaluationContext evaluationContext) {
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+
+        for (int usageLimit : ordinals(usageLimitNames, configuration.getIndex())) {
+            release(usageLimit, configuration, evaluationContext);
+        }
+    }
+
+    private static int[] ordinals(Collection<String> usageLimitNames, PricingIndex index) {
+        return usageLimitNames.stream()
+                .mapToInt(index::usageLimitOrdinal)
+                .filter(ordinal -> ordinal >= 0)
+                .toArray();
+    }
+
+    private RateLimitResult acquireAll(int[] usageLimits, EffectiveConfiguration configuration,
+            PricingEvaluationContext evaluationContext) {
+
+        for (int i = 0; i < usageLimits.length; i++) {
+
+            RateLimitResult result = acquire(usageLimits[i], configuration, evaluationContext);
+
+            if (!result.isAllowed()) {
+                for (int j = 0; j < i; j++) {
+                    release(usageLimits[j], configuration, evaluationContext);
+                }
+                return result;
+            }
+        }
+
+        return RateLimitResult.allowed();
+    }
+
+    private RateLimitResult acquire(int ordinal, EffectiveConfiguration configuration,
+            PricingEvaluationContext evaluationContext) {
+
+        UsageLimit usageLimit = configuration.getIndex().getUsageLimit(ordinal);
+
+        if (!isRateLimited(usageLimit) || !configuration.hasNumericUsageLimit(ordinal)) {
+            return RateLimitResult.allowed();
+        }
+
+        RateLimitResult result = rateLimiter.tryAcquire(key(usageLimit, evaluationContext),
+                configuration.getUsageLimitAsLong(ordinal), period(usageLimit));
+
+        return result.isAllowed() ? result : RateLimitResult.denied(result.getRetryAfter(), usageLimit.getName());
+    }
+
+    private void release(int ordinal, EffectiveConfiguration configuration,
+            PricingEvaluationContext evaluationContext) {
+
+        UsageLimit usageLimit = configuration.getIndex().getUsageLimit(ordinal);
+
+        if (isRateLimited(usageLimit) && configuration.hasNumericUsageLimit(ordinal)) {
+            rateLimiter.release(key(usageLimit, evaluationContext), configuration.getUsageLimitAsLong(ordinal),
+                    period(usageLimit));
+        }
+    }
+
+    private static String key(UsageLimit usageLimit, PricingEvaluationContext evaluationContext) {
+        return evaluationContext.getRequiredSubject() + ":" + usageLimit.getName();
+    }
+
+    private static Duration period(UsageLimit usageLimit) {
+        return RenewalPeriod.fromUnit(usageLimit.getUnit()).get().getNominalDuration();
+    }
+}
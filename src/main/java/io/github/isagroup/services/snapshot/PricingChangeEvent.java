@@ -0,0 +1,51 @@
+package io.github.isagroup.services.snapshot;
+
+import io.github.isagroup.services.diff.PricingDiff;
+import io.github.isagroup.services.diff.PricingDiffer;
+import io.github.isagroup.services.diff.PricingHashes;
+
+/**
+ * Published when the snapshot of a configuration file is replaced by a new
+ * one. The diff between both snapshots is computed on the first request.
+ */
+public class PricingChangeEvent {
+
+    private final String configFilePath;
+    private final PricingSnapshot previous;
+    private final PricingSnapshot current;
+
+    private PricingDiff diff;
+
+    public PricingChangeEvent(String configFilePath, PricingSnapshot previous, PricingSnapshot current) {
+        this.configFilePath = configFilePath;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public String getConfigFilePath() {
+        return configFilePath;
+    }
+
+    public PricingSnapshot getPrevious() {
+        return previous;
+    }
+
+    public PricingSnapshot getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the changes from the previous snapshot to the current one
+     */
+    public synchronized PricingDiff getDiff() {
+        if (diff == null) {
+            diff = PricingDiffer.diff(previous.getPricingManager(), hashesOf(previous), current.getPricingManager(),
+                    hashesOf(current));
+        }
+        return diff;
+    }
+
+    private static PricingHashes hashesOf(PricingSnapshot snapshot) {
+        return snapshot.computeIfAbsent(PricingHashes.class, s -> new PricingHashes(s.getPricingManager()));
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.isagroup.services.snapshot;
+
+/**
+ * Receives the changes of the pricing configurations, e.g. to invalidate
+ * caches or refresh tokens.
+ *
+ * @see PricingSnapshotRegistry#addListener(PricingChangeListener)
+ */
+@FunctionalInterface
+public interface PricingChangeListener {
+
+    void onPricingChange(PricingChangeEvent event);
+}
@@ -0,0 +1,271 @@
+package io.github.isagroup.services.snapshot;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Feature;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.services.diff.ContentHash;
+
+/**
+ * Hash-consing of pricing definitions. Features, usage limits, plans and add-ons
+ * with the same content are replaced by a single canonical instance, so the
+ * versions of a pricing that are kept in memory share every definition that
+ * did not change between them. Two interned definitions have the same content
+ * if, and only if, they are the same instance.
+ *
+ * Canonical instances are weakly referenced, so they are released once no
+ * pricing uses them. Since they are shared, interned definitions must not be
+ * modified, which is why only the pricing managers of {@link PricingSnapshot}s
+ * are interned.
+ *
+ * Plans and add-ons whose price is a formula are not shared, because the
+ * formula is evaluated against the variables of its own pricing manager. Their
+ * features and usage limits are shared anyway.
+ */
+public class PricingInterner {
+
+    private static final PricingInterner INSTANCE = new PricingInterner();
+
+    private final Map<Long, List<Entry>> canonicals = new HashMap<>();
+    private final ReferenceQueue<Object> released = new ReferenceQueue<>();
+
+    public static PricingInterner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replaces every definition of the pricing manager by its canonical
+     * instance.
+     *
+     * @param pricingManager the pricing manager to intern, which is modified in
+     *                       place
+     * @return the given pricing manager
+     */
+    public PricingManager intern(PricingManager pricingManager) {
+
+        if (pricingManager == null) {
+            return null;
+        }
+
+        internValues(pricingManager.getFeatures(), this::intern);
+        internValues(pricingManager.getUsageLimits(), this::intern);
+        internValues(pricingManager.getPlans(), this::intern);
+        internValues(pricingManager.getAddOns(), this::intern);
+
+        return pricingManager;
+    }
+
+    public Feature intern(Feature feature) {
+
+        if (feature == null) {
+            return null;
+        }
+
+        long hash = hash(feature.getClass(), feature.serializeFeature(), feature.getValue());
+        return canonical(hash, feature,
+                other -> feature.equals(other) && Objects.equals(feature.getValue(), ((Feature) other).getValue()));
+    }
+
+    public UsageLimit intern(UsageLimit usageLimit) {
+
+        if (usageLimit == null) {
+            return null;
+        }
+
+        long hash = hash(usageLimit.getClass(), usageLimit.serialize(), usageLimit.getValue());
+        return canonical(hash, usageLimit,
+                other -> usageLimit.equals(other)
+                        && Objects.equals(usageLimit.getValue(), ((UsageLimit) other).getValue()));
+    }
+
+    public Plan intern(Plan plan) {
+
+        if (plan == null) {
+            return null;
+        }
+
+        internValues(plan.getFeatures(), this::intern);
+        internValues(plan.getUsageLimits(), this::intern);
+
+        if (plan.getPriceFormula() != null) {
+            return plan;
+        }
+
+        long hash = hash(Plan.class,
+                Arrays.asList(plan.getName(), plan.getDescription(), plan.getPrice(), plan.getUnit(),
+                        plan.getIsPrivate()),
+                List.of(identityHash(plan.getFeatures()), identityHash(plan.getUsageLimits())));
+
+        return canonical(hash, plan, other -> {
+            Plan otherPlan = (Plan) other;
+            return otherPlan.getPriceFormula() == null
+                    && Objects.equals(plan.getName(), otherPlan.getName())
+                    && Objects.equals(plan.getDescription(), otherPlan.getDescription())
+                    && Objects.equals(plan.getPrice(), otherPlan.getPrice())
+                    && Objects.equals(plan.getUnit(), otherPlan.getUnit())
+                    && Objects.equals(plan.getIsPrivate(), otherPlan.getIsPrivate())
+                    && sameInstances(plan.getFeatures(), otherPlan.getFeatures())
+                    && sameInstances(plan.getUsageLimits(), otherPlan.getUsageLimits());
+        });
+    }
+
+    public AddOn intern(AddOn addOn) {
+
+        if (addOn == null) {
+            return null;
+        }
+
+        internValues(addOn.getFeatures(), this::intern);
+        internValues(addOn.getUsageLimits(), this::intern);
+        internValues(addOn.getUsageLimitsExtensions(), this::intern);
+
+        if (addOn.getPriceFormula() != null) {
+            return addOn;
+        }
+
+        long hash = hash(AddOn.class,
+                Arrays.asList(addOn.getName(), addOn.getDescription(), addOn.getAvailableFor(), addOn.getDependsOn(),
+                        addOn.getExcludes(), addOn.getPrice(), addOn.getUnit(), addOn.getIsPrivate()),
+                List.of(identityHash(addOn.getFeatures()), identityHash(addOn.getUsageLimits()),
+                        identityHash(addOn.getUsageLimitsExtensions())));
+
+        return canonical(hash, addOn, other -> {
+            AddOn otherAddOn = (AddOn) other;
+            return otherAddOn.getPriceFormula() == null
+                    && Objects.equals(addOn.getName(), otherAddOn.getName())
+                    && Objects.equals(addOn.getDescription(), otherAddOn.getDescription())
+                    && Objects.equals(addOn.getAvailableFor(), otherAddOn.getAvailableFor())
+                    && Objects.equals(addOn.getDependsOn(), otherAddOn.getDependsOn())
+                    && Objects.equals(addOn.getExcludes(), otherAddOn.getExcludes())
+                    && Objects.equals(addOn.getPrice(), otherAddOn.getPrice())
+                    && Objects.equals(addOn.getUnit(), otherAddOn.getUnit())
+                    && Objects.equals(addOn.getIsPrivate(), otherAddOn.getIsPrivate())
+                    && sameInstances(addOn.getFeatures(), otherAddOn.getFeatures())
+                    && sameInstances(addOn.getUsageLimits(), otherAddOn.getUsageLimits())
+                    && sameInstances(addOn.getUsageLimitsExtensions(), otherAddOn.getUsageLimitsExtensions());
+        });
+    }
+
+    /**
+     * @return the number of canonical instances that are still referenced
+     */
+    public synchronized int size() {
+        expungeReleased();
+        int size = 0;
+        for (List<Entry> entries : canonicals.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    private synchronized <T> T canonical(long hash, T candidate, Predicate<Object> sameContent) {
+
+        expungeReleased();
+
+        List<Entry> entries = canonicals.computeIfAbsent(hash, h -> new ArrayList<>(1));
+
+        for (Entry entry : entries) {
+            Object canonical = entry.get();
+            if (canonical != null && canonical.getClass() == candidate.getClass() && sameContent.test(canonical)) {
+                @SuppressWarnings("unchecked")
+                T result = (T) canonical;
+                return result;
+            }
+        }
+
+        entries.add(new Entry(hash, candidate, released));
+        return candidate;
+    }
+
+    private void expungeReleased() {
+        Entry entry;
+        while ((entry = (Entry) released.poll()) != null) {
+            List<Entry> entries = canonicals.get(entry.hash);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    canonicals.remove(entry.hash);
+                }
+            }
+        }
+    }
+
+    private static <T> void internValues(Map<String, T> definitions, UnaryOperator<T> interner) {
+
+        if (definitions == null) {
+            return;
+        }
+
+        for (Iterator<Map.Entry<String, T>> it = definitions.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, T> entry = it.next();
+            entry.setValue(interner.apply(entry.getValue()));
+        }
+    }
+
+    private static long hash(Class<?> type, Object content, Object value) {
+        Map<String, Object> hashed = new LinkedHashMap<>();
+        hashed.put("type", type.getName());
+        hashed.put("content", content);
+        hashed.put("value", value);
+        return ContentHash.of(hashed);
+    }
+
+    /**
+     * Hash of a map whose values are already canonical, so they can be
+     * identified by reference.
+     */
+    private static long identityHash(Map<String, ?> definitions) {
+
+        if (definitions == null) {
+            return 0;
+        }
+
+        long hash = definitions.size();
+        for (Map.Entry<String, ?> entry : definitions.entrySet()) {
+            hash += entry.getKey().hashCode() * 31L + System.identityHashCode(entry.getValue());
+        }
+        return hash;
+    }
+
+    private static boolean sameInstances(Map<String, ?> definitions, Map<String, ?> otherDefinitions) {
+
+        if (definitions == null || otherDefinitions == null) {
+            return definitions == otherDefinitions;
+        }
+
+        if (definitions.size() != otherDefinitions.size()) {
+            return false;
+        }
+
+        for (Map.Entry<String, ?> entry : definitions.entrySet()) {
+            if (otherDefinitions.get(entry.getKey()) != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry extends WeakReference<Object> {
+
+        private final long hash;
+
+        private Entry(long hash, Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = hash;
+        }
+    }
+}
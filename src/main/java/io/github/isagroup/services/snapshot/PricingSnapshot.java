@@ -0,0 +1,82 @@
+package io.github.isagroup.services.snapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import io.github.isagroup.models.PricingManager;
+
+/**
+ * An immutable view of a pricing configuration, loaded from a given content
+ * of the configuration file. Snapshots are shared between requests, so their
+ * {@link PricingManager} must not be modified.
+ * 
+ * Anything derived from the configuration, such as caches, can be attached to
+ * the snapshot with {@link #computeIfAbsent(Class, Function)}, so it is
+ * discarded when the configuration changes.
+ *
+ * @see PricingSnapshotRegistry
+ */
+public class PricingSnapshot {
+
+    private final long version;
+    private final long contentHash;
+    private final byte[] content;
+    private final PricingManager pricingManager;
+
+    private final ConcurrentMap<Class<?>, Object> attachments = new ConcurrentHashMap<>();
+
+    PricingSnapshot(long version, byte[] content, PricingManager pricingManager) {
+        this.version = version;
+        this.contentHash = contentHash(content);
+        this.content = content;
+        this.pricingManager = pricingManager;
+    }
+
+    /**
+     * @return a number that increases every time a new snapshot is loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the 64-bit FNV-1a hash of the configuration file
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public PricingManager getPricingManager() {
+        return pricingManager;
+    }
+
+    /**
+     * Returns the object of the given type attached to this snapshot, creating
+     * it on the first call. The factory must not get other attachments of this
+     * snapshot, as the attachments cannot be created recursively; they must be
+     * resolved before and captured by the factory.
+     * 
+     * @param <T>     type of the attached object
+     * @param type    key of the attached object
+     * @param factory creates the object from the snapshot
+     * @return the attached object
+     */
+    public <T> T computeIfAbsent(Class<T> type, Function<PricingSnapshot, T> factory) {
+        return type.cast(attachments.computeIfAbsent(type, key -> factory.apply(this)));
+    }
+
+    boolean hasContent(byte[] otherContent) {
+        return contentHash == contentHash(otherContent) && Arrays.equals(content, otherContent);
+    }
+
+    static long contentHash(byte[] content) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : content) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
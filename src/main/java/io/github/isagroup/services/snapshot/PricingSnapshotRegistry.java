@@ -0,0 +1,135 @@
+package io.github.isagroup.services.snapshot;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+/**
+ * Keeps the current {@link PricingSnapshot} of every configuration file. The
+ * file is read on each lookup, but it is only parsed again when its content
+ * has changed. Every time a snapshot is replaced, a {@link PricingChangeEvent}
+ * is published to the registered listeners.
+ */
+public class PricingSnapshotRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricingSnapshotRegistry.class);
+
+    private static final PricingSnapshotRegistry INSTANCE = new PricingSnapshotRegistry();
+
+    private final ConcurrentMap<String, PricingSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final List<PricingChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static PricingSnapshotRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the snapshot of the current content of the configuration file.
+     * 
+     * @param configFilePath path of the configuration file, relative to the
+     *                       resources folder
+     * @return the snapshot of the configuration
+     */
+    public PricingSnapshot getSnapshot(String configFilePath) {
+
+        byte[] content = YamlUtils.readYamlContent(configFilePath);
+        PricingSnapshot current = snapshots.get(configFilePath);
+
+        if (current != null && current.hasContent(content)) {
+            return current;
+        }
+
+        PricingSnapshot[] replaced = new PricingSnapshot[1];
+
+        PricingSnapshot snapshot = snapshots.compute(configFilePath, (path, existing) -> {
+            if (existing != null && existing.hasContent(content)) {
+                return existing;
+            }
+            replaced[0] = existing;
+            return load(content);
+        });
+
+        if (snapshot.getPricingManager() == null) {
+            // The configuration could not be updated, so it is not cached
+            snapshots.remove(configFilePath, snapshot);
+        } else if (replaced[0] != null && replaced[0].getPricingManager() != null) {
+            publish(new PricingChangeEvent(configFilePath, replaced[0], snapshot));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Registers a listener of the changes of every configuration file. Listeners
+     * are called synchronously by the thread that detects the change, so they
+     * should return quickly.
+     *
+     * @param listener the listener to register
+     */
+    public void addListener(PricingChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PricingChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records that the configuration file has been rewritten from the pricing
+     * manager of its current snapshot, which has been updated in place. The
+     * manager is kept in a snapshot of the new content, so the next lookup does
+     * not parse the file again. Nothing is recorded if the snapshot has been
+     * replaced in the meantime.
+     * 
+     * @param configFilePath path of the configuration file
+     * @param snapshot       the snapshot whose manager has been written
+     * @param content        the content written to the file
+     * @return the snapshot of the new content, or the current one if the given
+     *         snapshot is no longer current
+     */
+    public PricingSnapshot rewritten(String configFilePath, PricingSnapshot snapshot, byte[] content) {
+
+        PricingSnapshot rewritten = new PricingSnapshot(versions.incrementAndGet(), content,
+                snapshot.getPricingManager());
+
+        if (snapshots.replace(configFilePath, snapshot, rewritten)) {
+            return rewritten;
+        }
+
+        return getSnapshot(configFilePath);
+    }
+
+    /**
+     * Discards the snapshot of the configuration file, so the next lookup parses
+     * it again.
+     * 
+     * @param configFilePath path of the configuration file
+     */
+    public void invalidate(String configFilePath) {
+        snapshots.remove(configFilePath);
+    }
+
+    private void publish(PricingChangeEvent event) {
+        for (PricingChangeListener listener : listeners) {
+            try {
+                listener.onPricingChange(event);
+            } catch (RuntimeException e) {
+                logger.error("Pricing change listener failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private PricingSnapshot load(byte[] content) {
+        PricingManager pricingManager = PricingInterner.getInstance().intern(YamlUtils.parseManagerFromYaml(content));
+        return new PricingSnapshot(versions.incrementAndGet(), content, pricingManager);
+    }
+}
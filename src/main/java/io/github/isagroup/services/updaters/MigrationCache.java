@@ -0,0 +1,129 @@
+package io.github.isagroup.services.updaters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of migrated pricings, keyed by the content of the source
+ * file, so loading the same pricing of a previous version again does not
+ * migrate it again.
+ *
+ * Migrated pricings are stored and returned as deep copies, since parsers and
+ * updaters modify the maps they receive.
+ */
+public class MigrationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final MigrationCache INSTANCE = new MigrationCache(DEFAULT_MAX_SIZE);
+
+    private final Map<ContentKey, Map<String, Object>> migrations;
+
+    public MigrationCache(int maxSize) {
+        this.migrations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContentKey, Map<String, Object>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static MigrationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param content the bytes of the source file
+     * @return a copy of the migrated pricing, or null if the content has not
+     *         been migrated yet
+     */
+    public Map<String, Object> get(byte[] content) {
+        Map<String, Object> migrated;
+        synchronized (migrations) {
+            migrated = migrations.get(new ContentKey(content));
+        }
+        return migrated != null ? deepCopy(migrated) : null;
+    }
+
+    /**
+     * @param content  the bytes of the source file
+     * @param migrated the pricing migrated to the latest version, which is
+     *                 copied
+     */
+    public void put(byte[] content, Map<String, Object> migrated) {
+        ContentKey key = new ContentKey(content.clone());
+        Map<String, Object> copy = deepCopy(migrated);
+        synchronized (migrations) {
+            migrations.put(key, copy);
+        }
+    }
+
+    public int size() {
+        synchronized (migrations) {
+            return migrations.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (migrations) {
+            migrations.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deepCopy(T value) {
+
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, element) -> copy.put(key, deepCopy(element)));
+            return (T) copy;
+        }
+
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                copy.add(deepCopy(element));
+            }
+            return (T) copy;
+        }
+
+        if (value instanceof Date) {
+            return (T) ((Date) value).clone();
+        }
+
+        return value;
+    }
+
+    private static final class ContentKey {
+
+        private final byte[] content;
+        private final int hash;
+
+        private ContentKey(byte[] content) {
+            this.content = content;
+
+            // 64-bit FNV-1a, folded into an int
+            long fnv = 0xcbf29ce484222325L;
+            for (byte b : content) {
+                fnv ^= b & 0xff;
+                fnv *= 0x100000001b3L;
+            }
+            this.hash = (int) (fnv ^ (fnv >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ContentKey && hash == ((ContentKey) o).hash
+                    && Arrays.equals(content, ((ContentKey) o).content);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -5,25 +5,30 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import io.github.isagroup.exceptions.UpdateException;
 
 public class V10ToV11Updater extends VersionUpdater {
 
-    public V10ToV11Updater(Updater updater) {
-        super(Version.V1_0, updater);
+    public V10ToV11Updater() {
+        super(Version.V1_0, Version.V1_1);
     }
 
     @Override
-    public void update(Map<String, Object> configFile) throws UpdateException {
+    public void updateRoot(Map<String, Object> configFile) throws UpdateException {
 
         configFile.put("version", "1.1");
 
         updateDayMonthYearToASingleField(configFile);
-        removeSeverExpressionWhenBothExpressionAreEqual(configFile);
     }
 
+    @Override
+    public void updateNode(String container, String name, Object node, Map<String, Object> configFile) {
+
+        if (container.equals("features") && node instanceof Map) {
+            modifyFeature((Map<String, Object>) node);
+        }
+    }
 
 
     private void updateDayMonthYearToASingleField(Map<String,Object> configFile) throws UpdateException {
@@ -65,24 +70,6 @@ public class V10ToV11Updater extends VersionUpdater {
         }
     }
 
-    private void removeSeverExpressionWhenBothExpressionAreEqual(Map<String,Object> configFile) throws UpdateException {
-        if (configFile.get("features") instanceof Map) {
-            removeServerExpressionFromFeatures((Map<String, Object>) configFile.get("features"));
-        }
-    }
-
-    private void removeServerExpressionFromFeatures(Map<String, Object> features) throws UpdateException {
-        for (Entry<String, Object> feature : features.entrySet()) {
-
-            if (!(feature.getValue() instanceof Map)) {
-                continue;
-            }
-            modifyFeature((Map<String,Object>) feature.getValue());
-
-        }
-
-    }
-
     private void modifyFeature(Map<String, Object> attributes) {
         if (attributes.get("expression") != null &&
             attributes.get("serverExpression") != null &&
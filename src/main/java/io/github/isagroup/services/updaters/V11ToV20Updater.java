@@ -1,31 +1,28 @@
 package io.github.isagroup.services.updaters;
 
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 import io.github.isagroup.exceptions.UpdateException;
-import io.github.isagroup.exceptions.VersionException;
 
 public class V11ToV20Updater extends VersionUpdater {
 
-    public V11ToV20Updater(Updater updater) {
-        super(Version.V1_1, updater);
+    public V11ToV20Updater() {
+        super(Version.V1_1, Version.V2_0);
     }
 
     @Override
-    public void update(Map<String, Object> configFile) throws UpdateException {
+    public void updateNode(String container, String name, Object node, Map<String, Object> configFile)
+            throws UpdateException {
 
-        try {
-            if (Version.version(configFile.get("version")).compare(this.getSource()) < 0) {
-                super.update(configFile);
-
-            }
-        } catch (VersionException e) {
-            throw new UpdateException(e.getMessage(), configFile);
+        if (container.equals("plans") || container.equals("addOns")) {
+            updateContainerWithOnlyOnePriceField(container, name, node, configFile);
         }
+    }
+
+    @Override
+    public void completeRoot(Map<String, Object> configFile) {
 
-        updateContainersWithOnlyOnePriceField(configFile);
         removeHasAnnualPaymentField(configFile);
         removeStartsField(configFile);
         removeEndsField(configFile);
@@ -57,69 +54,57 @@ public class V11ToV20Updater extends VersionUpdater {
         }
     }
 
-    private void updateContainersWithOnlyOnePriceField(Map<String,Object> configFile) throws UpdateException {
+    private void updateContainerWithOnlyOnePriceField(String container, String name, Object node,
+            Map<String, Object> configFile) throws UpdateException {
+
+        String containerName = container.equals("plans") ? "plan" : "addOn";
+
+        if (node == null) {
+            throw new UpdateException(containerName + " is null", configFile);
+        }
+
+        if (!(node instanceof Map)) {
+            throw new UpdateException(containerName + " " + node + "is not a map", configFile);
+        }
+
+        Map<String,Object> containerAttributes = (Map<String, Object>) node;
 
-        List<String> containers = List.of("plans", "addOns");
+        if (containerAttributes.get("price") == null) {
+            if (containerAttributes.get("monthlyPrice") == null && containerAttributes.get("annualPrice") == null) {
+                throw new UpdateException("You have to specify either a monthlyPrice and/or an annualPrice, or a price; for the " + container + " " + name, configFile);
+            }
 
-        for (String container: containers) {
-            if (!(configFile.get(container) instanceof Map)) {
-                return;
+            if (!isValidPrice(containerAttributes.get("monthlyPrice")) || !isValidPrice(containerAttributes.get("annualPrice"))) {
+                throw new UpdateException("Either the monthlyPrice or annualPrice of the " + containerName + " " + name
+                    + " is neither a valid number nor String", configFile);
             }
 
-            String containerName = container.equals("plans") ? "plan" : "addOn";
-    
-            for (Map.Entry<?,?> entry:  ((Map<?, ?>) configFile.get(container)).entrySet()) {
-    
-                if (entry.getValue() == null) {
-                    throw new UpdateException(containerName + " is null", configFile);
-                }
-    
-                if (!(entry.getValue() instanceof Map)) {
-                    throw new UpdateException(containerName + " " + entry.getValue() + "is not a map", configFile);
-                }
-    
-                Map<String,Object> containerAttributes = (Map<String, Object>) entry.getValue();
-    
-                if (containerAttributes.get("price") != null){
-                    continue;
+            if (containerAttributes.get("monthlyPrice") != null) {
+                containerAttributes.put("price", containerAttributes.get("monthlyPrice"));
+            } else {
+                System.out.println("[V20 UPDATER WARNING] " + containerName + " " + name + " does not have a monthlyPrice but annualPrice instead, keep in mind that we are copying this value to price");
+                containerAttributes.put("price", containerAttributes.get("annualPrice"));
+            }
+
+            Map<String, Double> billingMap = new LinkedHashMap<>();
+            billingMap.put("monthly", 1.0);
+
+            if (containerAttributes.get("monthlyPrice") != null && containerAttributes.get("annualPrice") != null) {
+                Double annualCoef = Double.parseDouble(containerAttributes.get("annualPrice").toString()) / Double.parseDouble(containerAttributes.get("monthlyPrice").toString());
+                if (annualCoef > 1.0){
+                    billingMap.put("annual", 1.0);
+                }else if(annualCoef < 0.0){
+                    billingMap.put("annual", 0.0);
                 }else{
-                    if (containerAttributes.get("monthlyPrice") == null && containerAttributes.get("annualPrice") == null) {
-                        throw new UpdateException("You have to specify either a monthlyPrice and/or an annualPrice, or a price; for the " + container + " " + entry.getKey(), configFile);
-                    }
-        
-                    if (!isValidPrice(containerAttributes.get("monthlyPrice")) || !isValidPrice(containerAttributes.get("annualPrice"))) {
-                        throw new UpdateException("Either the monthlyPrice or annualPrice of the " + containerName + " " + entry.getKey()
-                            + " is neither a valid number nor String", configFile);
-                    }
-        
-                    if (containerAttributes.get("monthlyPrice") != null) {
-                        containerAttributes.put("price", containerAttributes.get("monthlyPrice"));
-                    } else {
-                        System.out.println("[V20 UPDATER WARNING] " + containerName + " " + entry.getKey() + " does not have a monthlyPrice but annualPrice instead, keep in mind that we are copying this value to price");
-                        containerAttributes.put("price", containerAttributes.get("annualPrice"));
-                    }   
-
-                    Map<String, Double> billingMap = new LinkedHashMap<>();
-                    billingMap.put("monthly", 1.0);
-
-                    if (containerAttributes.get("monthlyPrice") != null && containerAttributes.get("annualPrice") != null) {
-                        Double annualCoef = Double.parseDouble(containerAttributes.get("annualPrice").toString()) / Double.parseDouble(containerAttributes.get("monthlyPrice").toString());
-                        if (annualCoef > 1.0){
-                            billingMap.put("annual", 1.0);
-                        }else if(annualCoef < 0.0){
-                            billingMap.put("annual", 0.0);
-                        }else{
-                            billingMap.put("annual", annualCoef);
-                        }
-                    }
-
-                    configFile.put("billing", billingMap);
+                    billingMap.put("annual", annualCoef);
                 }
-
-                containerAttributes.remove("monthlyPrice");
-                containerAttributes.remove("annualPrice");
             }
+
+            configFile.put("billing", billingMap);
         }
+
+        containerAttributes.remove("monthlyPrice");
+        containerAttributes.remove("annualPrice");
     }
 
 }
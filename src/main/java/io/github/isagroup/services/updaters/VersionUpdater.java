@@ -1,30 +1,65 @@
 package io.github.isagroup.services.updaters;
 
+import java.util.List;
 import java.util.Map;
 
 import io.github.isagroup.exceptions.UpdateException;
 
+/**
+ * Migration of a pricing from one version of the specification to the next
+ * one. Instead of walking the pricing by itself, each migration is expressed as
+ * transformations of the root of the pricing and of each of its nodes (the
+ * features, usage limits, plans and add-ons), so {@link YamlUpdater} can apply
+ * every pending migration in a single traversal.
+ */
 public abstract class VersionUpdater implements Updater {
 
     private final Version source;
-    private final Updater versionUpdater;
+    private final Version target;
 
-    public VersionUpdater(Version target, Updater updater) {
-        this.source = target;
-        this.versionUpdater = updater;
+    protected VersionUpdater(Version source, Version target) {
+        this.source = source;
+        this.target = target;
     }
 
-    @Override
-    public void update(Map<String, Object> configFile) throws UpdateException {
+    public Version getSource() {
+        return source;
+    }
 
-        if (this.versionUpdater == null) {
-            return;
-        }
+    public Version getTarget() {
+        return target;
+    }
 
-        this.versionUpdater.update(configFile);
+    /**
+     * Transforms the root of the pricing before its nodes are traversed.
+     */
+    public void updateRoot(Map<String, Object> configFile) throws UpdateException {
     }
 
-    public Version getSource() {
-        return source;
+    /**
+     * Transforms a node of the pricing.
+     *
+     * @param container  the root attribute that holds the node, e.g. "plans"
+     * @param name       the name of the node
+     * @param node       the attributes of the node, which may be of any type
+     *                   if the pricing is malformed
+     * @param configFile the whole pricing
+     */
+    public void updateNode(String container, String name, Object node, Map<String, Object> configFile)
+            throws UpdateException {
+    }
+
+    /**
+     * Transforms the root of the pricing after its nodes are traversed.
+     */
+    public void completeRoot(Map<String, Object> configFile) throws UpdateException {
+    }
+
+    /**
+     * Applies only this migration to the pricing.
+     */
+    @Override
+    public void update(Map<String, Object> configFile) throws UpdateException {
+        YamlUpdater.apply(List.of(this), configFile);
     }
 }
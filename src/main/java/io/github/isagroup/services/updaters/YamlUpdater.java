@@ -1,24 +1,46 @@
 package io.github.isagroup.services.updaters;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import io.github.isagroup.exceptions.PricingParsingException;
 import io.github.isagroup.exceptions.UpdateException;
 import io.github.isagroup.exceptions.VersionException;
 
+/**
+ * Updates pricings to the latest version of the specification. The pending
+ * migrations are fused: their root transformations are applied in order, and
+ * the nodes of the pricing are traversed once, applying the transformations
+ * of every migration to each node.
+ */
 public class YamlUpdater {
 
-    private static final Map<Version, Updater> updaters = new LinkedHashMap<>();
+    private static final List<VersionUpdater> updaters = List.of(
+            new V10ToV11Updater(),
+            new V11ToV20Updater(),
+            new V20ToV21Updater());
 
-    static {
-        updaters.put(Version.V1_0, new V10ToV11Updater(null));
-        updaters.put(Version.V1_1, new V11ToV20Updater(updaters.get(Version.V1_0)));
-        updaters.put(Version.V2_0, new V20ToV21Updater(updaters.get(Version.V1_1)));
-    }
+    private static final List<String> CONTAINERS = List.of("features", "usageLimits", "plans", "addOns");
 
     public static void update(Map<String, Object> configFile) throws UpdateException {
 
+        if (!needsUpdate(configFile)) {
+            return;
+        }
+
+        apply(pendingUpdaters(configFile), configFile);
+    }
+
+    /**
+     * Checks whether the pricing is written in a previous version of the
+     * specification.
+     *
+     * @param configFile the pricing
+     * @return true if {@link #update(Map)} would migrate the pricing
+     */
+    public static boolean needsUpdate(Map<String, Object> configFile) {
+
         if (configFile.get("syntaxVersion") == null && configFile.get("version") == null) {
             throw new VersionException("The syntax version field of the pricing must not be null or undefined. Please ensure that the version field is present and correctly formatted");
         }
@@ -36,13 +58,60 @@ public class YamlUpdater {
 
         if (versionField instanceof Double || versionField instanceof String) {
             Version version = Version.version(versionField);
-            if (updaters.get(version) == null) {
-                return;
-            }
-
-            updaters.get(Version.V2_0).update(configFile);
+            return updaters.stream().anyMatch(updater -> updater.getSource() == version);
         }else{
             throw new PricingParsingException("The syntax version field of the pricing must be a string or a double. Please ensure that the version field is present and correctly formatted");
         }
     }
+
+    /**
+     * Applies the given migrations in a single traversal of the pricing.
+     *
+     * @param pending    the migrations to apply, in version order
+     * @param configFile the pricing, which is modified in place
+     */
+    static void apply(List<VersionUpdater> pending, Map<String, Object> configFile) throws UpdateException {
+
+        for (VersionUpdater updater : pending) {
+            updater.updateRoot(configFile);
+        }
+
+        for (String container : CONTAINERS) {
+            if (!(configFile.get(container) instanceof Map)) {
+                continue;
+            }
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) configFile.get(container)).entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                for (VersionUpdater updater : pending) {
+                    updater.updateNode(container, name, entry.getValue(), configFile);
+                }
+            }
+        }
+
+        for (VersionUpdater updater : pending) {
+            updater.completeRoot(configFile);
+        }
+    }
+
+    private static List<VersionUpdater> pendingUpdaters(Map<String, Object> configFile) throws UpdateException {
+
+        Version version;
+        try {
+            version = Version.version(configFile.get("version"));
+        } catch (VersionException e) {
+            throw new UpdateException(e.getMessage(), configFile);
+        }
+
+        // The last migration is always applied, as it sets the syntax version
+        List<VersionUpdater> pending = new ArrayList<>();
+        for (int i = 0; i < updaters.size(); i++) {
+            VersionUpdater updater = updaters.get(i);
+            if (version.compare(updater.getTarget()) < 0 || i == updaters.size() - 1) {
+                pending.add(updater);
+            }
+        }
+
+        return pending;
+    }
 }
@@ -0,0 +1,76 @@
+package io.github.isagroup.services.usage;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UsageCounterStore} that keeps the counters in memory.
+ * 
+ * Counters are spread over the bins of a {@link ConcurrentHashMap}, so
+ * different keys never contend, and each one is updated with a compare-and-set
+ * loop that checks the limit and increments in a single atomic step.
+ */
+public class InMemoryUsageCounterStore implements UsageCounterStore {
+
+    private final ConcurrentMap<UsageCounterKey, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public long getUsage(UsageCounterKey key) {
+        AtomicLong counter = counters.get(key);
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Override
+    public void initialize(UsageCounterKey key, long usage) {
+        counters.computeIfAbsent(key, k -> new AtomicLong(usage));
+    }
+
+    @Override
+    public Optional<UsageReservation> reserve(UsageCounterKey key, long amount, long limit) {
+
+        if (amount < 0) {
+            throw new IllegalArgumentException("The amount to reserve must not be negative");
+        }
+
+        AtomicLong counter = counters.computeIfAbsent(key, k -> new AtomicLong());
+
+        while (true) {
+            long current = counter.get();
+            long updated = current + amount;
+
+            if (updated > limit) {
+                return Optional.empty();
+            }
+
+            if (counter.compareAndSet(current, updated)) {
+                return Optional.of(new UsageReservation(key, amount));
+            }
+        }
+    }
+
+    @Override
+    public void commit(UsageReservation reservation) {
+        reservation.complete();
+    }
+
+    @Override
+    public void release(UsageReservation reservation) {
+
+        if (!reservation.complete()) {
+            return;
+        }
+
+        AtomicLong counter = counters.get(reservation.getKey());
+
+        if (counter != null) {
+            counter.updateAndGet(usage -> Math.max(0, usage - reservation.getAmount()));
+        }
+    }
+
+    @Override
+    public void reset(UsageCounterKey key) {
+        counters.remove(key);
+    }
+}
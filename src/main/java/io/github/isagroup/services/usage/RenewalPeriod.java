@@ -0,0 +1,140 @@
+package io.github.isagroup.services.usage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Period after which a renewable usage counter starts again. Windows are
+ * aligned to UTC: days start at midnight, weeks on Monday, months on the first
+ * day of the month and years on January 1st.
+ */
+public enum RenewalPeriod {
+    SECOND, MINUTE, HOUR, DAY, WEEK, MONTH, YEAR;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // 1970-01-01 was a Thursday, so weeks starting on Monday are shifted 3 days
+    private static final long EPOCH_WEEK_OFFSET_DAYS = 3;
+
+    /**
+     * Extracts the renewal period from the unit of a usage limit, e.g.
+     * {@code call/month}, {@code email/day} or {@code call/minute}. Only the last
+     * segment of the unit is considered.
+     *
+     * @param unit the unit of a usage limit
+     * @return the period named by the unit, if any
+     */
+    public static Optional<RenewalPeriod> fromUnit(String unit) {
+
+        if (unit == null || !unit.contains("/")) {
+            return Optional.empty();
+        }
+
+        String period = unit.substring(unit.lastIndexOf('/') + 1).trim().toLowerCase(Locale.ROOT);
+
+        switch (period) {
+            case "s": case "sec": case "second": case "seconds":
+                return Optional.of(SECOND);
+            case "min": case "minute": case "minutes":
+                return Optional.of(MINUTE);
+            case "h": case "hour": case "hours":
+                return Optional.of(HOUR);
+            case "day": case "days": case "daily":
+                return Optional.of(DAY);
+            case "week": case "weeks": case "weekly":
+                return Optional.of(WEEK);
+            case "month": case "months": case "monthly":
+                return Optional.of(MONTH);
+            case "year": case "years": case "yearly": case "annual":
+                return Optional.of(YEAR);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the nominal length of the period. Months are considered to last 30
+     * days and years 365 days.
+     *
+     * @return the length of the period
+     */
+    public Duration getNominalDuration() {
+        switch (this) {
+            case SECOND:
+                return Duration.ofSeconds(1);
+            case MINUTE:
+                return Duration.ofMinutes(1);
+            case HOUR:
+                return Duration.ofHours(1);
+            case DAY:
+                return Duration.ofDays(1);
+            case WEEK:
+                return Duration.ofDays(7);
+            case MONTH:
+                return Duration.ofDays(30);
+            default:
+                return Duration.ofDays(365);
+        }
+    }
+
+    /**
+     * Returns the index of the window that contains the given instant. Indexes of
+     * consecutive windows are consecutive numbers.
+     *
+     * @param epochMillis milliseconds since the epoch
+     * @return the window index
+     */
+    public long windowIndex(long epochMillis) {
+        switch (this) {
+            case SECOND:
+                return Math.floorDiv(epochMillis, MILLIS_PER_SECOND);
+            case MINUTE:
+                return Math.floorDiv(epochMillis, MILLIS_PER_MINUTE);
+            case HOUR:
+                return Math.floorDiv(epochMillis, MILLIS_PER_HOUR);
+            case DAY:
+                return Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+            case WEEK:
+                return Math.floorDiv(Math.floorDiv(epochMillis, MILLIS_PER_DAY) + EPOCH_WEEK_OFFSET_DAYS, 7);
+            case MONTH: {
+                LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+                return date.getYear() * 12L + date.getMonthValue() - 1;
+            }
+            default: {
+                LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+                return date.getYear();
+            }
+        }
+    }
+
+    /**
+     * Returns the first instant of a window.
+     *
+     * @param windowIndex index returned by {@link #windowIndex(long)}
+     * @return milliseconds since the epoch
+     */
+    public long windowStart(long windowIndex) {
+        switch (this) {
+            case SECOND:
+                return windowIndex * MILLIS_PER_SECOND;
+            case MINUTE:
+                return windowIndex * MILLIS_PER_MINUTE;
+            case HOUR:
+                return windowIndex * MILLIS_PER_HOUR;
+            case DAY:
+                return windowIndex * MILLIS_PER_DAY;
+            case WEEK:
+                return (windowIndex * 7 - EPOCH_WEEK_OFFSET_DAYS) * MILLIS_PER_DAY;
+            case MONTH:
+                return LocalDate.of((int) Math.floorDiv(windowIndex, 12), (int) Math.floorMod(windowIndex, 12) + 1, 1)
+                        .toEpochDay() * MILLIS_PER_DAY;
+            default:
+                return LocalDate.of((int) windowIndex, 1, 1).toEpochDay() * MILLIS_PER_DAY;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.isagroup.services.usage;
+
+/**
+ * How renewable usage is accounted within a {@link RenewalPeriod}.
+ */
+public enum RenewalWindow {
+    /**
+     * The counter starts again from 0 at the beginning of each period.
+     */
+    FIXED,
+    /**
+     * The usage is measured over the last period length. It is approximated by
+     * weighting the usage of the previous window by the fraction of it that
+     * still overlaps the sliding window.
+     */
+    SLIDING
+}
@@ -0,0 +1,307 @@
+package io.github.isagroup.services.usage;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.models.UsageLimitType;
+
+/**
+ * Counter engine for usage limits that renew periodically
+ * ({@link UsageLimitType#RENEWABLE} and {@link UsageLimitType#TIME_DRIVEN}).
+ * 
+ * Each user owns a single {@link AtomicLongArray} with one slot per tracked
+ * usage limit (two with {@link RenewalWindow#SLIDING} windows). A slot packs the
+ * window it belongs to and the usage consumed in it into one {@code long}, so
+ * increments are a single compare-and-set and windows roll over lazily: a slot
+ * whose window is not the current one is read as 0 and overwritten by the next
+ * increment. No background task is needed.
+ * 
+ * The window is stored modulo 2^27 windows and the usage per window is capped
+ * at 2^36 - 1.
+ */
+public class RenewalWindowCounters {
+
+    private static final int COUNT_BITS = 36;
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+    // 27 bits for the window keep the packed value positive; 0 means unused
+    private static final long WINDOW_TAGS = (1L << 27) - 1;
+
+    private final Map<String, Integer> ordinals;
+    private final RenewalPeriod[] periods;
+    private final RenewalWindow window;
+    private final int slotsPerLimit;
+    private final Clock clock;
+
+    private final ConcurrentMap<String, AtomicLongArray> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the engine for a fixed set of usage limits.
+     * 
+     * @param usageLimitPeriods renewal period of each tracked usage limit
+     * @param window            how the usage is accounted within the period
+     * @param clock             clock used to determine the current window
+     */
+    public RenewalWindowCounters(Map<String, RenewalPeriod> usageLimitPeriods, RenewalWindow window, Clock clock) {
+        this.ordinals = new LinkedHashMap<>();
+        this.periods = new RenewalPeriod[usageLimitPeriods.size()];
+        this.window = window;
+        this.slotsPerLimit = window == RenewalWindow.SLIDING ? 2 : 1;
+        this.clock = clock;
+
+        int ordinal = 0;
+        for (Map.Entry<String, RenewalPeriod> entry : usageLimitPeriods.entrySet()) {
+            ordinals.put(entry.getKey(), ordinal);
+            periods[ordinal] = entry.getValue();
+            ordinal++;
+        }
+    }
+
+    /**
+     * Creates the engine for the renewable and time driven limits among the given
+     * ones. The period of each limit is taken from its unit; limits whose unit
+     * does not name a period renew monthly.
+     * 
+     * @param usageLimits usage limits of a pricing
+     * @param window      how the usage is accounted within the period
+     * @param clock       clock used to determine the current window
+     * @return the engine
+     */
+    public static RenewalWindowCounters forUsageLimits(Collection<UsageLimit> usageLimits, RenewalWindow window,
+            Clock clock) {
+
+        Map<String, RenewalPeriod> usageLimitPeriods = new LinkedHashMap<>();
+
+        for (UsageLimit usageLimit : usageLimits) {
+            if (usageLimit.getType() == UsageLimitType.RENEWABLE || usageLimit.getType() == UsageLimitType.TIME_DRIVEN) {
+                usageLimitPeriods.put(usageLimit.getName(),
+                        RenewalPeriod.fromUnit(usageLimit.getUnit()).orElse(RenewalPeriod.MONTH));
+            }
+        }
+
+        return new RenewalWindowCounters(usageLimitPeriods, window, clock);
+    }
+
+    public boolean isTracked(String usageLimit) {
+        return ordinals.containsKey(usageLimit);
+    }
+
+    public RenewalPeriod getPeriod(String usageLimit) {
+        return periods[ordinal(usageLimit)];
+    }
+
+    public RenewalWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the usage of a user in the current window.
+     * 
+     * @param user       the user
+     * @param usageLimit a tracked usage limit
+     * @return the usage
+     */
+    public long getUsage(String user, String usageLimit) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = counters.get(user);
+
+        if (userCounters == null) {
+            return 0;
+        }
+
+        long now = clock.millis();
+        long windowIndex = periods[ordinal].windowIndex(now);
+
+        return countIn(userCounters.get(slot(ordinal, windowIndex)), windowIndex)
+                + previousWindowUsage(userCounters, ordinal, windowIndex, now);
+    }
+
+    /**
+     * Adds usage to the current window if the result does not exceed the limit.
+     * 
+     * @param user       the user
+     * @param usageLimit a tracked usage limit
+     * @param amount     usage to add
+     * @param limit      maximum usage in the window
+     * @return the index of the window the usage was added to, or an empty
+     *         optional if the limit would be exceeded
+     */
+    public OptionalLong tryAdd(String user, String usageLimit, long amount, long limit) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = userCounters(user);
+
+        long now = clock.millis();
+        long windowIndex = periods[ordinal].windowIndex(now);
+        long previousUsage = previousWindowUsage(userCounters, ordinal, windowIndex, now);
+        int slot = slot(ordinal, windowIndex);
+
+        while (true) {
+            long state = userCounters.get(slot);
+            long current = countIn(state, windowIndex);
+
+            if (current + previousUsage + amount > limit) {
+                return OptionalLong.empty();
+            }
+
+            if (userCounters.compareAndSet(slot, state, pack(windowIndex, current + amount))) {
+                return OptionalLong.of(windowIndex);
+            }
+        }
+    }
+
+    /**
+     * Adds usage to the current window without checking any limit.
+     * 
+     * @param user       the user
+     * @param usageLimit a tracked usage limit
+     * @param amount     usage to add
+     * @return the usage of the current window after the addition
+     */
+    public long add(String user, String usageLimit, long amount) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = userCounters(user);
+
+        long windowIndex = periods[ordinal].windowIndex(clock.millis());
+        int slot = slot(ordinal, windowIndex);
+
+        while (true) {
+            long state = userCounters.get(slot);
+            long updated = countIn(state, windowIndex) + amount;
+
+            if (userCounters.compareAndSet(slot, state, pack(windowIndex, updated))) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Removes usage previously added to a window. Nothing is done if that window
+     * has already been renewed.
+     * 
+     * @param user        the user
+     * @param usageLimit  a tracked usage limit
+     * @param amount      usage to remove
+     * @param windowIndex window returned by {@link #tryAdd}
+     */
+    public void subtract(String user, String usageLimit, long amount, long windowIndex) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = counters.get(user);
+
+        if (userCounters == null) {
+            return;
+        }
+
+        int slot = slot(ordinal, windowIndex);
+
+        while (true) {
+            long state = userCounters.get(slot);
+
+            if (!inWindow(state, windowIndex)) {
+                return;
+            }
+
+            if (userCounters.compareAndSet(slot, state, pack(windowIndex, Math.max(0, countIn(state, windowIndex) - amount)))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the usage of the current window if nothing has been consumed in it yet.
+     * 
+     * @param user       the user
+     * @param usageLimit a tracked usage limit
+     * @param usage      usage already consumed in the current window
+     */
+    public void initialize(String user, String usageLimit, long usage) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = userCounters(user);
+
+        long windowIndex = periods[ordinal].windowIndex(clock.millis());
+        int slot = slot(ordinal, windowIndex);
+        long state = userCounters.get(slot);
+
+        if (!inWindow(state, windowIndex)) {
+            userCounters.compareAndSet(slot, state, pack(windowIndex, usage));
+        }
+    }
+
+    /**
+     * Discards the usage of a user for a usage limit.
+     * 
+     * @param user       the user
+     * @param usageLimit a tracked usage limit
+     */
+    public void reset(String user, String usageLimit) {
+        int ordinal = ordinal(usageLimit);
+        AtomicLongArray userCounters = counters.get(user);
+
+        if (userCounters == null) {
+            return;
+        }
+
+        for (int i = 0; i < slotsPerLimit; i++) {
+            userCounters.set(ordinal * slotsPerLimit + i, 0);
+        }
+    }
+
+    private long previousWindowUsage(AtomicLongArray userCounters, int ordinal, long windowIndex, long now) {
+
+        if (window != RenewalWindow.SLIDING) {
+            return 0;
+        }
+
+        long previous = countIn(userCounters.get(slot(ordinal, windowIndex - 1)), windowIndex - 1);
+
+        if (previous == 0) {
+            return 0;
+        }
+
+        RenewalPeriod period = periods[ordinal];
+        long start = period.windowStart(windowIndex);
+        long length = period.windowStart(windowIndex + 1) - start;
+        double remaining = 1.0 - (double) (now - start) / length;
+
+        return (long) Math.ceil(previous * remaining);
+    }
+
+    private AtomicLongArray userCounters(String user) {
+        return counters.computeIfAbsent(user, u -> new AtomicLongArray(periods.length * slotsPerLimit));
+    }
+
+    private int ordinal(String usageLimit) {
+        Integer ordinal = ordinals.get(usageLimit);
+
+        if (ordinal == null) {
+            throw new IllegalArgumentException("The usage limit " + usageLimit + " is not renewable");
+        }
+
+        return ordinal;
+    }
+
+    private int slot(int ordinal, long windowIndex) {
+        return ordinal * slotsPerLimit + (int) Math.floorMod(windowIndex, slotsPerLimit);
+    }
+
+    private static long tag(long windowIndex) {
+        return Math.floorMod(windowIndex, WINDOW_TAGS) + 1;
+    }
+
+    private static long pack(long windowIndex, long count) {
+        return (tag(windowIndex) << COUNT_BITS) | Math.min(count, MAX_COUNT);
+    }
+
+    private static boolean inWindow(long state, long windowIndex) {
+        return state != 0 && (state >>> COUNT_BITS) == tag(windowIndex);
+    }
+
+    private static long countIn(long state, long windowIndex) {
+        return inWindow(state, windowIndex) ? state & MAX_COUNT : 0;
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.isagroup.services.usage;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Identifies the usage counter of a user for a given usage limit.
+ */
+@Getter
+@EqualsAndHashCode
+public class UsageCounterKey {
+
+    private final String user;
+    private final String usageLimit;
+
+    public UsageCounterKey(String user, String usageLimit) {
+        this.user = user;
+        this.usageLimit = usageLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "UsageCounterKey[user: " + user + ", usageLimit: " + usageLimit + "]";
+    }
+}
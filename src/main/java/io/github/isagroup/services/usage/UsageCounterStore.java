@@ -0,0 +1,67 @@
+package io.github.isagroup.services.usage;
+
+import java.util.Optional;
+
+/**
+ * Storage of the usage consumed by each user for each usage limit.
+ * 
+ * Implementations must make {@link #reserve} an atomic check-and-increment, so
+ * concurrent requests cannot exceed a limit. Register an implementation as a
+ * bean to let {@code PricingPlanAwareAspect} enforce usage limits with it;
+ * {@link InMemoryUsageCounterStore} is provided for single-instance
+ * deployments, distributed deployments should implement this interface over
+ * their shared store.
+ */
+public interface UsageCounterStore {
+
+    /**
+     * Returns the usage of a counter, including the units of pending
+     * reservations.
+     * 
+     * @param key the counter
+     * @return the current usage, 0 if the counter does not exist
+     */
+    long getUsage(UsageCounterKey key);
+
+    /**
+     * Sets the usage of a counter only if it does not exist yet. It is used to
+     * seed the counter with the usage reported by the application.
+     * 
+     * @param key   the counter
+     * @param usage the initial usage
+     */
+    void initialize(UsageCounterKey key, long usage);
+
+    /**
+     * Atomically adds {@code amount} to the counter if the result does not exceed
+     * {@code limit}.
+     * 
+     * @param key    the counter
+     * @param amount units to reserve
+     * @param limit  maximum usage allowed for the counter
+     * @return the reservation, or an empty optional if the limit would be
+     *         exceeded
+     */
+    Optional<UsageReservation> reserve(UsageCounterKey key, long amount, long limit);
+
+    /**
+     * Confirms a reservation, so its units remain in the counter.
+     * 
+     * @param reservation a reservation returned by {@link #reserve}
+     */
+    void commit(UsageReservation reservation);
+
+    /**
+     * Cancels a reservation, removing its units from the counter.
+     * 
+     * @param reservation a reservation returned by {@link #reserve}
+     */
+    void release(UsageReservation reservation);
+
+    /**
+     * Removes the counter, so its usage starts again from 0.
+     * 
+     * @param key the counter
+     */
+    void reset(UsageCounterKey key);
+}
@@ -0,0 +1,144 @@
+package io.github.isagroup.services.usage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.Feature;
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.models.UsageLimit;
+import io.github.isagroup.models.UsageLimitType;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+
+/**
+ * Reserves usage in a {@link UsageCounterStore} for the usage limits linked to a
+ * feature, using the limit of the user's plan.
+ * 
+ * Only {@link UsageLimitType#NON_RENEWABLE}, {@link UsageLimitType#RENEWABLE}
+ * and {@link UsageLimitType#TIME_DRIVEN} limits with a numeric value are
+ * enforced. Renewable and time driven limits are renewed at the end of each
+ * period when the store is a {@link WindowedUsageCounterStore}.
+ * Counters are seeded with the value the user context reports for the feature,
+ * after that the store is the source of truth.
+ */
+public class UsageLimitEnforcer {
+
+    private final UsageCounterStore usageCounterStore;
+
+    private Predicate<UsageLimit> excludedUsageLimits = usageLimit -> false;
+
+    public UsageLimitEnforcer(UsageCounterStore usageCounterStore) {
+        this.usageCounterStore = usageCounterStore;
+    }
+
+    public UsageCounterStore getUsageCounterStore() {
+        return usageCounterStore;
+    }
+
+    /**
+     * Excludes usage limits that are enforced elsewhere, e.g. by a rate limiter.
+     * 
+     * @param excludedUsageLimits matches the usage limits that are not reserved
+     */
+    public void setExcludedUsageLimits(Predicate<UsageLimit> excludedUsageLimits) {
+        this.excludedUsageLimits = excludedUsageLimits;
+    }
+
+    /**
+     * Reserves one unit of every enforced usage limit linked to the feature.
+     * 
+     * @param featureName       the feature that is going to be used
+     * @param evaluationContext the evaluation context of the user
+     * @return the reservations, or an empty optional if any limit has been
+     *         reached. In that case no unit remains reserved.
+     * @throws PricingPlanEvaluationException if an enforced usage limit is
+     *                                        linked to the feature and the user
+     *                                        context does not identify the user
+     */
+    public Optional<List<UsageReservation>> reserve(String featureName, PricingEvaluationContext evaluationContext) {
+
+        EffectiveConfiguration configuration = evaluationContext.getEffectiveConfiguration();
+        PricingIndex index = configuration.getIndex();
+        int featureOrdinal = index.featureOrdinal(featureName);
+        List<UsageReservation> reservations = new ArrayList<>();
+
+        if (featureOrdinal < 0) {
+            return Optional.of(reservations);
+        }
+
+        Feature feature = index.getFeature(featureOrdinal);
+
+        for (int usageLimitOrdinal : index.linkedUsageLimits(featureOrdinal)) {
+
+            UsageLimit usageLimit = index.getUsageLimit(usageLimitOrdinal);
+
+            if (!isEnforced(usageLimit) || excludedUsageLimits.test(usageLimit)) {
+                continue;
+            }
+
+            if (!configuration.hasNumericUsageLimit(usageLimitOrdinal)) {
+                continue;
+            }
+
+            UsageCounterKey key = new UsageCounterKey(evaluationContext.getRequiredSubject(), usageLimit.getName());
+            usageCounterStore.initialize(key, reportedUsage(feature, evaluationContext));
+
+            Optional<UsageReservation> reservation = reserve(key, usageLimit,
+                    configuration.getUsageLimitAsLong(usageLimitOrdinal));
+
+            if (reservation.isEmpty()) {
+                release(reservations);
+                return Optional.empty();
+            }
+
+            reservations.add(reservation.get());
+        }
+
+        return Optional.of(reservations);
+    }
+
+    public void commit(List<UsageReservation> reservations) {
+        for (UsageReservation reservation : reservations) {
+            usageCounterStore.commit(reservation);
+        }
+    }
+
+    public void release(List<UsageReservation> reservations) {
+        for (UsageReservation reservation : reservations) {
+            usageCounterStore.release(reservation);
+        }
+    }
+
+    protected Optional<UsageReservation> reserve(UsageCounterKey key, UsageLimit usageLimit, long limit) {
+        return usageCounterStore.reserve(key, 1, limit);
+    }
+
+    protected boolean isEnforced(UsageLimit usageLimit) {
+        return usageLimit.getType() == UsageLimitType.NON_RENEWABLE || usageLimit.getType() == UsageLimitType.RENEWABLE
+                || usageLimit.getType() == UsageLimitType.TIME_DRIVEN;
+    }
+
+    private long reportedUsage(Feature feature, PricingEvaluationContext evaluationContext) {
+
+        String expression = feature.getServerExpression() != null ? feature.getServerExpression()
+                : feature.getExpression();
+
+        if (expression == null || evaluationContext.getUserContext() == null) {
+            return 0;
+        }
+
+        Optional<String> userContextKey = FeatureStatus.computeUserContextVariable(expression);
+
+        if (userContextKey.isEmpty()) {
+            return 0;
+        }
+
+        Object usage = evaluationContext.getUserContext().get(userContextKey.get());
+
+        return usage instanceof Number ? ((Number) usage).longValue() : 0;
+    }
+}
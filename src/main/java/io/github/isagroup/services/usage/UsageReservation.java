@@ -0,0 +1,39 @@
+package io.github.isagroup.services.usage;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.Getter;
+
+/**
+ * Units of usage that have been provisionally added to a counter by
+ * {@link UsageCounterStore#reserve}. A reservation must end either committed or
+ * released; once it has ended, further calls have no effect.
+ */
+@Getter
+public class UsageReservation {
+
+    private final UsageCounterKey key;
+    private final long amount;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    public UsageReservation(UsageCounterKey key, long amount) {
+        this.key = key;
+        this.amount = amount;
+    }
+
+    /**
+     * Marks the reservation as ended.
+     * 
+     * @return true if this call ended the reservation, false if it had already
+     *         been committed or released
+     */
+    public boolean complete() {
+        return completed.compareAndSet(false, true);
+    }
+
+    public boolean isCompleted() {
+        return completed.get();
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.isagroup.services.usage;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import io.github.isagroup.models.UsageLimit;
+
+/**
+ * {@link UsageCounterStore} whose renewable and time driven counters are
+ * renewed automatically at the end of each period, using a
+ * {@link RenewalWindowCounters} engine. Counters of any other usage limit are
+ * kept in a delegate store.
+ * 
+ * The engine is built for the usage limits of one pricing, so a new store
+ * should be created when the pricing changes.
+ */
+public class WindowedUsageCounterStore implements UsageCounterStore {
+
+    private final RenewalWindowCounters windowCounters;
+    private final UsageCounterStore delegate;
+
+    public WindowedUsageCounterStore(RenewalWindowCounters windowCounters, UsageCounterStore delegate) {
+        this.windowCounters = windowCounters;
+        this.delegate = delegate;
+    }
+
+    public WindowedUsageCounterStore(Collection<UsageLimit> usageLimits, RenewalWindow window) {
+        this(RenewalWindowCounters.forUsageLimits(usageLimits, window, Clock.systemUTC()),
+                new InMemoryUsageCounterStore());
+    }
+
+    public RenewalWindowCounters getWindowCounters() {
+        return windowCounters;
+    }
+
+    @Override
+    public long getUsage(UsageCounterKey key) {
+        if (!windowCounters.isTracked(key.getUsageLimit())) {
+            return delegate.getUsage(key);
+        }
+        return windowCounters.getUsage(key.getUser(), key.getUsageLimit());
+    }
+
+    @Override
+    public void initialize(UsageCounterKey key, long usage) {
+        if (!windowCounters.isTracked(key.getUsageLimit())) {
+            delegate.initialize(key, usage);
+            return;
+        }
+        windowCounters.initialize(key.getUser(), key.getUsageLimit(), usage);
+    }
+
+    @Override
+    public Optional<UsageReservation> reserve(UsageCounterKey key, long amount, long limit) {
+
+        if (!windowCounters.isTracked(key.getUsageLimit())) {
+            return delegate.reserve(key, amount, limit);
+        }
+
+        if (amount < 0) {
+            throw new IllegalArgumentException("The amount to reserve must not be negative");
+        }
+
+        OptionalLong windowIndex = windowCounters.tryAdd(key.getUser(), key.getUsageLimit(), amount, limit);
+
+        if (windowIndex.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new WindowedUsageReservation(key, amount, windowIndex.getAsLong()));
+    }
+
+    @Override
+    public void commit(UsageReservation reservation) {
+        if (!(reservation instanceof WindowedUsageReservation)) {
+            delegate.commit(reservation);
+            return;
+        }
+        reservation.complete();
+    }
+
+    @Override
+    public void release(UsageReservation reservation) {
+
+        if (!(reservation instanceof WindowedUsageReservation windowedReservation)) {
+            delegate.release(reservation);
+            return;
+        }
+
+        if (windowedReservation.complete()) {
+            windowCounters.subtract(reservation.getKey().getUser(), reservation.getKey().getUsageLimit(),
+                    reservation.getAmount(), windowedReservation.getWindowIndex());
+        }
+    }
+
+    @Override
+    public void reset(UsageCounterKey key) {
+        if (!windowCounters.isTracked(key.getUsageLimit())) {
+            delegate.reset(key);
+            return;
+        }
+        windowCounters.reset(key.getUser(), key.getUsageLimit());
+    }
+
+    /**
+     * Reservation that remembers the window it was made in, so releasing it after
+     * the window has been renewed does not affect the new one.
+     */
+    public static class WindowedUsageReservation extends UsageReservation {
+
+        private final long windowIndex;
+
+        public WindowedUsageReservation(UsageCounterKey key, long amount, long windowIndex) {
+            super(key, amount);
+            this.windowIndex = windowIndex;
+        }
+
+        public long getWindowIndex() {
+            return windowIndex;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
 
+import io.github.isagroup.services.updaters.MigrationCache;
 import io.github.isagroup.services.updaters.YamlUpdater;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
@@ -41,24 +42,92 @@ public class YamlUtils {
      */
 
     public static PricingManager retrieveManagerFromYaml(String receivedYamlPath) {
-        Yaml yaml = new Yaml();
-        try {
-
-            String yamlPath = getYamlPath(receivedYamlPath);
-
-            String result = new String(Files.readAllBytes(Paths.get(yamlPath)));
-            Map<String, Object> configFile = yaml.load(result);
-            YamlUpdater.update(configFile);
-            return PricingManagerParser.parseMapToPricingManager(configFile);
+        return parseManagerFromYaml(readYamlContent(receivedYamlPath));
+    }
 
+    /**
+     * Reads the raw content of the YAML file located in {@code receivedYamlPath}.
+     *
+     * @param receivedYamlPath Path of the YAML file, relative to the resources
+     *                         folder
+     * @return the bytes of the file
+     */
+    public static byte[] readYamlContent(String receivedYamlPath) {
+        try {
+            return Files.readAllBytes(Paths.get(getYamlPath(receivedYamlPath)));
         } catch (IOException e) {
             throw new FilepathException("Either the file path is invalid or the file does not exist.");
+        }
+    }
+
+    /**
+     * Maps the content of a pricing YAML file into a {@link PricingManager}
+     * object, updating it to the latest syntax version first. Updated pricings
+     * are kept in the {@link MigrationCache}, so the same content is only
+     * updated once.
+     *
+     * @param content the bytes of the YAML file
+     * @return PricingManager object that represents the content, or null if it
+     *         could not be updated
+     */
+    public static PricingManager parseManagerFromYaml(byte[] content) {
+        try {
+            return PricingManagerParser.parseMapToPricingManager(loadUpdatedYaml(content));
         } catch (UpdateException e) {
             auxWriteYaml(e.getConfigFile());
         }
         return null;
     }
 
+    /**
+     * Rewrites the YAML file located in {@code receivedYamlPath} in the latest
+     * syntax version, if it was written in a previous one.
+     *
+     * @param receivedYamlPath Path of the YAML file, relative to the resources
+     *                         folder
+     * @return true if the file was rewritten
+     * @throws UpdateException if the file could not be updated
+     */
+    public static boolean upgradeYaml(String receivedYamlPath) throws UpdateException {
+
+        byte[] content = readYamlContent(receivedYamlPath);
+        Map<String, Object> configFile = new Yaml().load(new String(content));
+
+        if (!YamlUpdater.needsUpdate(configFile)) {
+            return false;
+        }
+
+        configFile = loadUpdatedYaml(content);
+
+        DumperOptions dump = new DumperOptions();
+        dump.setIndent(2);
+        dump.setPrettyFlow(true);
+        dump.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+
+        try (FileWriter writer = new FileWriter(getYamlPath(receivedYamlPath))) {
+            new Yaml(new SkipNullRepresenter(), dump).dump(configFile, writer);
+        } catch (IOException e) {
+            throw new FilepathException("Either the file path is invalid or the file does not exist.");
+        }
+
+        return true;
+    }
+
+    private static Map<String, Object> loadUpdatedYaml(byte[] content) throws UpdateException {
+
+        Map<String, Object> configFile = MigrationCache.getInstance().get(content);
+
+        if (configFile == null) {
+            configFile = new Yaml().load(new String(content));
+            if (YamlUpdater.needsUpdate(configFile)) {
+                YamlUpdater.update(configFile);
+                MigrationCache.getInstance().put(content, configFile);
+            }
+        }
+
+        return configFile;
+    }
+
     /**
      * Writes a {@link PricingManager} object into a YAML file.
      *
@@ -0,0 +1,130 @@
+package io.github.isagroup.utils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Summary of a batch migration of pricing files, with the outcome and the
+ * elapsed time of every file in the order they were found.
+ *
+ * @see VersionTransformer#migrate(java.io.File, java.io.File,
+ *      io.github.isagroup.services.updaters.Version, int)
+ */
+public class MigrationReport {
+
+    private final List<FileResult> results;
+    private final Duration elapsed;
+
+    MigrationReport(List<FileResult> results, Duration elapsed) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsed = elapsed;
+    }
+
+    public List<FileResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the wall-clock time of the whole migration
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    public List<FileResult> getFailures() {
+        List<FileResult> failures = new ArrayList<>();
+        for (FileResult result : results) {
+            if (!result.isSuccessful()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    public int getMigratedCount() {
+        return results.size() - getFailures().size();
+    }
+
+    /**
+     * @return a human readable summary, listing the failures and the slowest
+     *         files
+     */
+    public String summary() {
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Migrated %d of %d files in %d ms%n", getMigratedCount(), results.size(),
+                elapsed.toMillis()));
+
+        List<FileResult> failures = getFailures();
+        if (!failures.isEmpty()) {
+            summary.append(String.format("%nFailures:%n"));
+            for (FileResult failure : failures) {
+                summary.append(String.format("  %s: %s%n", failure.getSource(), failure.getError()));
+            }
+        }
+
+        List<FileResult> slowest = new ArrayList<>(results);
+        slowest.sort(Comparator.comparing(FileResult::getElapsed).reversed());
+        if (!slowest.isEmpty()) {
+            summary.append(String.format("%nSlowest files:%n"));
+            for (FileResult result : slowest.subList(0, Math.min(5, slowest.size()))) {
+                summary.append(String.format("  %s: %d ms%n", result.getSource(), result.getElapsed().toMillis()));
+            }
+        }
+
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    /**
+     * Outcome of the migration of a single file.
+     */
+    public static class FileResult {
+
+        private final Path source;
+        private final Path destination;
+        private final Duration elapsed;
+        private final String error;
+
+        FileResult(Path source, Path destination, Duration elapsed, String error) {
+            this.source = source;
+            this.destination = destination;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        /**
+         * @return the written file, or null if the migration failed
+         */
+        public Path getDestination() {
+            return destination;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return the reason of the failure, or null if the file was migrated
+         */
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+}
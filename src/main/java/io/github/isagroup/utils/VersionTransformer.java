@@ -1,14 +1,24 @@
 package io.github.isagroup.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.yaml.snakeyaml.DumperOptions;
@@ -26,30 +36,20 @@ import io.github.isagroup.services.yaml.SkipNullRepresenter;
 
 public class VersionTransformer {
 
-    private final Yaml yaml;
-    private final PricingManagerSerializer serializer;
-
-    public VersionTransformer() {
-
-        DumperOptions options = new DumperOptions();
-        options.setIndent(2);
-        options.setPrettyFlow(true);
-        options.setDefaultFlowStyle(FlowStyle.BLOCK);
-        this.yaml = new Yaml(new SkipNullRepresenter(), options);
-        this.serializer = new PricingManagerSerializer();
-    }
+    // Yaml instances are not thread-safe
+    private final ThreadLocal<Yaml> yaml = ThreadLocal.withInitial(VersionTransformer::createYaml);
 
     public static void main(String[] args) {
 
-        if (args.length != 3) {
-            System.out.println("[ERROR] Expected 3 arguments but 2 were given");
+        if (args.length != 3 && args.length != 4) {
+            System.out.println("[ERROR] Expected 3 or 4 arguments but " + args.length + " were given");
             System.out.println("""
                     Yaml4SaaSUpdater
                     Description:
                     Utility that updates Yaml4SaaS pricings to the given version
                     of the specification
                     Usage:
-                    <source_folder_path> <destination_folder_path> <version>
+                    <source_folder_path> <destination_folder_path> <version> [<threads>]
 
                     Supported version are:
                     1.1
@@ -57,6 +57,7 @@ public class VersionTransformer {
                     Examples:
 
                     ./pricings ./pricing-updated 1.1
+                    ./pricings ./pricing-updated 1.1 8
 
                     """);
             return;
@@ -88,6 +89,20 @@ public class VersionTransformer {
             return;
         }
 
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (args.length == 4) {
+            try {
+                parallelism = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                parallelism = 0;
+            }
+
+            if (parallelism < 1) {
+                System.out.println("[ERROR] <threads>: Expected a positive number but " + args[3] + " was given");
+                return;
+            }
+        }
+
         File sourceDirectory = new File(args[0]);
         File destinationDirectory = new File(args[1]);
 
@@ -120,7 +135,10 @@ public class VersionTransformer {
         VersionTransformer versionTransformer = new VersionTransformer();
 
         try {
-            versionTransformer.processFiles(sourceDirectory, destinationDirectory, version);
+            MigrationReport report = versionTransformer.migrate(sourceDirectory, destinationDirectory, version,
+                    parallelism);
+            System.out.println();
+            System.out.print(report.summary());
             System.out.println();
             System.out.println("DONE!");
             System.out.println("Dumped files in directory " + destinationDirectory.getPath());
@@ -131,37 +149,109 @@ public class VersionTransformer {
 
     }
 
-    private void processFiles(File src, File dst, Version targetVersion) {
+    /**
+     * Migrates every Yaml4SaaS file found under the source directory to the
+     * latest version of the specification. Files are processed concurrently by
+     * a pool of the given size, and each one is parsed once. Every output is
+     * written to a temporary file that is then moved over the destination, so
+     * a destination file is either the previous one or the complete migration.
+     *
+     * @param src           directory with the pricings to migrate
+     * @param dst           directory where the migrated pricings are written,
+     *                      keeping their path relative to {@code src}
+     * @param targetVersion version of the specification to migrate to
+     * @param parallelism   number of files that are migrated at the same time
+     * @return the outcome of every file
+     * @throws IOException if the source directory cannot be walked
+     */
+    public MigrationReport migrate(File src, File dst, Version targetVersion, int parallelism) throws IOException {
+
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+
+        long start = System.nanoTime();
 
+        List<Path> files;
         try (Stream<Path> stream = Files.walk(src.toPath(), FileVisitOption.FOLLOW_LINKS)) {
-            stream.forEach((path) -> {
-                File file = path.toFile();
-                if (file.isFile() && this.hasYamlExtension(file.getName())) {
-                    Map<String, Object> configFile = this.loadYaml4SaaSFile(file);
-                    if (configFile != null) {
-                        try {
-                            YamlUpdater.update(configFile);
-                            PricingManager updatedPricing = PricingManagerParser.parseMapToPricingManager(configFile);
-                            this.writeUpdatedFile(updatedPricing, dst, file.getName());
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-
-                }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+            files = stream.filter(path -> Files.isRegularFile(path) && hasYamlExtension(path.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<MigrationReport.FileResult> results = new ArrayList<>();
+
+        try {
+            List<Future<MigrationReport.FileResult>> futures = new ArrayList<>();
+            for (Path file : files) {
+                Path destination = dst.toPath().resolve(src.toPath().relativize(file));
+                futures.add(executor.submit(() -> migrateFile(file, destination)));
+            }
+
+            for (Future<MigrationReport.FileResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The migration was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unexpected error during the migration", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+
+        return new MigrationReport(results, Duration.ofNanos(System.nanoTime() - start));
     }
 
-    private void writeUpdatedFile(PricingManager pricingManager, File destination, String fileName) {
-        System.out.println("Updating file " + fileName);
+    private MigrationReport.FileResult migrateFile(Path source, Path destination) {
 
-        try (FileWriter fileWriter = new FileWriter(destination + "/" + fileName)) {
-            yaml.dump(this.serializer.serialize(pricingManager), fileWriter);
-        } catch (IOException e) {
-            e.printStackTrace();
+        long start = System.nanoTime();
+
+        try {
+            Map<String, Object> configFile;
+            try (InputStream input = Files.newInputStream(source)) {
+                configFile = yaml.get().load(input);
+            }
+
+            if (configFile == null) {
+                throw new PricingParsingException("The file is empty");
+            }
+
+            YamlUpdater.update(configFile);
+            PricingManager updatedPricing = PricingManagerParser.parseMapToPricingManager(configFile);
+
+            // The serializer keeps its output between calls, so it is not shared
+            Map<String, Object> serializedPricing = new PricingManagerSerializer().serialize(updatedPricing);
+            writeAtomically(serializedPricing, destination);
+
+            return new MigrationReport.FileResult(source, destination, Duration.ofNanos(System.nanoTime() - start),
+                    null);
+        } catch (Exception e) {
+            return new MigrationReport.FileResult(source, null, Duration.ofNanos(System.nanoTime() - start),
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private void writeAtomically(Map<String, Object> serializedPricing, Path destination) throws IOException {
+
+        Files.createDirectories(destination.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(destination.toAbsolutePath().getParent(),
+                destination.getFileName().toString(), ".tmp");
+
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                yaml.get().dump(serializedPricing, writer);
+            }
+
+            try {
+                Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, destination, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
         }
     }
 
@@ -169,21 +259,12 @@ public class VersionTransformer {
         return name.endsWith(".yml") || name.endsWith(".yaml");
     }
 
-    private Map<String, Object> loadYaml4SaaSFile(File file) {
-        try (FileInputStream fileInput = new FileInputStream(file)) {
-            Map<String, Object> configFile = this.yaml.load(fileInput);
-            PricingManagerParser.parseMapToPricingManager(configFile);
-            return configFile;
-
-        } catch (PricingParsingException e) {
-            System.out.println(String.format("file '%s' at path '%s' could not be parsed",
-                    file.getName(), file.getAbsolutePath()));
-            e.printStackTrace();
-            return null;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+    private static Yaml createYaml() {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(2);
+        options.setPrettyFlow(true);
+        options.setDefaultFlowStyle(FlowStyle.BLOCK);
+        return new Yaml(new SkipNullRepresenter(), options);
     }
 
 }
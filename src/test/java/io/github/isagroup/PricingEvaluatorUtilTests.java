@@ -1,11 +1,18 @@
 package io.github.isagroup;
 
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.services.configuration.FeatureStatuses;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.jwt.CompactTokenCodec;
 import io.github.isagroup.services.jwt.PricingJwtUtils;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -91,6 +98,39 @@ public class PricingEvaluatorUtilTests {
 
     }
 
+    @Test
+    void tokenBatchExpressionsTest() {
+
+        String firstToken = pricingEvaluatorUtil.generateUserToken();
+
+        Map<String, String> expressions = new HashMap<>();
+        expressions.put("maxVisitsPerMonthAndPet", JWT_EXPRESSION_TEST);
+        expressions.put("maxPets", "userContext['pets'] < 6");
+        expressions.put("unknownFeature", "true");
+
+        String newToken = pricingEvaluatorUtil.addExpressionsToToken(firstToken, expressions);
+
+        Map<String, Map<String, Object>> features = jwtUtils.getFeaturesFromJwtToken(newToken);
+
+        assertTrue(jwtUtils.validateJwtToken(newToken), "Token is not valid");
+        assertEquals(JWT_SUBJECT_TEST, jwtUtils.getSubjectFromJwtToken(newToken));
+        assertEquals(JWT_EXPRESSION_TEST, features.get("maxVisitsPerMonthAndPet").get("eval"));
+        assertEquals("userContext['pets'] < 6", features.get("maxPets").get("eval"));
+        assertFalse(features.containsKey("unknownFeature"));
+        assertEquals(jwtUtils.getFeaturesFromJwtToken(firstToken).get("haveCalendar"), features.get("haveCalendar"));
+    }
+
+    @Test
+    void asyncTokenGenerationTest() throws Exception {
+
+        String token = pricingEvaluatorUtil.generateUserTokenAsync().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertTrue(jwtUtils.validateJwtToken(token), "Token is not valid");
+        assertEquals(jwtUtils.getFeaturesFromJwtToken(pricingEvaluatorUtil.generateUserToken()),
+                jwtUtils.getFeaturesFromJwtToken(token));
+        assertTrue(jwtUtils.isPricingTokenCurrent(token), "Async token is not current");
+    }
+
     @Test
     void tokenPlanContextTest() {
 
@@ -127,4 +167,106 @@ public class PricingEvaluatorUtilTests {
                 "UserContext havePetsDashboard value is not the same after token codification");
 
     }
+
+    @Test
+    void compactTokenShouldDecodeToSameFeaturesTest() {
+
+        String token = pricingEvaluatorUtil.generateUserToken();
+        String compactToken = pricingEvaluatorUtil.generateCompactUserToken();
+
+        Map<String, Map<String, Object>> features = jwtUtils.getFeaturesFromJwtToken(token);
+        Map<String, FeatureStatus> compactFeatures = jwtUtils.getFeaturesFromCompactToken(compactToken);
+
+        assertTrue(jwtUtils.validateJwtToken(compactToken), "Token is not valid");
+        assertTrue(compactToken.length() < token.length(), "Compact token is not smaller");
+        assertEquals(features.keySet(), compactFeatures.keySet());
+
+        for (Map.Entry<String, FeatureStatus> entry : compactFeatures.entrySet()) {
+            Map<String, Object> feature = features.get(entry.getKey());
+            assertEquals(feature.get("eval"), entry.getValue().getEval(), entry.getKey());
+            assertEquals(feature.get("used"), entry.getValue().getUsed(), entry.getKey());
+            assertEquals(feature.get("limit"), entry.getValue().getLimit(), entry.getKey());
+        }
+    }
+
+    @Test
+    void compressedFeatureStatusesShouldRoundTripTest() {
+
+        PricingIndex index = PricingIndex.of(pricingContext.getPricingSnapshot());
+        FeatureStatuses statuses = new FeatureStatuses(index);
+        statuses.setEval(0, true);
+        statuses.setUsed(0, -3L);
+        statuses.setUsed(1, "text");
+
+        String encoded = CompactTokenCodec.encode(statuses, true);
+        Map<String, FeatureStatus> decoded = CompactTokenCodec.decode(encoded, index);
+
+        assertTrue(decoded.get(index.featureName(0)).getEval());
+        assertEquals(-3, decoded.get(index.featureName(0)).getUsed());
+        assertEquals("text", decoded.get(index.featureName(1)).getUsed());
+        assertNull(decoded.get(index.featureName(2)).getUsed());
+        assertThrows(IllegalArgumentException.class, () -> CompactTokenCodec.decode(encoded, List.of("feature")));
+    }
+
+    @Test
+    void featureStatusesWithCollectionsShouldRoundTripTest() {
+
+        PricingIndex index = PricingIndex.of(pricingContext.getPricingSnapshot());
+        FeatureStatuses statuses = new FeatureStatuses(index);
+        statuses.setUsed(0, List.of(1, "two", List.of(3.0)));
+        statuses.setUsed(1, Map.of("dogs", 2));
+
+        Map<String, FeatureStatus> decoded = CompactTokenCodec.decode(CompactTokenCodec.encode(statuses, false), index);
+
+        assertEquals(List.of(1, "two", List.of(3.0)), decoded.get(index.featureName(0)).getUsed());
+        assertEquals(Map.of("dogs", 2), decoded.get(index.featureName(1)).getUsed());
+
+        statuses.setUsed(2, new Object());
+
+        assertThrows(IllegalArgumentException.class, () -> CompactTokenCodec.encode(statuses, false));
+    }
+
+    @Test
+    void forgedTextLengthShouldBeRejectedTest() {
+
+        PricingIndex index = PricingIndex.of(pricingContext.getPricingSnapshot());
+
+        // One feature status whose used value claims a text of 2^32 - 1 bytes
+        byte[] forged = { 1, (byte) index.featureCount(), 0, 1, 0, 5, -1, -1, -1, -1, 15 };
+        String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(forged);
+
+        assertThrows(IllegalArgumentException.class, () -> CompactTokenCodec.decode(encoded, index));
+    }
+
+    @Test
+    void expressionsShouldNotBeAddedToCompactTokenTest() {
+
+        String compactToken = pricingEvaluatorUtil.generateCompactUserToken();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> pricingEvaluatorUtil.addExpressionToToken(compactToken, "maxPets", JWT_EXPRESSION_TEST));
+    }
+
+    @Test
+    void tokenShouldBeStaleWhenSubscriptionChangesTest() {
+
+        String token = pricingEvaluatorUtil.generateUserToken();
+        String compactToken = pricingEvaluatorUtil.generateCompactUserToken();
+
+        assertTrue(jwtUtils.isPricingTokenCurrent(token), "Fresh token is not current");
+        assertTrue(jwtUtils.isPricingTokenCurrent(compactToken), "Fresh compact token is not current");
+        assertTrue(jwtUtils.isPricingTokenCurrent(
+                pricingEvaluatorUtil.addExpressionToToken(token, "maxPets", JWT_EXPRESSION_TEST)),
+                "Token with an expression is not current");
+
+        pricingContext.getUserContext().put("pets", 3);
+
+        assertFalse(jwtUtils.isPricingTokenCurrent(token), "Token is current after the usage changed");
+
+        pricingContext.getUserContext().put("pets", 2);
+        ((PricingContextTestImpl) pricingContext).setUserPlan("BASIC");
+
+        assertFalse(jwtUtils.isPricingTokenCurrent(compactToken), "Token is current after the plan changed");
+        assertFalse(jwtUtils.isPricingTokenCurrent("invalid"), "Malformed token is current");
+    }
 }
@@ -5,9 +5,13 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -16,15 +20,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import io.github.isagroup.PricingPlanAwareTests.TestConfiguration.PricingContextImpl;
 import io.github.isagroup.annotations.PricingPlanAware;
 import io.github.isagroup.annotations.PricingPlanAwareAspect;
 import io.github.isagroup.exceptions.FilepathException;
 import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.exceptions.RateLimitExceededException;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
 import io.github.isagroup.services.jwt.PricingJwtUtils;
+import io.github.isagroup.services.ratelimit.UsageLimitRateLimiter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -36,6 +48,7 @@ public class PricingPlanAwareTests {
     private static final Integer JWT_EXPIRATION_TEST = 86400;
     private static final String JWT_SUBJECT_TEST = "admin1";
     private static final String CONFIG_FILE_PATH_TEST = "pricing/petclinic.yml";
+    private static final String RATE_LIMITED_CONFIG_FILE_PATH_TEST = "pricing/rate-limited-pricing.yml";
 
     @Configuration
     public static class TestConfiguration {
@@ -117,15 +130,13 @@ public class PricingPlanAwareTests {
     @Mock
     private ProceedingJoinPoint joinPoint;
 
-    @Test
-    void simpleAnnotationUseCaseTest() throws Throwable {
-
-        Mockito.when(joinPoint.proceed()).thenReturn("Result");
-
-        // Obtener el valor del parámetro featureId que deseas probar
-        String featureId = "maxPets";
+    private static PricingPlanAware pricingPlanAware(String featureId) {
+        return pricingPlanAware(featureId, new String[0], PricingPlanAware.Match.ALL);
+    }
 
-        pricingPlanAwareAspect.validatePricingPlan(joinPoint, new PricingPlanAware() {
+    private static PricingPlanAware pricingPlanAware(String featureId, String[] featureIds,
+            PricingPlanAware.Match match) {
+        return new PricingPlanAware() {
             @Override
             public Class<? extends java.lang.annotation.Annotation> annotationType() {
                 return PricingPlanAware.class;
@@ -135,7 +146,33 @@ public class PricingPlanAwareTests {
             public String featureName() {
                 return featureId;
             }
-        });
+
+            @Override
+            public String[] featureNames() {
+                return featureIds;
+            }
+
+            @Override
+            public PricingPlanAware.Match match() {
+                return match;
+            }
+
+            @Override
+            public boolean changesUsage() {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    void simpleAnnotationUseCaseTest() throws Throwable {
+
+        Mockito.when(joinPoint.proceed()).thenReturn("Result");
+
+        // Obtener el valor del parámetro featureId que deseas probar
+        String featureId = "maxPets";
+
+        pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware(featureId));
     }
 
     @Test
@@ -149,17 +186,7 @@ public class PricingPlanAwareTests {
         String featureId = "maxPets";
 
         PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class, () -> {
-            pricingPlanAwareAspect.validatePricingPlan(joinPoint, new PricingPlanAware() {
-                @Override
-                public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                    return PricingPlanAware.class;
-                }
-
-                @Override
-                public String featureName() {
-                    return featureId;
-                }
-            });
+            pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware(featureId));
         });
 
         assertEquals("You have reached the limit of the feature: " + featureId, exception.getMessage());
@@ -175,17 +202,7 @@ public class PricingPlanAwareTests {
         // Obtener el valor del parámetro featureId que deseas probar
         String featureId = "maxPets";
 
-        pricingPlanAwareAspect.validatePricingPlan(joinPoint, new PricingPlanAware() {
-            @Override
-            public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                return PricingPlanAware.class;
-            }
-
-            @Override
-            public String featureName() {
-                return featureId;
-            }
-        });
+        pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware(featureId));
 
         String token = pricingEvaluatorUtil.generateUserToken();
 
@@ -194,6 +211,55 @@ public class PricingPlanAwareTests {
         assertFalse((Boolean) evaluatedFeatures.get(featureId).get("eval"));
     }
 
+    @Test
+    void usageChangedByMethodShouldBeEvaluatedTest() throws Throwable {
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        try {
+            // The user context is memoised for the request before the method runs,
+            // as the token filter does
+            PricingEvaluationContextHolder.getContext(pricingContextImpl).getUserContext();
+
+            Mockito.when(joinPoint.proceed()).thenAnswer(invocation -> {
+                pricingContextImpl.setNumberOfPets(11);
+                return "Result";
+            });
+
+            PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class,
+                    () -> pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets")));
+
+            assertEquals("You have reached the limit of the feature: maxPets", exception.getMessage());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            pricingContextImpl.setNumberOfPets(2);
+        }
+    }
+
+    @Test
+    void multipleFeaturesAllMatchTest() throws Throwable {
+
+        Mockito.when(joinPoint.proceed()).thenReturn("Result");
+
+        PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class, () -> {
+            pricingPlanAwareAspect.validatePricingPlan(joinPoint,
+                    pricingPlanAware("", new String[] { "maxPets", "haveCalendar" }, PricingPlanAware.Match.ALL));
+        });
+
+        assertEquals("You have reached the limit of the feature: haveCalendar", exception.getMessage());
+    }
+
+    @Test
+    void multipleFeaturesAnyMatchTest() throws Throwable {
+
+        Mockito.when(joinPoint.proceed()).thenReturn("Result");
+
+        Object result = pricingPlanAwareAspect.validatePricingPlan(joinPoint,
+                pricingPlanAware("maxPets", new String[] { "haveCalendar" }, PricingPlanAware.Match.ANY));
+
+        assertEquals("Result", result);
+    }
+
     @Test
     void nonExistentFeatureEvaluationTest() throws Throwable {
 
@@ -203,17 +269,7 @@ public class PricingPlanAwareTests {
         String featureId = "nonExistentFeature";
 
         PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class, () -> {
-            pricingPlanAwareAspect.validatePricingPlan(joinPoint, new PricingPlanAware() {
-                @Override
-                public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                    return PricingPlanAware.class;
-                }
-
-                @Override
-                public String featureName() {
-                    return featureId;
-                }
-            });
+            pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware(featureId));
         });
 
         assertEquals("The feature " + featureId + " does not exist in the current pricing configuration",
@@ -231,17 +287,7 @@ public class PricingPlanAwareTests {
         String featureId = "nonExistentFeature";
 
         FilepathException exception = assertThrows(FilepathException.class, () -> {
-            pricingPlanAwareAspect.validatePricingPlan(joinPoint, new PricingPlanAware() {
-                @Override
-                public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                    return PricingPlanAware.class;
-                }
-
-                @Override
-                public String featureName() {
-                    return featureId;
-                }
-            });
+            pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware(featureId));
         });
 
         assertEquals("Either the file path is invalid or the file does not exist.", exception.getMessage());
@@ -249,4 +295,149 @@ public class PricingPlanAwareTests {
         pricingContextImpl.setConfigFilePath(CONFIG_FILE_PATH_TEST);
     }
 
+    @Test
+    void rejectedInvocationShouldReleaseRateLimitsTest() throws Throwable {
+
+        pricingContextImpl.setConfigFilePath(RATE_LIMITED_CONFIG_FILE_PATH_TEST);
+        pricingPlanAwareAspect.setUsageLimitRateLimiter(new UsageLimitRateLimiter());
+
+        try {
+            Mockito.when(joinPoint.proceed()).thenReturn("Result");
+
+            pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("reports"));
+
+            // The request of calls is given back when the one of reports is denied
+            assertThrows(RateLimitExceededException.class, () -> pricingPlanAwareAspect.validatePricingPlan(
+                    joinPoint, pricingPlanAware("", new String[] { "calls", "reports" }, PricingPlanAware.Match.ALL)));
+
+            // And when the method fails
+            Mockito.when(joinPoint.proceed()).thenThrow(new IllegalStateException("Failed")).thenReturn("Result");
+
+            assertThrows(IllegalStateException.class,
+                    () -> pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("calls")));
+
+            assertEquals("Result", pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("calls")));
+            assertEquals("Result", pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("calls")));
+            assertThrows(RateLimitExceededException.class,
+                    () -> pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("calls")));
+        } finally {
+            pricingPlanAwareAspect.setUsageLimitRateLimiter(null);
+            pricingContextImpl.setConfigFilePath(CONFIG_FILE_PATH_TEST);
+        }
+    }
+
+    @Test
+    void monoAnnotationUseCaseTest() throws Throwable {
+
+        mockReturnType(Mono.class);
+        Mockito.when(joinPoint.proceed()).thenReturn(Mono.just("Result"));
+
+        Object result = pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets"));
+
+        Mockito.verify(joinPoint, Mockito.never()).proceed();
+        assertEquals("Result", ((Mono<?>) result).block());
+    }
+
+    @Test
+    void negativeMonoAnnotationUseCaseTest() throws Throwable {
+
+        pricingContextImpl.setNumberOfPets(16);
+
+        mockReturnType(Mono.class);
+        Mockito.when(joinPoint.proceed()).thenReturn(Mono.just("Result"));
+
+        Mono<?> result = (Mono<?>) pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets"));
+
+        PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class, result::block);
+
+        assertEquals("You have reached the limit of the feature: maxPets", exception.getMessage());
+
+        pricingContextImpl.setNumberOfPets(2);
+    }
+
+    @Test
+    void usageChangedByMonoShouldBeEvaluatedTest() throws Throwable {
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        try {
+            PricingEvaluationContextHolder.getContext(pricingContextImpl).getUserContext();
+
+            mockReturnType(Mono.class);
+            Mockito.when(joinPoint.proceed()).thenReturn(Mono.fromCallable(() -> {
+                pricingContextImpl.setNumberOfPets(11);
+                return "Result";
+            }));
+
+            Mono<?> result = (Mono<?>) pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets"));
+
+            PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class,
+                    result::block);
+
+            assertEquals("You have reached the limit of the feature: maxPets", exception.getMessage());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            pricingContextImpl.setNumberOfPets(2);
+        }
+    }
+
+    @Test
+    void failedMonoShouldReleaseRateLimitsTest() throws Throwable {
+
+        pricingContextImpl.setConfigFilePath(RATE_LIMITED_CONFIG_FILE_PATH_TEST);
+        pricingPlanAwareAspect.setUsageLimitRateLimiter(new UsageLimitRateLimiter());
+
+        try {
+            mockReturnType(Mono.class, "hashCode");
+            Mockito.when(joinPoint.proceed()).thenReturn(Mono.error(new IllegalStateException("Failed")))
+                    .thenReturn(Mono.just("Result"));
+
+            Mono<?> failed = (Mono<?>) pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("reports"));
+
+            assertThrows(IllegalStateException.class, failed::block);
+
+            Mono<?> result = (Mono<?>) pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("reports"));
+
+            assertEquals("Result", result.block());
+        } finally {
+            pricingPlanAwareAspect.setUsageLimitRateLimiter(null);
+            pricingContextImpl.setConfigFilePath(CONFIG_FILE_PATH_TEST);
+        }
+    }
+
+    @Test
+    void fluxAnnotationUseCaseTest() throws Throwable {
+
+        mockReturnType(Flux.class);
+        Mockito.when(joinPoint.proceed()).thenReturn(Flux.just("First", "Second"));
+
+        Object result = pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets"));
+
+        assertEquals(List.of("First", "Second"), ((Flux<?>) result).collectList().block());
+    }
+
+    @Test
+    void completableFutureAnnotationUseCaseTest() throws Throwable {
+
+        mockReturnType(CompletableFuture.class);
+        Mockito.when(joinPoint.proceed()).thenReturn(CompletableFuture.completedFuture("Result"));
+
+        Object result = pricingPlanAwareAspect.validatePricingPlan(joinPoint, pricingPlanAware("maxPets"));
+
+        assertEquals("Result", ((CompletableFuture<?>) result).get(5, TimeUnit.SECONDS));
+    }
+
+    private void mockReturnType(Class<?> returnType) throws NoSuchMethodException {
+        mockReturnType(returnType, "toString");
+    }
+
+    // The aspect caches the annotations by method, so methods annotated
+    // differently must be told apart
+    private void mockReturnType(Class<?> returnType, String methodName) throws NoSuchMethodException {
+        MethodSignature signature = Mockito.mock(MethodSignature.class);
+        Mockito.when(signature.getReturnType()).thenReturn(returnType);
+        Mockito.when(signature.getMethod()).thenReturn(Object.class.getMethod(methodName));
+        Mockito.when(joinPoint.getSignature()).thenReturn(signature);
+    }
+
 }
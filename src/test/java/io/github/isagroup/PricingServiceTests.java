@@ -626,4 +626,24 @@ public class PricingServiceTests {
         assertFalse(pricingConfig.getPricingManager().getAddOns().containsKey(newAddOn.getName()));
     }
 
+    // --------------------------- VARIABLES ---------------------------
+
+    @Test
+    void givenVariableShouldUpdatePricingInUseAndFile() {
+
+        PricingManager variables = YamlUtils.retrieveManagerFromYaml("parsing/positive/variables/pricing-with-variables.yml");
+        YamlUtils.writeYaml(variables, getTempPricingPath("variables"));
+        pricingConfig.setConfigFilePath(getTempPricingPath("variables"));
+
+        PricingManager inUse = pricingConfig.getPricingSnapshot().getPricingManager();
+        assertEquals(0.0, inUse.getPlans().get("BASIC").getPrice());
+
+        pricingService.updateVariableFromConfiguration("vip", false);
+
+        assertEquals(5.0, inUse.getPlans().get("BASIC").getPrice());
+        assertSame(inUse, pricingConfig.getPricingSnapshot().getPricingManager());
+        assertEquals(false, pricingConfig.getPricingManager().getVariables().get("vip"));
+        assertThrows(IllegalArgumentException.class,
+                () -> pricingService.updateVariableFromConfiguration("unknown", 1));
+    }
 }
@@ -0,0 +1,74 @@
+package io.github.isagroup.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.services.billing.PriceCalculator;
+import io.github.isagroup.services.billing.PriceLineItem;
+import io.github.isagroup.services.billing.PriceQuote;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class PriceCalculatorTest {
+
+    private final PriceCalculator calculator = new PriceCalculator(
+            YamlUtils.retrieveManagerFromYaml("pricing/postman.yml"), 16);
+
+    @Test
+    void givenPlanAndAddOnsShouldItemiseTotal() {
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put("customDomains", 3);
+        quantities.put("extraMonitoringCalls", 1);
+
+        PriceQuote quote = calculator.calculate("BASIC", quantities, "monthly");
+
+        assertEquals(List.of("BASIC", "extraMonitoringCalls", "customDomains"),
+                quote.getItems().stream().map(PriceLineItem::getName).toList());
+        assertEquals(new BigDecimal("30.00"), quote.getItems().get(2).getAmount());
+        assertEquals(new BigDecimal("49.75"), quote.getTotal());
+    }
+
+    @Test
+    void givenBillingPeriodShouldApplyFactor() {
+
+        PriceQuote quote = calculator.calculate("BASIC", List.of("extraMonitoringCalls"), "annual");
+
+        assertEquals(new BigDecimal("15.20"), quote.getItems().get(0).getAmount());
+        assertEquals(new BigDecimal("0.60"), quote.getItems().get(1).getAmount());
+        assertEquals(new BigDecimal("15.80"), quote.getTotal());
+    }
+
+    @Test
+    void givenQuantityShouldMultiplyRoundedUnitPrice() {
+
+        PriceQuote quote = calculator.calculate("BASIC", Map.of("customDomains", 3), "annual");
+        PriceLineItem customDomains = quote.getItems().get(1);
+
+        assertEquals(customDomains.getUnitPrice().multiply(BigDecimal.valueOf(3)), customDomains.getAmount());
+    }
+
+    @Test
+    void givenSameConfigurationShouldReuseQuote() {
+
+        PriceQuote first = calculator.calculate("PROFESSIONAL", List.of("customDomains"), null);
+
+        assertSame(first, calculator.calculate("PROFESSIONAL", Map.of("customDomains", 1), null));
+    }
+
+    @Test
+    void givenInvalidSubscriptionShouldThrow() {
+
+        assertThrows(PricingPlanEvaluationException.class,
+                () -> calculator.calculate("FREE", List.of("extraMonitoringCalls"), null));
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculate("BASIC", List.of(), "weekly"));
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.AddOn;
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.ConfigurationSpace;
+import io.github.isagroup.services.configuration.SubscriptionConfiguration;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class ConfigurationSpaceTest {
+
+    private static final List<String> PLANS = List.of("BASIC", "PRO");
+
+    @Test
+    void givenRandomConstraintsShouldMatchBruteForce() {
+
+        Random random = new Random(42);
+
+        for (int run = 0; run < 20; run++) {
+
+            PricingManager pricingManager = randomPricing(random, 10);
+            ConfigurationSpace space = new ConfigurationSpace(pricingManager);
+
+            Set<String> expected = bruteForce(pricingManager);
+            Set<String> actual = space.stream().map(ConfigurationSpaceTest::describe).collect(Collectors.toSet());
+
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), space.count());
+            assertEquals(expected.size(), space.stream().count());
+        }
+    }
+
+    @Test
+    void givenManyAddOnsShouldCountInParallel() {
+
+        PricingManager pricingManager = randomPricing(new Random(7), 22);
+        ConfigurationSpace space = new ConfigurationSpace(pricingManager);
+
+        long count = space.count();
+
+        assertTrue(count > 0);
+        assertEquals(count, space.stream().parallel().count());
+    }
+
+    @Test
+    void givenPostmanPricingShouldEnumerateEveryPlan() {
+
+        PricingManager pricingManager = YamlUtils.retrieveManagerFromYaml("pricing/postman.yml");
+        ConfigurationSpace space = new ConfigurationSpace(pricingManager);
+
+        Set<String> plans = space.stream().limit(10_000).map(SubscriptionConfiguration::getPlan)
+                .collect(Collectors.toSet());
+
+        assertTrue(plans.size() >= 1);
+        assertEquals(space.count(), space.stream().parallel().count());
+    }
+
+    private static PricingManager randomPricing(Random random, int addOnCount) {
+
+        PricingManager pricingManager = new PricingManager();
+        Map<String, Plan> plans = new LinkedHashMap<>();
+
+        for (String planName : PLANS) {
+            Plan plan = new Plan();
+            plan.setName(planName);
+            plans.put(planName, plan);
+        }
+
+        Map<String, AddOn> addOns = new LinkedHashMap<>();
+
+        for (int i = 0; i < addOnCount; i++) {
+            AddOn addOn = new AddOn();
+            addOn.setName("addOn" + i);
+
+            if (random.nextInt(4) == 0) {
+                addOn.setAvailableFor(List.of(PLANS.get(random.nextInt(PLANS.size()))));
+            }
+
+            List<String> dependsOn = new ArrayList<>();
+            List<String> excludes = new ArrayList<>();
+
+            for (int j = 0; j < addOnCount; j++) {
+                if (j == i) {
+                    continue;
+                }
+                int roll = random.nextInt(addOnCount * 2);
+                if (roll == 0) {
+                    dependsOn.add("addOn" + j);
+                } else if (roll == 1) {
+                    excludes.add("addOn" + j);
+                }
+            }
+
+            addOn.setDependsOn(dependsOn);
+            addOn.setExcludes(excludes);
+            addOns.put(addOn.getName(), addOn);
+        }
+
+        pricingManager.setPlans(plans);
+        pricingManager.setAddOns(addOns);
+        return pricingManager;
+    }
+
+    private static Set<String> bruteForce(PricingManager pricingManager) {
+
+        List<AddOn> addOns = new ArrayList<>(pricingManager.getAddOns().values());
+        Set<String> valid = new HashSet<>();
+
+        for (String plan : pricingManager.getPlans().keySet()) {
+            for (long mask = 0; mask < (1L << addOns.size()); mask++) {
+
+                Set<String> chosen = new HashSet<>();
+                for (int i = 0; i < addOns.size(); i++) {
+                    if ((mask & (1L << i)) != 0) {
+                        chosen.add(addOns.get(i).getName());
+                    }
+                }
+
+                boolean ok = true;
+                for (AddOn addOn : addOns) {
+                    if (!chosen.contains(addOn.getName())) {
+                        continue;
+                    }
+                    ok &= addOn.getAvailableFor() == null || addOn.getAvailableFor().contains(plan);
+                    ok &= chosen.containsAll(addOn.getDependsOn());
+                    ok &= addOn.getExcludes().stream().noneMatch(chosen::contains);
+                }
+
+                if (ok) {
+                    valid.add(plan + ":" + mask);
+                }
+            }
+        }
+
+        return valid;
+    }
+
+    private static String describe(SubscriptionConfiguration configuration) {
+        return configuration.getPlan() + ":" + configuration.getAddOnMask();
+    }
+}
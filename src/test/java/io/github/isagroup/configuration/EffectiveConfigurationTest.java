@@ -0,0 +1,134 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.EffectiveConfigurationCache;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import io.github.isagroup.services.snapshot.PricingSnapshotRegistry;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class EffectiveConfigurationTest {
+
+    private static final String POSTMAN_PATH = "pricing/postman.yml";
+
+    private PricingSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        snapshot = PricingSnapshotRegistry.getInstance().getSnapshot(POSTMAN_PATH);
+    }
+
+    @Test
+    void givenUnchangedFileShouldReuseSnapshot() {
+        assertSame(snapshot, PricingSnapshotRegistry.getInstance().getSnapshot(POSTMAN_PATH));
+    }
+
+    @Test
+    void givenPlanWithoutAddOnsShouldUsePlanValues() {
+
+        EffectiveConfiguration configuration = EffectiveConfigurationCache.of(snapshot).get("BASIC", List.of());
+
+        assertEquals(10000, configuration.getUsageLimits().get("monitoringCallsLimit"));
+        assertEquals(false, configuration.getFeatures().get("postmanFlows"));
+        assertFalse(configuration.toPlanContext().containsKey("addOns"));
+    }
+
+    @Test
+    void givenAddOnsShouldOverrideFeaturesAndSumExtensions() {
+
+        EffectiveConfiguration configuration = EffectiveConfigurationCache.of(snapshot).get("BASIC",
+                List.of("postmanFlowsBasic", "extraMonitoringCalls"));
+
+        assertEquals(11000, configuration.getUsageLimits().get("monitoringCallsLimit"));
+        assertEquals(true, configuration.getFeatures().get("postmanFlows"));
+        assertEquals(25000, configuration.getUsageLimits().get("flowCredits"));
+
+        Map<String, Object> planContext = configuration.toPlanContext();
+
+        assertEquals(List.of("extraMonitoringCalls", "postmanFlowsBasic"), planContext.get("addOns"));
+        assertEquals(11000, ((Map<String, Object>) planContext.get("usageLimits")).get("monitoringCallsLimit"));
+    }
+
+    @Test
+    void givenSameSubscriptionShapeShouldComputeItOnce() {
+
+        EffectiveConfigurationCache cache = new EffectiveConfigurationCache(snapshot.getPricingManager(), 2);
+
+        EffectiveConfiguration first = cache.get("BASIC", List.of("postmanFlowsBasic", "extraMonitoringCalls"));
+        EffectiveConfiguration second = cache.get("BASIC", List.of("extraMonitoringCalls", "postmanFlowsBasic"));
+
+        assertSame(first, second);
+
+        cache.get("PROFESSIONAL", List.of());
+        cache.get("ENTERPRISE", List.of());
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void givenUnavailableAddOnShouldThrow() {
+
+        EffectiveConfigurationCache cache = EffectiveConfigurationCache.of(snapshot);
+
+        PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class,
+                () -> cache.get("FREE", List.of("extraMonitoringCalls")));
+
+        assertTrue(exception.getMessage().contains("not available for the plan FREE"));
+        assertThrows(PricingPlanEvaluationException.class, () -> cache.get("BASIC", List.of("unknownAddOn")));
+    }
+
+    @Test
+    void givenIndexShouldResolveValuesByOrdinal() {
+
+        PricingIndex index = PricingIndex.of(snapshot);
+        EffectiveConfiguration configuration = EffectiveConfigurationCache.of(snapshot).get("BASIC",
+                List.of("extraMonitoringCalls"));
+
+        int monitoringCallsLimit = index.usageLimitOrdinal("monitoringCallsLimit");
+        int postmanFlows = index.featureOrdinal("postmanFlows");
+
+        assertSame(index, configuration.getIndex());
+        assertEquals(configuration.getUsageLimits().get("monitoringCallsLimit"),
+                configuration.getUsageLimitValue(monitoringCallsLimit));
+        assertEquals(configuration.getFeatures().get("postmanFlows"), configuration.getFeatureValue(postmanFlows));
+        assertEquals(-1, index.featureOrdinal("unknownFeature"));
+        assertThrows(UnsupportedOperationException.class, () -> configuration.getFeatures().put("postmanFlows", true));
+    }
+
+    @Test
+    void givenUnknownPlanShouldThrow() {
+
+        PricingPlanEvaluationException exception = assertThrows(PricingPlanEvaluationException.class,
+                () -> EffectiveConfigurationCache.of(snapshot).get("UNKNOWN", List.of()));
+
+        assertEquals("The plan UNKNOWN does not exist in the current pricing configuration", exception.getMessage());
+    }
+
+    @Test
+    void givenModifiedManagerShouldIndexItAgain() {
+
+        PricingManager pricingManager = YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH);
+
+        assertEquals(10000, EffectiveConfiguration.of(pricingManager, "BASIC", List.of()).getUsageLimits()
+                .get("monitoringCallsLimit"));
+
+        pricingManager.getPlans().get("BASIC").getUsageLimits().get("monitoringCallsLimit").setValue(20000);
+
+        assertEquals(20000, EffectiveConfiguration.of(pricingManager, "BASIC", List.of()).getUsageLimits()
+                .get("monitoringCallsLimit"));
+    }
+}
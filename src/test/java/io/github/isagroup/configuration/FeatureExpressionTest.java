@@ -0,0 +1,69 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.FeatureStatus;
+import io.github.isagroup.models.PlanContextManager;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.FeatureExpression;
+import io.github.isagroup.services.configuration.PricingIndex;
+
+public class FeatureExpressionTest {
+
+    private PricingIndex index;
+    private EffectiveConfiguration configuration;
+
+    @BeforeEach
+    void setUp() {
+        PetclinicFixture petclinic = new PetclinicFixture();
+        index = petclinic.index();
+        configuration = petclinic.configuration("BASIC");
+    }
+
+    @Test
+    void givenNumericUserContextShouldMatchSpel() {
+
+        for (Object pets : List.of(9, 10, 11, 10L, 9.5, -0.0, Double.NaN)) {
+
+            Map<String, Object> userContext = Map.of("pets", pets);
+            PlanContextManager planContextManager = new PlanContextManager();
+            planContextManager.setUserContext(userContext);
+            planContextManager.setPlanContext(configuration.toPlanContext());
+
+            for (int feature = 0; feature < index.featureCount(); feature++) {
+                FeatureExpression compiled = index.getExpression(feature);
+                String expression = index.getFeature(feature).getExpression();
+
+                assertNotNull(compiled, expression);
+                assertEquals(FeatureStatus.computeFeatureEvaluation(expression, planContextManager).get(),
+                        compiled.evaluate(configuration, userContext), expression + " with " + pets + " pets");
+            }
+        }
+    }
+
+    @Test
+    void givenServerExpressionShouldCompileIt() {
+
+        FeatureExpression expression = index.getServerExpression(index.featureOrdinal("maxPets"));
+
+        assertEquals(true, expression.evaluate(configuration, Map.of("pets", 10)));
+        assertEquals(false, expression.evaluate(configuration, Map.of("pets", 11)));
+    }
+
+    @Test
+    void givenNonNumericUserContextShouldLeaveItToSpel() {
+
+        FeatureExpression expression = index.getExpression(index.featureOrdinal("maxPets"));
+
+        assertNull(expression.evaluate(configuration, Map.of("pets", "9")));
+        assertNull(expression.evaluate(configuration, Map.of()));
+    }
+}
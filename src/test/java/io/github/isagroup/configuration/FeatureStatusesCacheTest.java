@@ -0,0 +1,135 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.FeatureStatuses;
+import io.github.isagroup.services.configuration.FeatureStatusesCache;
+import io.github.isagroup.services.configuration.PricingIndex;
+
+public class FeatureStatusesCacheTest {
+
+    private PricingIndex index;
+    private EffectiveConfiguration basic;
+    private EffectiveConfiguration advanced;
+    private AtomicInteger evaluations;
+
+    @BeforeEach
+    void setUp() {
+        PetclinicFixture petclinic = new PetclinicFixture();
+        index = petclinic.index();
+        basic = petclinic.configuration("BASIC");
+        advanced = petclinic.configuration("ADVANCED");
+        evaluations = new AtomicInteger();
+    }
+
+    private Supplier<FeatureStatuses> evaluation() {
+        return () -> {
+            evaluations.incrementAndGet();
+            FeatureStatuses statuses = FeatureStatuses.forCurrentThread(index);
+            statuses.setEval(0, true);
+            return statuses;
+        };
+    }
+
+    @Test
+    void givenPetclinicShouldReadOnlyEvaluatedUserContextKeys() {
+        assertArrayEquals(new String[] { "pets" }, index.evaluatedUserContextKeys());
+    }
+
+    @Test
+    void givenSameEvaluatedInputsShouldEvaluateOnce() {
+
+        FeatureStatusesCache cache = new FeatureStatusesCache(index, 16);
+
+        FeatureStatuses first = cache.get(basic, Map.of("username", "user1", "pets", 0), evaluation());
+        FeatureStatuses second = cache.get(basic, Map.of("username", "user2", "pets", 0), evaluation());
+
+        assertSame(first, second);
+        assertNotSame(FeatureStatuses.forCurrentThread(index), first);
+        assertTrue(first.getEval(0));
+        assertEquals(1, evaluations.get());
+
+        cache.get(basic, Map.of("username", "user1", "pets", 1), evaluation());
+        cache.get(advanced, Map.of("username", "user1", "pets", 0), evaluation());
+
+        assertEquals(3, evaluations.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void givenFullCacheShouldKeepFrequentEntries() {
+
+        FeatureStatusesCache cache = new FeatureStatusesCache(index, 2);
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(basic, Map.of("pets", 0), evaluation());
+            cache.get(basic, Map.of("pets", 1), evaluation());
+        }
+
+        for (int pets = 2; pets < 10; pets++) {
+            cache.get(basic, Map.of("pets", pets), evaluation());
+        }
+
+        evaluations.set(0);
+
+        cache.get(basic, Map.of("pets", 0), evaluation());
+        cache.get(basic, Map.of("pets", 1), evaluation());
+
+        assertEquals(0, evaluations.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void givenConcurrentRequestsShouldStayBounded() throws Exception {
+
+        FeatureStatusesCache cache = new FeatureStatusesCache(index, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<?>> requests = new ArrayList<>();
+
+            for (int thread = 0; thread < 4; thread++) {
+                requests.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        int pets = i % 3 == 0 ? i % 64 : i % 4;
+                        assertTrue(cache.get(basic, Map.of("pets", pets), evaluation()).getEval(0));
+                    }
+                }));
+            }
+
+            for (Future<?> request : requests) {
+                request.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.size() <= 16);
+
+        evaluations.set(0);
+
+        for (int pets = 0; pets < 4; pets++) {
+            cache.get(basic, Map.of("pets", pets), evaluation());
+        }
+
+        assertEquals(0, evaluations.get());
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.FeatureStatuses;
+import io.github.isagroup.services.configuration.PricingIndex;
+
+public class FeatureStatusesTest {
+
+    private PricingIndex index;
+    private EffectiveConfiguration configuration;
+
+    @BeforeEach
+    void setUp() {
+        PetclinicFixture petclinic = new PetclinicFixture();
+        index = petclinic.index();
+        configuration = petclinic.configuration("BASIC");
+    }
+
+    @Test
+    void givenStatusesShouldSerializeLikeMapOfFeatureStatus() throws Exception {
+
+        FeatureStatuses statuses = new FeatureStatuses(index);
+        int maxPets = index.featureOrdinal("maxPets");
+        int haveCalendar = index.featureOrdinal("haveCalendar");
+
+        statuses.setEval(maxPets, true);
+        statuses.setUsed(maxPets, 3);
+        statuses.setUsageLimit(maxPets, configuration, index.usageLimitOrdinal("maxPets"));
+        statuses.setEval(haveCalendar, false);
+        statuses.setFeatureLimit(haveCalendar, configuration);
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        assertEquals(mapper.readTree(mapper.writeValueAsString(statuses.asMap())),
+                mapper.readTree(mapper.writeValueAsString(statuses)));
+        assertEquals(3, statuses.asMap().get("maxPets").getUsed());
+        assertEquals(configuration.getUsageLimits().get("maxPets"), statuses.getLimit(maxPets));
+        assertNull(statuses.asMap().get("unknownFeature"));
+    }
+
+    @Test
+    void givenSameThreadShouldReuseClearedBuffer() {
+
+        FeatureStatuses first = FeatureStatuses.forCurrentThread(index);
+        first.setEval(0, true);
+        first.setUsed(0, 1);
+
+        FeatureStatuses second = FeatureStatuses.forCurrentThread(index);
+
+        assertSame(first, second);
+        assertFalse(second.getEval(0));
+        assertNull(second.getUsed(0));
+    }
+
+    @Test
+    void givenThreadBufferShouldRetainCopy() {
+
+        FeatureStatuses buffer = FeatureStatuses.forCurrentThread(index);
+        buffer.setEval(0, true);
+
+        FeatureStatuses retained = buffer.retain();
+        FeatureStatuses.forCurrentThread(index);
+
+        assertNotSame(buffer, retained);
+        assertTrue(retained.getEval(0));
+        assertSame(retained, retained.retain());
+    }
+}
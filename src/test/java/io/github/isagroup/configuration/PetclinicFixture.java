@@ -0,0 +1,37 @@
+package io.github.isagroup.configuration;
+
+import java.util.List;
+
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.EffectiveConfigurationCache;
+import io.github.isagroup.services.configuration.PricingIndex;
+import io.github.isagroup.services.snapshot.PricingSnapshot;
+import io.github.isagroup.services.snapshot.PricingSnapshotRegistry;
+
+/**
+ * Snapshot and index of the petclinic pricing shared by the tests of the
+ * compiled configuration.
+ */
+final class PetclinicFixture {
+
+    static final String PETCLINIC_PATH = "pricing/petclinic.yml";
+
+    private final PricingSnapshot snapshot;
+    private final PricingIndex index;
+
+    PetclinicFixture() {
+        this.snapshot = PricingSnapshotRegistry.getInstance().getSnapshot(PETCLINIC_PATH);
+        this.index = PricingIndex.of(snapshot);
+    }
+
+    PricingIndex index() {
+        return index;
+    }
+
+    /**
+     * Returns the effective configuration of a plan without add-ons.
+     */
+    EffectiveConfiguration configuration(String plan) {
+        return EffectiveConfigurationCache.of(snapshot).get(plan, List.of());
+    }
+}
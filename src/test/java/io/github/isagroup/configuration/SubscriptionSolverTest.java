@@ -0,0 +1,83 @@
+package io.github.isagroup.configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.configuration.ConfigurationSpace;
+import io.github.isagroup.services.configuration.EffectiveConfiguration;
+import io.github.isagroup.services.configuration.SubscriptionConfiguration;
+import io.github.isagroup.services.configuration.SubscriptionRequirements;
+import io.github.isagroup.services.configuration.SubscriptionSolution;
+import io.github.isagroup.services.configuration.SubscriptionSolver;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class SubscriptionSolverTest {
+
+    private final PricingManager pricingManager = YamlUtils.retrieveManagerFromYaml("pricing/postman.yml");
+
+    @Test
+    void givenExtendedLimitShouldChooseCheapestAddOn() {
+
+        SubscriptionSolver solver = new SubscriptionSolver(pricingManager);
+
+        Optional<SubscriptionSolution> solution = solver
+                .solve(new SubscriptionRequirements().usageLimit("monitoringCallsLimit", 11000));
+
+        assertTrue(solution.isPresent());
+        assertEquals("BASIC", solution.get().getConfiguration().getPlan());
+        assertEquals(List.of("extraMonitoringCalls"), solution.get().getConfiguration().getAddOns());
+        assertEquals(19.75, solution.get().getPrice(), 1e-9);
+    }
+
+    @Test
+    void givenRequirementsShouldMatchExhaustiveSearch() {
+
+        SubscriptionRequirements requirements = new SubscriptionRequirements()
+                .feature("postmanFlows")
+                .usageLimit("monitoringCallsLimit", 11000)
+                .usageLimit("flowCredits", 1);
+
+        SubscriptionSolution solution = new SubscriptionSolver(pricingManager).solve(requirements, "annual").get();
+
+        double expected = new ConfigurationSpace(pricingManager).stream()
+                .filter(this::fulfils)
+                .mapToDouble(configuration -> price(configuration) * 0.8)
+                .min()
+                .getAsDouble();
+
+        assertEquals(expected, solution.getPrice(), 1e-9);
+        assertTrue(fulfils(solution.getConfiguration()));
+    }
+
+    @Test
+    void givenUnreachableRequirementsShouldReturnEmpty() {
+
+        SubscriptionSolver solver = new SubscriptionSolver(pricingManager);
+
+        assertTrue(solver.solve(new SubscriptionRequirements().usageLimit("monitoringCallsLimit", 1e12)).isEmpty());
+    }
+
+    private boolean fulfils(SubscriptionConfiguration configuration) {
+
+        EffectiveConfiguration effective = EffectiveConfiguration.of(pricingManager, configuration.getPlan(),
+                configuration.getAddOns());
+
+        return Boolean.TRUE.equals(effective.getFeatures().get("postmanFlows"))
+                && ((Number) effective.getUsageLimits().get("monitoringCallsLimit")).doubleValue() >= 11000
+                && ((Number) effective.getUsageLimits().get("flowCredits")).doubleValue() >= 1;
+    }
+
+    private double price(SubscriptionConfiguration configuration) {
+        double price = ((Number) pricingManager.getPlans().get(configuration.getPlan()).getPrice()).doubleValue();
+        for (String addOn : configuration.getAddOns()) {
+            price += ((Number) pricingManager.getAddOns().get(addOn).getPrice()).doubleValue();
+        }
+        return price;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.isagroup.diff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.diff.ContentHash;
+import io.github.isagroup.services.diff.PricingChange;
+import io.github.isagroup.services.diff.PricingChange.ChangeType;
+import io.github.isagroup.services.diff.PricingChange.EntityType;
+import io.github.isagroup.services.diff.PricingDiff;
+import io.github.isagroup.services.diff.PricingDiffer;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class PricingDiffTest {
+
+    private static final String POSTMAN_PATH = "pricing/postman.yml";
+
+    private PricingManager oldPricing;
+    private PricingManager newPricing;
+
+    @BeforeEach
+    void setUp() {
+        oldPricing = YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH);
+        newPricing = YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH);
+    }
+
+    @Test
+    void givenSamePricingShouldBeEmpty() {
+        assertTrue(PricingDiffer.diff(oldPricing, newPricing).isEmpty());
+    }
+
+    @Test
+    void givenChangedPlanFeatureShouldReportAttribute() {
+
+        newPricing.getPlans().get("BASIC").getFeatures().get("slackIntegration").setValue(false);
+
+        PricingDiff diff = PricingDiffer.diff(oldPricing, newPricing);
+
+        assertEquals(1, diff.getChanges().size());
+        PricingChange change = diff.getChanges().get(0);
+        assertEquals(EntityType.PLAN, change.getEntityType());
+        assertEquals(ChangeType.MODIFIED, change.getChangeType());
+        assertEquals("BASIC", change.getName());
+        assertEquals("features.slackIntegration.value", change.getAttribute());
+        assertEquals(true, change.getOldValue());
+        assertEquals(false, change.getNewValue());
+        assertEquals(Set.of("slackIntegration"), diff.getAffectedFeatures());
+    }
+
+    @Test
+    void givenChangedPlanPriceShouldReportPrice() {
+
+        newPricing.getPlans().get("BASIC").setPrice(21.0);
+
+        PricingDiff diff = PricingDiffer.diff(oldPricing, newPricing);
+
+        assertEquals(Set.of("BASIC"), diff.getChangedNames(EntityType.PLAN));
+        assertTrue(diff.getAffectedFeatures().isEmpty());
+    }
+
+    @Test
+    void givenRemovedAddOnShouldReportRemoval() {
+
+        newPricing.getAddOns().remove("customDomains");
+
+        PricingDiff diff = PricingDiffer.diff(oldPricing, newPricing);
+
+        assertEquals(1, diff.getChanges().size());
+        assertEquals(ChangeType.REMOVED, diff.getChanges().get(0).getChangeType());
+        assertEquals(Set.of("customDomains"), diff.getChangedNames(EntityType.ADD_ON));
+    }
+
+    @Test
+    void givenChangedExpressionShouldAffectFeature() {
+
+        newPricing.getFeatures().get("postmanApi").setExpression("false");
+
+        PricingDiff diff = PricingDiffer.diff(oldPricing, newPricing);
+
+        assertEquals(Set.of("postmanApi"), diff.getChangedNames(EntityType.FEATURE));
+        assertEquals(Set.of("postmanApi"), diff.getAffectedFeatures());
+        assertTrue(diff.getAffectedUsageLimits().isEmpty());
+    }
+
+    @Test
+    void givenAddedFeatureShouldReportAddition() {
+
+        newPricing.getFeatures().remove("postmanApi");
+
+        PricingDiff diff = PricingDiffer.diff(newPricing, oldPricing);
+
+        assertTrue(diff.getChanges(EntityType.FEATURE).stream()
+                .anyMatch(change -> change.getChangeType() == ChangeType.ADDED
+                        && change.getName().equals("postmanApi")));
+    }
+
+    @Test
+    void givenStringsWithSameHashCodeShouldHashDifferently() {
+
+        // "Aa" and "BB" share their String.hashCode()
+        assertNotEquals(ContentHash.of("Aa"), ContentHash.of("BB"));
+        assertNotEquals(ContentHash.of(List.of("AaAa")), ContentHash.of(List.of("BBBB")));
+        assertEquals(ContentHash.of(5), ContentHash.of(5.0));
+    }
+}
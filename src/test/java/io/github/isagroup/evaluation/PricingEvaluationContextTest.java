@@ -0,0 +1,218 @@
+package io.github.isagroup.evaluation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.github.isagroup.PricingContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.evaluation.PricingEvaluationContextHolder;
+
+public class PricingEvaluationContextTest {
+
+    private CountingPricingContext pricingContext;
+
+    private static class CountingPricingContext extends PricingContext {
+
+        private int userContextCalls = 0;
+        private int userPlanCalls = 0;
+        private int userContextFailures = 0;
+        private CountDownLatch inputsLatch;
+        private volatile RequestAttributes userContextRequest;
+        private volatile Authentication userContextAuthentication;
+
+        @Override
+        public String getConfigFilePath() {
+            return "pricing/petclinic.yml";
+        }
+
+        @Override
+        public String getJwtSecret() {
+            return "secret";
+        }
+
+        @Override
+        public Map<String, Object> getUserContext() {
+            awaitOtherInputs();
+            if (userContextFailures > 0) {
+                userContextFailures--;
+                throw new IllegalStateException("The user context is not available");
+            }
+            userContextCalls++;
+            userContextRequest = RequestContextHolder.getRequestAttributes();
+            userContextAuthentication = SecurityContextHolder.getContext().getAuthentication();
+            return Map.of("username", "user1", "pets", userContextCalls);
+        }
+
+        @Override
+        public String getUserPlan() {
+            awaitOtherInputs();
+            userPlanCalls++;
+            return "BASIC";
+        }
+
+        @Override
+        public List<String> getUserAddOns() {
+            awaitOtherInputs();
+            return List.of();
+        }
+
+        // Fails unless the user context, plan and add-ons are retrieved at once
+        private void awaitOtherInputs() {
+            if (inputsLatch == null) {
+                return;
+            }
+            inputsLatch.countDown();
+            try {
+                if (!inputsLatch.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("The inputs were not retrieved in parallel");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.pricingContext = new CountingPricingContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void givenBoundRequestShouldReuseEvaluationContext() {
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        PricingEvaluationContext first = PricingEvaluationContextHolder.getContext(pricingContext);
+        PricingEvaluationContext second = PricingEvaluationContextHolder.getContext(pricingContext);
+
+        assertSame(first, second);
+
+        first.getUserContext();
+        second.getUserContext();
+        second.getPlanContext();
+
+        assertEquals(1, pricingContext.userContextCalls);
+        assertSame(first.getPricingManager(), second.getPricingManager());
+    }
+
+    @Test
+    void givenInvalidatedUserContextShouldReloadIt() {
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        PricingEvaluationContext evaluationContext = PricingEvaluationContextHolder.getContext(pricingContext);
+
+        assertEquals(1, evaluationContext.getUserContext().get("pets"));
+
+        PricingEvaluationContextHolder.invalidateUserContext();
+
+        assertEquals(2, evaluationContext.getUserContext().get("pets"));
+    }
+
+    @Test
+    void givenAsyncLoadShouldRetrieveInputsInParallelOnce() throws Exception {
+
+        pricingContext.inputsLatch = new CountDownLatch(3);
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+
+        assertSame(evaluationContext, evaluationContext.loadAsync().toCompletableFuture().get(10, TimeUnit.SECONDS));
+
+        evaluationContext.getPlanContext();
+        evaluationContext.getSubscriptionFingerprint();
+        evaluationContext.getUserContextAsync().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, pricingContext.userContextCalls);
+        assertEquals(1, pricingContext.userPlanCalls);
+        assertEquals("BASIC", evaluationContext.getEffectiveConfiguration().getPlan().getName());
+    }
+
+    @Test
+    void givenFailedUserContextShouldRetrieveItAgain() {
+
+        pricingContext.userContextFailures = 1;
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+
+        assertThrows(IllegalStateException.class, evaluationContext::getUserContext);
+        assertEquals(1, evaluationContext.getUserContext().get("pets"));
+        assertEquals(1, evaluationContext.getUserContext().get("pets"));
+    }
+
+    @Test
+    void givenFailedAsyncUserContextShouldRetrieveItAgain() throws Exception {
+
+        pricingContext.userContextFailures = 1;
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> evaluationContext.getUserContextAsync().toCompletableFuture().get(10, TimeUnit.SECONDS));
+
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+        assertEquals(1, evaluationContext.getUserContextAsync().toCompletableFuture().get(10, TimeUnit.SECONDS)
+                .get("pets"));
+        assertEquals(1, evaluationContext.getUserContext().get("pets"));
+    }
+
+    @Test
+    void givenAsyncUserContextShouldRetrieveItInContextOfCaller() throws Exception {
+
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        Authentication authentication = new UsernamePasswordAuthenticationToken("user1", null, List.of());
+
+        RequestContextHolder.setRequestAttributes(request);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+        evaluationContext.getUserContextAsync().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertSame(request, pricingContext.userContextRequest);
+        assertSame(authentication, pricingContext.userContextAuthentication);
+
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+
+        evaluationContext.invalidateUserContext();
+        evaluationContext.getUserContextAsync().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertNull(pricingContext.userContextRequest);
+        assertNull(pricingContext.userContextAuthentication);
+    }
+
+    @Test
+    void givenNoRequestShouldNotShareEvaluationContext() {
+
+        PricingEvaluationContext first = PricingEvaluationContextHolder.getContext(pricingContext);
+        PricingEvaluationContext second = PricingEvaluationContextHolder.getContext(pricingContext);
+
+        assertNotSame(first, second);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.isagroup.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.Plan;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.formula.FormulaContext;
+import io.github.isagroup.services.formula.PriceFormula;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class PriceFormulaTest {
+
+    private static final String PRICING_WITH_VARIABLES = "parsing/positive/variables/pricing-with-variables.yml";
+
+    @Test
+    void givenFormulaShouldCollectVariables() {
+
+        PriceFormula formula = new PriceFormula("#vip ? 0.0 : #x * #factor", new FormulaContext(Map.of()));
+
+        assertEquals(Set.of("vip", "x", "factor"), formula.getVariables());
+    }
+
+    @Test
+    void givenUpdatedVariableShouldEvaluateAgain() {
+
+        PricingManager pricingManager = YamlUtils.retrieveManagerFromYaml(PRICING_WITH_VARIABLES);
+        Plan basic = pricingManager.getPlans().get("BASIC");
+
+        assertEquals(0.0, basic.getPrice());
+
+        pricingManager.updateVariable("vip", false);
+        assertEquals(5.0, basic.getPrice());
+
+        pricingManager.updateVariable("x", 7);
+        assertEquals(7.0, basic.getPrice());
+    }
+
+    @Test
+    void givenUnrelatedVariableShouldReuseValue() {
+
+        FormulaContext context = new FormulaContext(Map.of("x", 2, "y", 3));
+        PriceFormula formula = new PriceFormula("#x * 10", context);
+
+        Double first = formula.getValue();
+        context.setVariable("y", 4);
+
+        assertEquals(20.0, first);
+        assertEquals(first, formula.getValue());
+
+        context.setVariables(Map.of("x", 3));
+        assertEquals(30.0, formula.getValue());
+    }
+
+    @Test
+    void givenFormulaPriceShouldSerializeSource() {
+
+        PricingManager pricingManager = YamlUtils.retrieveManagerFromYaml(PRICING_WITH_VARIABLES);
+
+        assertEquals("#vip ? 0.0 : #x", pricingManager.getPlans().get("BASIC").serializePlan().get("price"));
+    }
+
+    @Test
+    void givenDifferentFormulasShouldNotBeEqual() {
+
+        FormulaContext context = new FormulaContext(Map.of("x", 2));
+
+        Plan first = new Plan();
+        first.setName("BASIC");
+        first.setPriceFormula(new PriceFormula("#x * 10", context));
+
+        Plan second = new Plan();
+        second.setName("BASIC");
+        second.setPriceFormula(new PriceFormula("#x * 20", context));
+
+        Plan third = new Plan();
+        third.setName("BASIC");
+        third.setPriceFormula(new PriceFormula("#x * 10", context));
+
+        assertNotEquals(first, second);
+        assertEquals(first, third);
+        assertEquals(first.hashCode(), third.hashCode());
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.isagroup.jwt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.services.jwt.JwtSigner;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+
+public class JwtSignerTest {
+
+    private static final String SECRET = "secret";
+    private static final String OTHER_SECRET = "c2Vjb25kU2VjcmV0";
+    private static final long HOUR = 3600000;
+
+    @Test
+    void givenSignedTokenShouldBeReadableByJjwt() {
+
+        Date now = new Date();
+        String token = new JwtSigner(SECRET).sign(Map.of("plan", "BASIC"), "user", now, new Date(now.getTime() + HOUR));
+
+        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+
+        assertEquals("user", claims.getSubject());
+        assertEquals("BASIC", claims.get("plan"));
+    }
+
+    @Test
+    void givenJjwtTokenShouldBeVerified() {
+
+        String token = Jwts.builder().setClaims(new HashMap<>(Map.of("plan", "PRO"))).setSubject("user")
+                .setExpiration(new Date(System.currentTimeMillis() + HOUR))
+                .signWith(SignatureAlgorithm.HS512, SECRET).compact();
+
+        Claims claims = new JwtSigner(SECRET).parse(token);
+
+        assertEquals("user", claims.getSubject());
+        assertEquals("PRO", claims.get("plan"));
+    }
+
+    @Test
+    void givenRotatedKeyShouldVerifyTokensOfPreviousKeys() {
+
+        Date now = new Date();
+        String oldToken = new JwtSigner("v1", SECRET).sign(Map.of(), "user", now, new Date(now.getTime() + HOUR));
+
+        JwtSigner signer = new JwtSigner("v2", OTHER_SECRET, Map.of("v1", SECRET));
+        String newToken = signer.sign(Map.of(), "user", now, new Date(now.getTime() + HOUR));
+
+        assertEquals("v2", Jwts.parser().setSigningKey(OTHER_SECRET).parseClaimsJws(newToken).getHeader().getKeyId());
+        assertEquals("user", signer.parse(oldToken).getSubject());
+        assertEquals("user", signer.parse(newToken).getSubject());
+
+        assertThrows(SignatureException.class, () -> new JwtSigner("v2", OTHER_SECRET).parse(oldToken));
+    }
+
+    @Test
+    void givenPreviousKeyWithCurrentIdShouldReject() {
+
+        Map<String, String> previousWithoutId = new HashMap<>();
+        previousWithoutId.put(null, SECRET);
+
+        assertThrows(IllegalArgumentException.class, () -> new JwtSigner("v1", OTHER_SECRET, Map.of("v1", SECRET)));
+        assertThrows(IllegalArgumentException.class, () -> new JwtSigner(null, OTHER_SECRET, previousWithoutId));
+    }
+
+    @Test
+    void givenTamperedOrExpiredTokenShouldThrow() {
+
+        JwtSigner signer = new JwtSigner(SECRET);
+        Date now = new Date();
+
+        String token = signer.sign(Map.of("plan", "BASIC"), "user", now, new Date(now.getTime() + HOUR));
+        String forged = new JwtSigner(OTHER_SECRET).sign(Map.of("plan", "PRO"), "user", now,
+                new Date(now.getTime() + HOUR));
+        String tampered = forged.substring(0, forged.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+        String expired = signer.sign(Map.of(), "user", new Date(now.getTime() - 2 * HOUR),
+                new Date(now.getTime() - HOUR));
+
+        assertThrows(SignatureException.class, () -> signer.parse(tampered));
+        assertThrows(ExpiredJwtException.class, () -> signer.parse(expired));
+        assertThrows(IllegalArgumentException.class, () -> signer.parse(""));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.isagroup.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import io.github.isagroup.exceptions.PricingParsingException;
+import io.github.isagroup.exceptions.UpdateException;
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.parsing.PricingManagerParser;
+import io.github.isagroup.services.updaters.YamlUpdater;
+
+class ParallelParsingTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void givenParallelParsingShouldMatchSequentialParsing() throws IOException, UpdateException {
+
+        PricingManager sequential = PricingManagerParser.parseMapToPricingManager(loadPostman());
+        PricingManager parallel = PricingManagerParser.parseMapToPricingManager(loadPostman(), pool);
+
+        assertEquals(sequential, parallel);
+        assertEquals(new ArrayList<>(sequential.getPlans().keySet()), new ArrayList<>(parallel.getPlans().keySet()));
+        assertEquals(new ArrayList<>(sequential.getAddOns().keySet()), new ArrayList<>(parallel.getAddOns().keySet()));
+    }
+
+    @Test
+    void givenSeveralInvalidPlansShouldReportTheFirstOne() throws IOException, UpdateException {
+
+        Map<String, Object> configFile = loadPostman();
+        Map<String, Object> plans = (Map<String, Object>) configFile.get("plans");
+        plans.put("PROFESSIONAL", List.of("not a map"));
+        plans.put("ENTERPRISE", List.of("not a map"));
+
+        String sequential = assertThrows(PricingParsingException.class,
+                () -> PricingManagerParser.parseMapToPricingManager(loadPostmanWith(configFile))).getMessage();
+
+        for (int i = 0; i < 10; i++) {
+            String parallel = assertThrows(PricingParsingException.class,
+                    () -> PricingManagerParser.parseMapToPricingManager(loadPostmanWith(configFile), pool))
+                    .getMessage();
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    @Test
+    void givenAddOnAvailableForLaterAddOnShouldFailInBothModes() throws IOException, UpdateException {
+
+        Map<String, Object> configFile = loadPostman();
+        Map<String, Object> addOns = (Map<String, Object>) configFile.get("addOns");
+        Map<String, Object> firstAddOn = (Map<String, Object>) addOns.values().iterator().next();
+        String lastAddOn = new ArrayList<>(addOns.keySet()).get(addOns.size() - 1);
+        firstAddOn.put("availableFor", List.of(lastAddOn));
+
+        String sequential = assertThrows(RuntimeException.class,
+                () -> PricingManagerParser.parseMapToPricingManager(loadPostmanWith(configFile))).getMessage();
+        String parallel = assertThrows(RuntimeException.class,
+                () -> PricingManagerParser.parseMapToPricingManager(loadPostmanWith(configFile), pool)).getMessage();
+
+        assertEquals(sequential, parallel);
+    }
+
+    private static Map<String, Object> loadPostman() throws IOException, UpdateException {
+        try (FileInputStream input = new FileInputStream("src/main/resources/pricing/postman.yml")) {
+            Map<String, Object> configFile = new Yaml().load(input);
+            YamlUpdater.update(configFile);
+            return configFile;
+        }
+    }
+
+    private static Map<String, Object> loadPostmanWith(Map<String, Object> configFile) {
+        // Parsing must not depend on previous parses of the same map
+        return new Yaml().load(new Yaml().dump(configFile));
+    }
+}
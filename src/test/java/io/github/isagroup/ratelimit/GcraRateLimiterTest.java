@@ -0,0 +1,176 @@
+package io.github.isagroup.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.PricingContextTestImpl;
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.models.usagelimittypes.Renewable;
+import io.github.isagroup.models.usagelimittypes.ResponseDriven;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.ratelimit.GcraRateLimiter;
+import io.github.isagroup.services.ratelimit.RateLimitResult;
+import io.github.isagroup.services.ratelimit.UsageLimitRateLimiter;
+
+public class GcraRateLimiterTest {
+
+    private static final String KEY = "user1:callsPerMinute";
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    @Test
+    void givenBurstShouldDenyAfterLimit() {
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(now::get, 1024);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+        }
+
+        RateLimitResult denied = rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1));
+
+        assertFalse(denied.isAllowed());
+        assertEquals(Duration.ofSeconds(6), denied.getRetryAfter());
+    }
+
+    @Test
+    void givenElapsedIntervalShouldAllowAgain() {
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(now::get, 1024);
+
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1));
+        }
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertFalse(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+        assertFalse(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+    }
+
+    @Test
+    void givenReleasedRequestShouldAllowItAgain() {
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(now::get, 1024);
+
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1));
+        }
+
+        assertFalse(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+
+        rateLimiter.release(KEY, 10, Duration.ofMinutes(1));
+
+        assertTrue(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+        assertFalse(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+
+        // Releasing more requests than consumed does not grow the capacity
+        for (int i = 0; i < 20; i++) {
+            rateLimiter.release(KEY, 10, Duration.ofMinutes(1));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+        }
+
+        assertFalse(rateLimiter.tryAcquire(KEY, 10, Duration.ofMinutes(1)).isAllowed());
+    }
+
+    @Test
+    void givenUserContextWithoutUserShouldNotShareLimits() {
+
+        PricingContextTestImpl pricingContext = new PricingContextTestImpl();
+        pricingContext.setConfigFilePath("pricing/rate-limited-pricing.yml");
+        pricingContext.setUserPlan("BASIC");
+        pricingContext.setUserContext(Map.of());
+
+        UsageLimitRateLimiter usageLimitRateLimiter = new UsageLimitRateLimiter(new GcraRateLimiter(now::get, 1024));
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+
+        assertThrows(PricingPlanEvaluationException.class,
+                () -> usageLimitRateLimiter.acquireForFeature("calls", evaluationContext));
+        assertEquals(0, usageLimitRateLimiter.getRateLimiter().size());
+    }
+
+    @Test
+    void givenIdleKeysShouldEvictThem() {
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(now::get, 1024);
+
+        rateLimiter.tryAcquire("user1", 10, Duration.ofSeconds(1));
+        rateLimiter.tryAcquire("user2", 10, Duration.ofSeconds(1));
+
+        assertEquals(0, rateLimiter.evictIdle());
+
+        now.addAndGet(Duration.ofMillis(100).toNanos());
+        assertEquals(2, rateLimiter.evictIdle());
+        assertEquals(0, rateLimiter.size());
+
+        assertTrue(rateLimiter.tryAcquire("user1", 10, Duration.ofSeconds(1)).isAllowed());
+    }
+
+    @Test
+    void givenConcurrentRequestsShouldNotExceedLimit() throws Exception {
+
+        GcraRateLimiter rateLimiter = new GcraRateLimiter(now::get, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return rateLimiter.tryAcquire(KEY, 50, Duration.ofSeconds(1)).isAllowed();
+            }));
+        }
+
+        start.countDown();
+
+        int allowed = 0;
+
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                allowed++;
+            }
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        assertEquals(50, allowed);
+    }
+
+    @Test
+    void givenUsageLimitShouldClassifyThroughputLimits() {
+
+        ResponseDriven responseDriven = new ResponseDriven();
+        responseDriven.setUnit("request/second");
+
+        Renewable perMinute = new Renewable();
+        perMinute.setUnit("call/minute");
+
+        Renewable perMonth = new Renewable();
+        perMonth.setUnit("call/month");
+
+        assertTrue(UsageLimitRateLimiter.isRateLimited(responseDriven));
+        assertTrue(UsageLimitRateLimiter.isRateLimited(perMinute));
+        assertFalse(UsageLimitRateLimiter.isRateLimited(perMonth));
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.isagroup.snapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.snapshot.PricingInterner;
+import io.github.isagroup.services.yaml.YamlUtils;
+
+public class PricingInternerTest {
+
+    private static final String POSTMAN_PATH = "pricing/postman.yml";
+    private static final String VARIABLES_PATH = "parsing/positive/variables/pricing-with-variables.yml";
+
+    private PricingInterner interner;
+
+    @BeforeEach
+    void setUp() {
+        interner = new PricingInterner();
+    }
+
+    @Test
+    void givenSamePricingShouldShareEveryDefinition() {
+
+        PricingManager first = interner.intern(YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH));
+        int size = interner.size();
+        PricingManager second = interner.intern(YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH));
+
+        assertEquals(size, interner.size());
+        first.getPlans().forEach((name, plan) -> assertSame(plan, second.getPlans().get(name)));
+        first.getAddOns().forEach((name, addOn) -> assertSame(addOn, second.getAddOns().get(name)));
+        first.getFeatures().forEach((name, feature) -> assertSame(feature, second.getFeatures().get(name)));
+    }
+
+    @Test
+    void givenPlansWithSameFeatureValueShouldShareFeature() {
+
+        PricingManager pricing = interner.intern(YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH));
+
+        assertSame(pricing.getPlans().get("PROFESSIONAL").getFeatures().get("apiClientHTTP"),
+                pricing.getPlans().get("ENTERPRISE").getFeatures().get("apiClientHTTP"));
+    }
+
+    @Test
+    void givenChangedPlanShouldOnlyReplaceThatPlan() {
+
+        PricingManager first = interner.intern(YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH));
+
+        PricingManager changed = YamlUtils.retrieveManagerFromYaml(POSTMAN_PATH);
+        changed.getPlans().get("BASIC").getFeatures().get("slackIntegration").setValue(false);
+        PricingManager second = interner.intern(changed);
+
+        assertNotSame(first.getPlans().get("BASIC"), second.getPlans().get("BASIC"));
+        assertNotSame(first.getPlans().get("BASIC").getFeatures().get("slackIntegration"),
+                second.getPlans().get("BASIC").getFeatures().get("slackIntegration"));
+        assertSame(first.getPlans().get("BASIC").getFeatures().get("apiClientHTTP"),
+                second.getPlans().get("BASIC").getFeatures().get("apiClientHTTP"));
+        assertSame(first.getPlans().get("PROFESSIONAL"), second.getPlans().get("PROFESSIONAL"));
+    }
+
+    @Test
+    void givenPriceFormulaShouldNotSharePlan() {
+
+        PricingManager first = interner.intern(YamlUtils.retrieveManagerFromYaml(VARIABLES_PATH));
+        PricingManager second = interner.intern(YamlUtils.retrieveManagerFromYaml(VARIABLES_PATH));
+
+        assertNotSame(first.getPlans().get("BASIC"), second.getPlans().get("BASIC"));
+
+        second.updateVariable("vip", false);
+
+        assertEquals(true, first.getVariables().get("vip"));
+        assertEquals(5.0, ((Number) second.getPlans().get("BASIC").getPrice()).doubleValue());
+    }
+}
@@ -7,11 +7,21 @@ import io.github.isagroup.services.updaters.YamlUpdater;
 import org.junit.jupiter.api.Test;
 import org.yaml.snakeyaml.Yaml;
 
+import io.github.isagroup.services.updaters.MigrationCache;
+import io.github.isagroup.services.yaml.YamlUtils;
+
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 class UpdatersTest {
@@ -96,4 +106,63 @@ class UpdatersTest {
         }
     }
 
+    @Test
+    void givenV10PricingShouldApplyEveryMigration() {
+
+        Yaml yaml = new Yaml();
+
+        try (FileInputStream fileInputStream = new FileInputStream("src/main/resources/pricing/postman.yml")) {
+            Map<String,Object> configFile = yaml.load(fileInputStream);
+            YamlUpdater.update(configFile);
+            assertEquals("2.1", configFile.get("syntaxVersion"));
+            assertEquals("2024-06-29", configFile.get("version"));
+            assertFalse(configFile.containsKey("day"));
+            assertFalse(configFile.containsKey("hasAnnualPayment"));
+            Map<String,Object> plans = (Map<String, Object>) configFile.get("plans");
+            assertEquals(19.0, ((Map<String,Object>) plans.get("BASIC")).get("price"));
+            assertFalse(((Map<String,Object>) plans.get("BASIC")).containsKey("monthlyPrice"));
+            assertFalse(YamlUpdater.needsUpdate(configFile));
+        } catch (IOException | UpdateException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    void givenCachedMigrationShouldReturnCopies() {
+
+        MigrationCache cache = new MigrationCache(1);
+        byte[] content = "version: \"1.1\"".getBytes();
+        Map<String,Object> migrated = new LinkedHashMap<>(Map.of("plans", new LinkedHashMap<>(Map.of("BASIC", 1.0))));
+
+        cache.put(content, migrated);
+        migrated.clear();
+
+        Map<String,Object> first = cache.get(content.clone());
+        ((Map<String,Object>) first.get("plans")).clear();
+
+        assertEquals(Map.of("plans", Map.of("BASIC", 1.0)), cache.get(content));
+        assertNull(cache.get("version: \"1.0\"".getBytes()));
+
+        cache.put("version: \"1.0\"".getBytes(), Map.of());
+        assertEquals(1, cache.size());
+        assertNull(cache.get(content));
+    }
+
+    @Test
+    void givenPreviousVersionFileShouldBeUpgraded() throws IOException, UpdateException {
+
+        Path source = Path.of("src/test/resources/updating/v11-v20/price-holds-monthlyPrice.yml");
+        Path upgraded = Path.of("src/test/resources/updating/upgraded.yml");
+        Files.copy(source, upgraded, StandardCopyOption.REPLACE_EXISTING);
+
+        try {
+            assertTrue(YamlUtils.upgradeYaml("updating/upgraded.yml"));
+            assertFalse(YamlUtils.upgradeYaml("updating/upgraded.yml"));
+            assertEquals(YamlUtils.retrieveManagerFromYaml("updating/v11-v20/price-holds-monthlyPrice.yml").getPlans(),
+                    YamlUtils.retrieveManagerFromYaml("updating/upgraded.yml").getPlans());
+        } finally {
+            Files.deleteIfExists(upgraded);
+        }
+    }
+
 }
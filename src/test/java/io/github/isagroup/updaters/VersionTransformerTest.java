@@ -0,0 +1,68 @@
+package io.github.isagroup.updaters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+import io.github.isagroup.models.PricingManager;
+import io.github.isagroup.services.parsing.PricingManagerParser;
+import io.github.isagroup.services.updaters.Version;
+import io.github.isagroup.utils.MigrationReport;
+import io.github.isagroup.utils.VersionTransformer;
+
+class VersionTransformerTest {
+
+    @TempDir
+    Path source;
+
+    @TempDir
+    Path destination;
+
+    @Test
+    void givenDirectoryShouldMigrateEveryFileConcurrently() throws IOException {
+
+        Files.createDirectories(source.resolve("nested"));
+        Files.copy(Path.of("src/main/resources/pricing/postman.yml"), source.resolve("postman.yml"));
+        Files.copy(Path.of("src/test/resources/updating/v11-v20/price-holds-monthlyPrice.yml"),
+                source.resolve("nested/monthly.yml"));
+        Files.writeString(source.resolve("broken.yml"), "saasName: Broken\n");
+        Files.writeString(source.resolve("notes.txt"), "not a pricing");
+
+        MigrationReport report = new VersionTransformer().migrate(source.toFile(), destination.toFile(),
+                Version.LATEST, 4);
+
+        assertEquals(3, report.getResults().size());
+        assertEquals(2, report.getMigratedCount());
+        assertEquals(1, report.getFailures().size());
+        assertEquals(source.resolve("broken.yml"), report.getFailures().get(0).getSource());
+        assertNull(report.getFailures().get(0).getDestination());
+
+        assertFalse(Files.exists(destination.resolve("broken.yml")));
+        assertEquals("Postman", parse(destination.resolve("postman.yml")).getSaasName());
+        assertEquals("given monthlyPrice price should hold 14.99",
+                parse(destination.resolve("nested/monthly.yml")).getSaasName());
+
+        try (var files = Files.list(destination)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+
+    private PricingManager parse(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            Map<String, Object> configFile = new Yaml().load(input);
+            assertEquals(Version.LATEST.toString(), configFile.get("syntaxVersion"));
+            return PricingManagerParser.parseMapToPricingManager(configFile);
+        }
+    }
+}
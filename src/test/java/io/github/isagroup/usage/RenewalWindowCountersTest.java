@@ -0,0 +1,123 @@
+package io.github.isagroup.usage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.services.usage.RenewalPeriod;
+import io.github.isagroup.services.usage.RenewalWindow;
+import io.github.isagroup.services.usage.RenewalWindowCounters;
+
+public class RenewalWindowCountersTest {
+
+    private static final String USER = "user1";
+    private static final String LIMIT = "maxCalls";
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    @Test
+    void givenUnitShouldExtractRenewalPeriod() {
+        assertEquals(Optional.of(RenewalPeriod.MONTH), RenewalPeriod.fromUnit("call/month"));
+        assertEquals(Optional.of(RenewalPeriod.DAY), RenewalPeriod.fromUnit("call/member/day"));
+        assertEquals(Optional.of(RenewalPeriod.MINUTE), RenewalPeriod.fromUnit("call/minute"));
+        assertEquals(Optional.empty(), RenewalPeriod.fromUnit("MB"));
+    }
+
+    @Test
+    void givenMonthWindowsShouldBeAlignedToCalendar() {
+        long index = RenewalPeriod.MONTH.windowIndex(Instant.parse("2024-02-29T23:00:00Z").toEpochMilli());
+
+        assertEquals(Instant.parse("2024-02-01T00:00:00Z").toEpochMilli(), RenewalPeriod.MONTH.windowStart(index));
+        assertEquals(Instant.parse("2024-03-01T00:00:00Z").toEpochMilli(), RenewalPeriod.MONTH.windowStart(index + 1));
+    }
+
+    @Test
+    void givenFixedWindowShouldRenewUsageLazily() {
+
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-31T10:00:00Z"));
+        RenewalWindowCounters counters = new RenewalWindowCounters(Map.of(LIMIT, RenewalPeriod.MONTH),
+                RenewalWindow.FIXED, clock);
+
+        assertTrue(counters.tryAdd(USER, LIMIT, 3, 3).isPresent());
+        assertFalse(counters.tryAdd(USER, LIMIT, 1, 3).isPresent());
+        assertEquals(3, counters.getUsage(USER, LIMIT));
+
+        clock.set(Instant.parse("2024-02-01T00:00:00Z"));
+
+        assertEquals(0, counters.getUsage(USER, LIMIT));
+        assertTrue(counters.tryAdd(USER, LIMIT, 1, 3).isPresent());
+        assertEquals(1, counters.getUsage(USER, LIMIT));
+    }
+
+    @Test
+    void givenSlidingWindowShouldWeightPreviousWindow() {
+
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T10:30:00Z"));
+        RenewalWindowCounters counters = new RenewalWindowCounters(Map.of(LIMIT, RenewalPeriod.HOUR),
+                RenewalWindow.SLIDING, clock);
+
+        counters.add(USER, LIMIT, 10);
+
+        clock.set(Instant.parse("2024-01-01T11:15:00Z"));
+
+        assertEquals(8, counters.getUsage(USER, LIMIT));
+        assertTrue(counters.tryAdd(USER, LIMIT, 2, 10).isPresent());
+        assertFalse(counters.tryAdd(USER, LIMIT, 1, 10).isPresent());
+
+        clock.set(Instant.parse("2024-01-01T13:00:00Z"));
+
+        assertEquals(0, counters.getUsage(USER, LIMIT));
+    }
+
+    @Test
+    void givenRenewedWindowShouldIgnoreSubtraction() {
+
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T10:00:00Z"));
+        RenewalWindowCounters counters = new RenewalWindowCounters(Map.of(LIMIT, RenewalPeriod.DAY),
+                RenewalWindow.FIXED, clock);
+
+        OptionalLong window = counters.tryAdd(USER, LIMIT, 1, 5);
+
+        clock.set(Instant.parse("2024-01-02T10:00:00Z"));
+        counters.add(USER, LIMIT, 2);
+        counters.subtract(USER, LIMIT, 1, window.getAsLong());
+
+        assertEquals(2, counters.getUsage(USER, LIMIT));
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.isagroup.usage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.isagroup.PricingContextTestImpl;
+import io.github.isagroup.exceptions.PricingPlanEvaluationException;
+import io.github.isagroup.services.evaluation.PricingEvaluationContext;
+import io.github.isagroup.services.usage.InMemoryUsageCounterStore;
+import io.github.isagroup.services.usage.RenewalWindow;
+import io.github.isagroup.services.usage.UsageCounterKey;
+import io.github.isagroup.services.usage.UsageLimitEnforcer;
+import io.github.isagroup.services.usage.UsageReservation;
+import io.github.isagroup.services.usage.WindowedUsageCounterStore;
+
+public class UsageCounterStoreTest {
+
+    private static final UsageCounterKey KEY = new UsageCounterKey("user1", "maxPets");
+
+    private InMemoryUsageCounterStore store;
+
+    @BeforeEach
+    void setUp() {
+        this.store = new InMemoryUsageCounterStore();
+    }
+
+    @Test
+    void givenConcurrentReservationsShouldNotExceedLimit() throws InterruptedException {
+
+        int threads = 32;
+        long limit = 10;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                store.reserve(KEY, 1, limit).ifPresent(reservation -> granted.incrementAndGet());
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(limit, granted.get());
+        assertEquals(limit, store.getUsage(KEY));
+    }
+
+    @Test
+    void givenReleasedReservationShouldFreeUsageOnce() {
+
+        store.initialize(KEY, 9);
+
+        UsageReservation reservation = store.reserve(KEY, 1, 10).orElseThrow();
+        assertFalse(store.reserve(KEY, 1, 10).isPresent());
+
+        store.release(reservation);
+        store.release(reservation);
+
+        assertEquals(9, store.getUsage(KEY));
+    }
+
+    @Test
+    void givenCommittedReservationShouldNotBeReleased() {
+
+        UsageReservation reservation = store.reserve(KEY, 2, 10).orElseThrow();
+        store.commit(reservation);
+        store.release(reservation);
+
+        assertEquals(2, store.getUsage(KEY));
+    }
+
+    @Test
+    void givenFeatureLinkedToUsageLimitShouldReserveUpToPlanLimit() {
+
+        Map<String, Object> userContext = new HashMap<>();
+        userContext.put("username", "user1");
+        userContext.put("pets", 9);
+
+        PricingContextTestImpl pricingContext = new PricingContextTestImpl();
+        pricingContext.setConfigFilePath("pricing/petclinic.yml");
+        pricingContext.setUserPlan("BASIC");
+        pricingContext.setUserContext(userContext);
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+        UsageLimitEnforcer enforcer = new UsageLimitEnforcer(store);
+
+        Optional<List<UsageReservation>> first = enforcer.reserve("maxPets", evaluationContext);
+        Optional<List<UsageReservation>> second = enforcer.reserve("maxPets", evaluationContext);
+
+        assertTrue(first.isPresent());
+        assertEquals(1, first.get().size());
+        assertFalse(second.isPresent());
+        assertEquals(10, store.getUsage(KEY));
+    }
+
+    @Test
+    void givenUserContextWithoutUserShouldNotShareCounters() {
+
+        PricingContextTestImpl pricingContext = new PricingContextTestImpl();
+        pricingContext.setConfigFilePath("pricing/petclinic.yml");
+        pricingContext.setUserPlan("BASIC");
+        pricingContext.setUserContext(Map.of("pets", 0));
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+        UsageLimitEnforcer enforcer = new UsageLimitEnforcer(store);
+
+        assertThrows(PricingPlanEvaluationException.class, () -> enforcer.reserve("maxPets", evaluationContext));
+        assertEquals("Default", evaluationContext.getSubject());
+        assertEquals(0, store.getUsage(new UsageCounterKey("Default", "maxPets")));
+    }
+
+    @Test
+    void givenTimeDrivenUsageLimitShouldReserveInCurrentWindow() {
+
+        Map<String, Object> userContext = new HashMap<>();
+        userContext.put("username", "user1");
+        userContext.put("calls", 0);
+
+        PricingContextTestImpl pricingContext = new PricingContextTestImpl();
+        pricingContext.setConfigFilePath("pricing/time-driven-pricing.yml");
+        pricingContext.setUserPlan("BASIC");
+        pricingContext.setUserContext(userContext);
+
+        PricingEvaluationContext evaluationContext = new PricingEvaluationContext(pricingContext);
+        WindowedUsageCounterStore windowedStore = new WindowedUsageCounterStore(
+                pricingContext.getPricingManager().getUsageLimits().values(), RenewalWindow.FIXED);
+        UsageLimitEnforcer enforcer = new UsageLimitEnforcer(windowedStore);
+
+        assertTrue(enforcer.reserve("calls", evaluationContext).isPresent());
+        assertTrue(enforcer.reserve("calls", evaluationContext).isPresent());
+        assertFalse(enforcer.reserve("calls", evaluationContext).isPresent());
+        assertTrue(windowedStore.getWindowCounters().isTracked("callsPerDay"));
+        assertEquals(2, windowedStore.getUsage(new UsageCounterKey("user1", "callsPerDay")));
+    }
+}